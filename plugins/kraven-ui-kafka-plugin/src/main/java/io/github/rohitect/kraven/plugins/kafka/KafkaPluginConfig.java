@@ -47,4 +47,43 @@ public class KafkaPluginConfig {
      * The maximum message limit for topic consumption.
      */
     private int maxMessageLimit = 1000;
+
+    /**
+     * The number of consumers the message browser keeps for reading topics,
+     * which is also the number of partitions it reads at once.
+     */
+    private int browseConsumerPoolSize = 3;
+
+    /**
+     * The time budget of reading a page of messages, in milliseconds.
+     */
+    private long browseTimeoutMs = 5000;
+
+    /**
+     * The number of records that can be queued for each live stream client.
+     */
+    private int streamQueueCapacity = 1000;
+
+    /**
+     * What to do with a record when a stream client's queue is full:
+     * drop-oldest, drop-newest or disconnect.
+     */
+    private String streamOverflowPolicy = "drop-oldest";
+
+    /**
+     * How long records are collected into one frame of a live stream, in milliseconds.
+     * 0 sends every record as its own event.
+     */
+    private long streamBatchMs = 0;
+
+    /**
+     * The most records in one frame of a live stream.
+     */
+    private int streamBatchSize = 500;
+
+    /**
+     * The number of characters of a value that are streamed; longer values are truncated
+     * and can be fetched in full by partition and offset. 0 streams values in full.
+     */
+    private int streamPreviewLength = 4096;
 }
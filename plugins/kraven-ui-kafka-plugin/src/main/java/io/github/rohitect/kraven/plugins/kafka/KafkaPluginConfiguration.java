@@ -37,6 +37,13 @@ public class KafkaPluginConfiguration {
         config.setSseTimeoutMs(environment.getProperty(prefix + ".sseTimeoutMs", Long.class, config.getSseTimeoutMs()));
         config.setDefaultMessageLimit(environment.getProperty(prefix + ".defaultMessageLimit", Integer.class, config.getDefaultMessageLimit()));
         config.setMaxMessageLimit(environment.getProperty(prefix + ".maxMessageLimit", Integer.class, config.getMaxMessageLimit()));
+        config.setBrowseConsumerPoolSize(environment.getProperty(prefix + ".browseConsumerPoolSize", Integer.class, config.getBrowseConsumerPoolSize()));
+        config.setBrowseTimeoutMs(environment.getProperty(prefix + ".browseTimeoutMs", Long.class, config.getBrowseTimeoutMs()));
+        config.setStreamQueueCapacity(environment.getProperty(prefix + ".streamQueueCapacity", Integer.class, config.getStreamQueueCapacity()));
+        config.setStreamOverflowPolicy(environment.getProperty(prefix + ".streamOverflowPolicy", config.getStreamOverflowPolicy()));
+        config.setStreamBatchMs(environment.getProperty(prefix + ".streamBatchMs", Long.class, config.getStreamBatchMs()));
+        config.setStreamBatchSize(environment.getProperty(prefix + ".streamBatchSize", Integer.class, config.getStreamBatchSize()));
+        config.setStreamPreviewLength(environment.getProperty(prefix + ".streamPreviewLength", Integer.class, config.getStreamPreviewLength()));
 
         // Handle basePackages array property
         String basePackagesStr = environment.getProperty(prefix + ".basePackages");
@@ -4,6 +4,9 @@ import io.github.rohitect.kraven.plugins.kafka.model.*;
 import io.github.rohitect.kraven.plugins.kafka.service.KafkaAdminService;
 import io.github.rohitect.kraven.plugins.kafka.service.KafkaListenerScanner;
 import io.github.rohitect.kraven.plugins.kafka.service.KafkaMessageService;
+import io.github.rohitect.kraven.plugins.kafka.service.StreamFilter;
+import io.github.rohitect.kraven.plugins.kafka.service.StreamOptions;
+import io.github.rohitect.kraven.plugins.kafka.service.StreamSubscription;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -115,13 +118,14 @@ public class KafkaManagementController {
         }
 
         // Ensure limit is within bounds
-        int actualLimit = Math.min(limit, 1000);
+        int actualLimit = Math.max(1, Math.min(limit, kafkaMessageService.getMaxMessageLimit()));
 
         // Get messages
         boolean sortNewestFirst = !"old".equalsIgnoreCase(sort);
-        int offset = page * actualLimit;
-        List<KafkaMessage> messages = kafkaMessageService.getMessagesFromTopic(
+        long offset = (long) page * actualLimit;
+        KafkaMessagePage messagePage = kafkaMessageService.getMessagesFromTopic(
                 name, actualLimit, offset, sortNewestFirst);
+        List<KafkaMessage> messages = messagePage.getMessages();
         long totalMessages = kafkaMessageService.getTopicMessageCount(name);
         int totalPages = (int) Math.ceil((double) totalMessages / actualLimit);
 
@@ -131,12 +135,46 @@ public class KafkaManagementController {
         response.put("limit", actualLimit);
         response.put("totalMessages", totalMessages);
         response.put("totalPages", totalPages);
+        response.put("partial", messagePage.isPartial());
 
         log.debug("Retrieved {} messages from topic: {} (page {}/{}, total messages: {})",
                 messages.size(), name, page + 1, totalPages, totalMessages);
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping(value = {"/topics/{name}/messages/{partition}/{offset}", "/topics/{name}/messages/{partition}/{offset}/"})
+    public ResponseEntity<KafkaMessage> getMessage(
+            @PathVariable("name") String name,
+            @PathVariable("partition") int partition,
+            @PathVariable("offset") long offset) {
+
+        log.debug("Getting message {} of partition {} of topic: {}", offset, partition, name);
+
+        // Check if message consumption is enabled
+        if (!kafkaAdminService.isMessageConsumptionEnabled()) {
+            log.warn("Message consumption is disabled. Rejecting request for topic: {}", name);
+            throw new org.springframework.web.server.ResponseStatusException(
+                    org.springframework.http.HttpStatus.FORBIDDEN,
+                    "Message consumption is disabled in the configuration. To enable it, set 'kraven.plugins.kafka.message-consumption-enabled=true' in your application properties.");
+        }
+
+        KafkaMessage message;
+        try {
+            message = kafkaMessageService.getMessage(name, partition, offset);
+        } catch (Exception e) {
+            log.error("Error getting message {} of partition {} of topic: {}", offset, partition, name, e);
+            throw new org.springframework.web.server.ResponseStatusException(
+                    org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Error getting message: " + e.getMessage());
+        }
+        if (message == null) {
+            throw new org.springframework.web.server.ResponseStatusException(
+                    org.springframework.http.HttpStatus.NOT_FOUND,
+                    "No message at offset " + offset + " of partition " + partition + " of topic " + name);
+        }
+        return ResponseEntity.ok(message);
+    }
+
     @PostMapping(value = {"/topics/{name}/messages", "/topics/{name}/messages/"})
     public ResponseEntity<KafkaMessage> sendMessageToTopic(
             @PathVariable("name") String name,
@@ -166,7 +204,16 @@ public class KafkaManagementController {
     }
 
     @GetMapping(value = {"/topics/{name}/stream", "/topics/{name}/stream/"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamMessagesFromTopic(@PathVariable("name") String name) {
+    public SseEmitter streamMessagesFromTopic(
+            @PathVariable("name") String name,
+            @RequestParam(value = "overflow", required = false) String overflow,
+            @RequestParam(value = "batchMs", required = false) Long batchMs,
+            @RequestParam(value = "batchSize", required = false) Integer batchSize,
+            @RequestParam(value = "key", required = false) String key,
+            @RequestParam(value = "keyRegex", required = false) String keyRegex,
+            @RequestParam(value = "header", required = false) List<String> headers,
+            @RequestParam(value = "valuePath", required = false) String valuePath,
+            @RequestParam(value = "partitions", required = false) String partitions) {
         log.debug("Establishing SSE stream for topic: {}", name);
 
         // Check if streaming is enabled
@@ -177,6 +224,32 @@ public class KafkaManagementController {
                     "Streaming is disabled in the configuration. To enable it, set 'kraven.plugins.kafka.streamingEnabled=true' in your application properties.");
         }
 
+        // Apply the client's stream options before the stream is opened
+        StreamOptions.StreamOptionsBuilder options = kafkaMessageService.getDefaultStreamOptions().toBuilder();
+        if (overflow != null) {
+            try {
+                options.overflowPolicy(StreamSubscription.OverflowPolicy.of(overflow));
+            } catch (IllegalArgumentException e) {
+                throw new org.springframework.web.server.ResponseStatusException(
+                        org.springframework.http.HttpStatus.BAD_REQUEST,
+                        "Unknown overflow policy '" + overflow + "'. Use drop-oldest, drop-newest or disconnect.");
+            }
+        }
+        if (batchMs != null) {
+            options.batchMs(Math.max(0, batchMs));
+        }
+        if (batchSize != null) {
+            options.batchSize(Math.max(1, batchSize));
+        }
+        try {
+            List<Integer> partitionList = StreamFilter.parsePartitions(partitions);
+            int partitionCount = partitionList != null ? kafkaMessageService.getPartitionCount(name) : 0;
+            options.filter(StreamFilter.compile(key, keyRegex, headers, valuePath, partitionList, partitionCount));
+        } catch (IllegalArgumentException e) {
+            throw new org.springframework.web.server.ResponseStatusException(
+                    org.springframework.http.HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
         // Create emitter with timeout
         SseEmitter emitter = new SseEmitter(300000L); // 5 minutes
 
@@ -212,8 +285,14 @@ public class KafkaManagementController {
         }
 
         // Register this emitter with the message service for updates
-        kafkaMessageService.registerEmitter(name, emitter);
+        kafkaMessageService.registerEmitter(name, emitter, options.build());
 
         return emitter;
     }
+
+    @GetMapping(value = {"/streams", "/streams/"})
+    public ResponseEntity<List<KafkaStreamSubscription>> getStreams() {
+        log.debug("Getting live stream subscriptions");
+        return ResponseEntity.ok(kafkaMessageService.getStreamSubscriptions());
+    }
 }
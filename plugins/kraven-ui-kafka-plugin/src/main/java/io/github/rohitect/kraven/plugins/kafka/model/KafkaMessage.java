@@ -45,4 +45,9 @@ public class KafkaMessage {
      * Timestamp.
      */
     private long timestamp;
+
+    /**
+     * Whether the value is a preview of a larger value.
+     */
+    private boolean truncated;
 }
@@ -0,0 +1,28 @@
+package io.github.rohitect.kraven.plugins.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents a page of messages read from a topic.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KafkaMessagePage {
+
+    /**
+     * Messages of the page.
+     */
+    private List<KafkaMessage> messages;
+
+    /**
+     * Whether not all partitions could be read in time, so the page may be incomplete.
+     */
+    private boolean partial;
+}
@@ -0,0 +1,76 @@
+package io.github.rohitect.kraven.plugins.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a client of a live topic stream.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KafkaStreamSubscription {
+
+    /**
+     * Subscription ID.
+     */
+    private String id;
+
+    /**
+     * Streamed topic.
+     */
+    private String topic;
+
+    /**
+     * What happens to records when the queue is full: drop-oldest, drop-newest or disconnect.
+     */
+    private String overflowPolicy;
+
+    /**
+     * Number of records that can be queued for the client.
+     */
+    private int queueCapacity;
+
+    /**
+     * Interval records are collected for before a frame is sent, or 0 if every record is sent as it arrives.
+     */
+    private long batchMs;
+
+    /**
+     * Most records in one frame.
+     */
+    private int batchSize;
+
+    /**
+     * Records the client receives, or null if it receives every record.
+     */
+    private String filter;
+
+    /**
+     * Number of records skipped because they did not match the filter.
+     */
+    private long filtered;
+
+    /**
+     * Number of records waiting to be sent.
+     */
+    private int queued;
+
+    /**
+     * Number of records dropped because the queue was full.
+     */
+    private long dropped;
+
+    /**
+     * Number of records sent.
+     */
+    private long sent;
+
+    /**
+     * Time the client connected.
+     */
+    private long connectedAt;
+}
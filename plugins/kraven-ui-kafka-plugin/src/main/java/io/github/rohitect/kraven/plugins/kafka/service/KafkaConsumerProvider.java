@@ -0,0 +1,93 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the plugin's own Kafka consumers.
+ * <p>
+ * The consumers connect with the application's Kafka configuration, taken from the KafkaAdmin
+ * bean and, if the application has one, its ConsumerFactory. They never join a consumer group:
+ * they are used with {@code assign} and {@code seek} only, commit nothing and cannot trigger a
+ * rebalance of the application's own groups. Keys and values are read as raw bytes, so records
+ * that the application's deserializers would reject can still be shown.
+ */
+@Slf4j
+public class KafkaConsumerProvider {
+
+    private static final Set<String> CONSUMER_CONFIG_NAMES = ConsumerConfig.configNames();
+
+    private final ApplicationContext applicationContext;
+    private final AtomicInteger clientSequence = new AtomicInteger();
+
+    public KafkaConsumerProvider(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Create a consumer without a consumer group.
+     *
+     * @param purpose a short name for the consumer, used in its client id
+     * @return the consumer
+     * @throws IllegalStateException if the application has no Kafka configuration
+     */
+    public KafkaConsumer<byte[], byte[]> createConsumer(String purpose) {
+        return new KafkaConsumer<>(getConsumerProperties(purpose));
+    }
+
+    /**
+     * Get the properties of a consumer without a consumer group.
+     *
+     * @param purpose a short name for the consumer, used in its client id
+     * @return the consumer properties
+     * @throws IllegalStateException if the application has no Kafka configuration
+     */
+    public Map<String, Object> getConsumerProperties(String purpose) {
+        Map<String, Object> properties = new HashMap<>();
+
+        KafkaAdmin kafkaAdmin = applicationContext.getBeanProvider(KafkaAdmin.class).getIfAvailable();
+        if (kafkaAdmin != null) {
+            copyConsumerProperties(kafkaAdmin.getConfigurationProperties(), properties);
+        }
+        ConsumerFactory<?, ?> consumerFactory = applicationContext.getBeanProvider(ConsumerFactory.class).getIfAvailable();
+        if (consumerFactory != null) {
+            copyConsumerProperties(consumerFactory.getConfigurationProperties(), properties);
+        }
+        if (!properties.containsKey(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG)) {
+            throw new IllegalStateException("No Kafka bootstrap servers are configured");
+        }
+
+        // Never join, commit to or create anything on behalf of the application's consumer groups
+        properties.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        properties.remove(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG);
+        properties.remove(ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG);
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        properties.put(ConsumerConfig.ALLOW_AUTO_CREATE_TOPICS_CONFIG, false);
+        properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG, "kraven-ui-" + purpose + "-" + clientSequence.incrementAndGet());
+
+        log.debug("Created consumer properties for {} with bootstrap servers {}",
+                purpose, properties.get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        return properties;
+    }
+
+    private static void copyConsumerProperties(Map<String, Object> source, Map<String, Object> target) {
+        source.forEach((key, value) -> {
+            if (value != null && CONSUMER_CONFIG_NAMES.contains(key)) {
+                target.put(key, value);
+            }
+        });
+    }
+}
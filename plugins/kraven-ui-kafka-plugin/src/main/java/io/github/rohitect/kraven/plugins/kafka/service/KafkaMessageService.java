@@ -2,54 +2,96 @@ package io.github.rohitect.kraven.plugins.kafka.service;
 
 import io.github.rohitect.kraven.plugins.kafka.KafkaPluginConfig;
 import io.github.rohitect.kraven.plugins.kafka.model.KafkaMessage;
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaMessagePage;
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaStreamSubscription;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Service for Kafka message operations.
+ * Live streams are fed by a {@link KafkaStreamEngine} that only consumes the topics SSE clients
+ * are subscribed to, and only while they are. Each client is a {@link StreamSubscription} with its
+ * own queue and send loop, so the consumer thread never waits for a client. Messages are browsed
+ * with a {@link KafkaTopicBrowser}, without consumer groups.
  */
 @Service
 @Slf4j
-public class KafkaMessageService {
+public class KafkaMessageService implements DisposableBean {
 
     private final ApplicationContext applicationContext;
     private final KafkaPluginConfig config;
-    private final Map<String, List<SseEmitter>> topicEmitters = new ConcurrentHashMap<>();
+    private final KafkaConsumerProvider consumerProvider;
+    private final KafkaTopicBrowser topicBrowser;
+    private final KafkaStreamEngine streamEngine;
+    private final ExecutorService streamExecutor;
+    private final ScheduledExecutorService streamScheduler;
+    private final Map<String, List<StreamSubscription>> topicSubscriptions = new ConcurrentHashMap<>();
 
     public KafkaMessageService(ApplicationContext applicationContext, KafkaPluginConfig config) {
         this.applicationContext = applicationContext;
         this.config = config;
+        this.consumerProvider = new KafkaConsumerProvider(applicationContext);
+        this.topicBrowser = new KafkaTopicBrowser(() -> consumerProvider.createConsumer("browse"),
+                config.getBrowseConsumerPoolSize(), config.getBrowseTimeoutMs());
+        this.streamExecutor = createStreamExecutor();
+        this.streamScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kraven-kafka-sse-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.streamEngine = new KafkaStreamEngine(() -> consumerProvider.createConsumer("stream"), this::dispatchRecord);
         log.info("KafkaMessageService initialized");
     }
 
+    /**
+     * Get the largest number of messages that can be read at once.
+     *
+     * @return the configured message limit
+     */
+    public int getMaxMessageLimit() {
+        return Math.max(1, config.getMaxMessageLimit());
+    }
+
     /**
      * Get messages from a topic.
      *
      * @param topic the topic name
-     * @param limit the maximum number of messages to retrieve
-     * @param offset the offset to start from
+     * @param limit the maximum number of messages to retrieve, capped at the configured maximum
+     * @param offset the number of messages to skip
      * @param newestFirst whether to sort newest messages first
-     * @return list of messages
+     * @return the page of messages
      */
-    public List<KafkaMessage> getMessagesFromTopic(String topic, int limit, int offset, boolean newestFirst) {
+    public KafkaMessagePage getMessagesFromTopic(String topic, int limit, long offset, boolean newestFirst) {
         log.debug("Getting messages from topic: {} (limit: {}, offset: {}, newestFirst: {})",
                 topic, limit, offset, newestFirst);
 
-        // This is a simplified implementation that would need to be expanded
-        // to actually consume messages from Kafka
-        return new ArrayList<>();
+        int actualLimit = Math.min(limit > 0 ? limit : config.getDefaultMessageLimit(), getMaxMessageLimit());
+        KafkaTopicBrowser.Page page = topicBrowser.browse(topic, actualLimit, Math.max(0, offset), newestFirst);
+        List<KafkaMessage> messages = new ArrayList<>();
+        for (ConsumerRecord<byte[], byte[]> record : page.getRecords()) {
+            messages.add(convertRecordToMessage(record, 0));
+        }
+        return KafkaMessagePage.builder()
+                .messages(messages)
+                .partial(page.isPartial())
+                .build();
     }
 
     /**
@@ -60,10 +102,32 @@ public class KafkaMessageService {
      */
     public long getTopicMessageCount(String topic) {
         log.debug("Getting message count for topic: {}", topic);
+        return topicBrowser.count(topic);
+    }
 
-        // This is a simplified implementation that would need to be expanded
-        // to actually get the message count from Kafka
-        return 0;
+    /**
+     * Get the number of partitions of a topic.
+     *
+     * @param topic the topic name
+     * @return the number of partitions, 0 if the topic does not exist
+     */
+    public int getPartitionCount(String topic) {
+        return topicBrowser.partitionCount(topic);
+    }
+
+    /**
+     * Get a single message with its full value.
+     *
+     * @param topic the topic name
+     * @param partition the partition
+     * @param offset the offset of the message
+     * @return the message, or null if the partition has no message at that offset
+     */
+    public KafkaMessage getMessage(String topic, int partition, long offset) {
+        log.debug("Getting message {} of partition {} of topic {}", offset, partition, topic);
+
+        ConsumerRecord<byte[], byte[]> record = topicBrowser.fetch(topic, partition, offset);
+        return record != null ? convertRecordToMessage(record, 0) : null;
     }
 
     /**
@@ -112,103 +176,174 @@ public class KafkaMessageService {
     }
 
     /**
-     * Register an SSE emitter for a topic.
+     * Get the configured options of live streams.
+     *
+     * @return the options a stream has unless its client overrides them
+     */
+    public StreamOptions getDefaultStreamOptions() {
+        return StreamOptions.builder()
+                .queueCapacity(config.getStreamQueueCapacity())
+                .overflowPolicy(getConfiguredOverflowPolicy())
+                .batchMs(Math.max(0, config.getStreamBatchMs()))
+                .batchSize(Math.max(1, config.getStreamBatchSize()))
+                .build();
+    }
+
+    /**
+     * Register an SSE emitter for a topic, with the configured options.
      *
      * @param topic the topic name
      * @param emitter the SSE emitter
      */
     public void registerEmitter(String topic, SseEmitter emitter) {
-        log.debug("Registering SSE emitter for topic: {}", topic);
+        registerEmitter(topic, emitter, getDefaultStreamOptions());
+    }
+
+    /**
+     * Register an SSE emitter for a topic.
+     *
+     * @param topic the topic name
+     * @param emitter the SSE emitter
+     * @param options how records are queued and sent to the client
+     */
+    public void registerEmitter(String topic, SseEmitter emitter, StreamOptions options) {
+        log.debug("Registering SSE emitter for topic: {} ({})", topic, options);
 
-        // Get or create emitter list for topic
-        List<SseEmitter> emitters = topicEmitters.computeIfAbsent(
-                topic, k -> new CopyOnWriteArrayList<>());
+        StreamSubscription subscription = new StreamSubscription(topic, emitter, options,
+                streamExecutor, streamScheduler, closed -> removeSubscription(topic, closed));
 
-        // Add emitter to list
-        emitters.add(emitter);
+        // Add subscription to the list of the topic, creating it for the first subscription
+        topicSubscriptions.compute(topic, (k, subscriptions) -> {
+            List<StreamSubscription> updated = subscriptions != null ? subscriptions : new CopyOnWriteArrayList<>();
+            updated.add(subscription);
+            return updated;
+        });
+        streamEngine.setTopics(topicSubscriptions.keySet());
 
         // Set completion callback to remove emitter when it completes
         emitter.onCompletion(() -> {
             log.debug("SSE emitter completed for topic: {}", topic);
-            removeEmitter(topic, emitter);
+            removeSubscription(topic, subscription);
         });
 
         // Set timeout callback to remove emitter when it times out
         emitter.onTimeout(() -> {
             log.debug("SSE emitter timed out for topic: {}", topic);
-            removeEmitter(topic, emitter);
+            removeSubscription(topic, subscription);
         });
 
         // Set error callback to remove emitter when it errors
         emitter.onError(e -> {
             log.debug("SSE emitter error for topic: {}: {}", topic, e.getMessage());
-            removeEmitter(topic, emitter);
+            removeSubscription(topic, subscription);
         });
     }
 
     /**
-     * Remove an SSE emitter for a topic.
+     * Get the clients of all live streams.
+     *
+     * @return the state and counters of each client
+     */
+    public List<KafkaStreamSubscription> getStreamSubscriptions() {
+        return topicSubscriptions.values().stream()
+                .flatMap(List::stream)
+                .map(StreamSubscription::getStatistics)
+                .sorted(Comparator.comparing(KafkaStreamSubscription::getTopic)
+                        .thenComparing(KafkaStreamSubscription::getConnectedAt))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Remove a subscription of a topic, and stop consuming the topic when none are left.
      *
      * @param topic the topic name
-     * @param emitter the SSE emitter
+     * @param subscription the subscription
      */
-    private void removeEmitter(String topic, SseEmitter emitter) {
-        List<SseEmitter> emitters = topicEmitters.get(topic);
-        if (emitters != null) {
-            emitters.remove(emitter);
-            if (emitters.isEmpty()) {
-                topicEmitters.remove(topic);
-            }
-        }
+    private void removeSubscription(String topic, StreamSubscription subscription) {
+        subscription.close();
+        topicSubscriptions.computeIfPresent(topic, (k, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+        streamEngine.setTopics(topicSubscriptions.keySet());
+    }
+
+    /**
+     * Stop the stream consumer, the send loops and the browsing consumers when the application shuts down.
+     */
+    @Override
+    public void destroy() {
+        topicBrowser.close();
+        streamEngine.shutdown();
+        streamScheduler.shutdownNow();
+        streamExecutor.shutdown();
     }
 
     /**
-     * Listen for messages on all Kafka topics and forward them to registered SSE emitters.
+     * Queue a record consumed by the stream engine for the clients of its topic.
+     * This runs on the consumer thread and never blocks.
      *
      * @param record the Kafka record
      */
-    @KafkaListener(topicPattern = ".*", groupId = "kraven-ui-sse-listener")
-    public void listenToAllTopics(ConsumerRecord<String, Object> record) {
+    private void dispatchRecord(ConsumerRecord<byte[], byte[]> record) {
         String topicName = record.topic();
-        List<SseEmitter> emitters = topicEmitters.get(topicName);
-
-        if (emitters != null && !emitters.isEmpty()) {
-            log.debug("Received message for topic {} with {} registered emitters",
-                    topicName, emitters.size());
-
-            // Convert record to KafkaMessage
-            KafkaMessage message = convertRecordToMessage(record);
-
-            // Send message to all emitters
-            List<SseEmitter> deadEmitters = new ArrayList<>();
-            for (SseEmitter emitter : emitters) {
-                try {
-                    emitter.send(SseEmitter.event()
-                            .name("message")
-                            .data(message));
-                } catch (IOException e) {
-                    log.debug("Error sending message to SSE emitter: {}", e.getMessage());
-                    deadEmitters.add(emitter);
-                }
-            }
+        List<StreamSubscription> subscriptions = topicSubscriptions.get(topicName);
+
+        if (subscriptions != null && !subscriptions.isEmpty()) {
+            log.trace("Received message for topic {} with {} registered emitters",
+                    topicName, subscriptions.size());
 
-            // Remove any dead emitters
-            if (!deadEmitters.isEmpty()) {
-                emitters.removeAll(deadEmitters);
-                if (emitters.isEmpty()) {
-                    topicEmitters.remove(topicName);
+            // Only the cheap filter criteria run here, the send loops check the rest and convert
+            // the record to a KafkaMessage once for all matching clients
+            int previewLength = config.getStreamPreviewLength();
+            StreamRecord streamRecord = new StreamRecord(record, r -> convertRecordToMessage(r, previewLength));
+            for (StreamSubscription subscription : subscriptions) {
+                if (subscription.accepts(record)) {
+                    subscription.offer(streamRecord);
                 }
             }
         }
     }
 
+    private StreamSubscription.OverflowPolicy getConfiguredOverflowPolicy() {
+        try {
+            return StreamSubscription.OverflowPolicy.of(config.getStreamOverflowPolicy());
+        } catch (RuntimeException e) {
+            log.warn("Unknown stream overflow policy '{}', dropping the oldest records instead",
+                    config.getStreamOverflowPolicy());
+            return StreamSubscription.OverflowPolicy.DROP_OLDEST;
+        }
+    }
+
+    /**
+     * Create the executor of the send loops of live streams.
+     * Virtual threads are looked up reflectively, so the plugin still runs on JDKs without them
+     * and falls back to a pool of platform threads there. A send loop only holds a thread while
+     * its client has queued records, so the pool grows with the number of busy clients at most.
+     */
+    private static ExecutorService createStreamExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "kraven-kafka-sse-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
     /**
      * Convert a Kafka record to a KafkaMessage.
      *
      * @param record the Kafka record
+     * @param previewLength the number of characters of the value to keep, or 0 to keep it whole
      * @return the KafkaMessage
      */
-    private KafkaMessage convertRecordToMessage(ConsumerRecord<String, Object> record) {
+    private KafkaMessage convertRecordToMessage(ConsumerRecord<byte[], byte[]> record, int previewLength) {
         // Extract headers
         Map<String, String> headers = new HashMap<>();
         for (Header header : record.headers()) {
@@ -216,14 +351,26 @@ public class KafkaMessageService {
                     new String(header.value()) : null);
         }
 
+        // Truncate large values, which can be fetched in full by partition and offset
+        String value = decode(record.value());
+        boolean truncated = previewLength > 0 && value != null && value.length() > previewLength;
+        if (truncated) {
+            value = value.substring(0, previewLength);
+        }
+
         // Build message
         return KafkaMessage.builder()
-                .key(record.key())
-                .value(record.value())
+                .key(decode(record.key()))
+                .value(value)
+                .truncated(truncated)
                 .headers(headers)
                 .partition(record.partition())
                 .offset(record.offset())
                 .timestamp(record.timestamp())
                 .build();
     }
+
+    private static String decode(byte[] bytes) {
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
 }
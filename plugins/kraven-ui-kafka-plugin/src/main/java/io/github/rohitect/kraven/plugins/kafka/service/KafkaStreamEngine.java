@@ -0,0 +1,241 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Consumes the topics that are being streamed to SSE clients, and only while they are.
+ * <p>
+ * The engine runs a single consumer thread that exists only while at least one topic is
+ * subscribed. The consumer is assigned the partitions of the subscribed topics, without a
+ * consumer group, and every newly assigned partition starts at its log end, so only records
+ * produced after a client subscribed are streamed. When the subscribed topics change, the poll is
+ * woken up and the assignment is updated on the consumer thread; partitions that stay assigned
+ * keep their position. When the last topic is unsubscribed, the thread closes the consumer and
+ * ends.
+ */
+@Slf4j
+public class KafkaStreamEngine {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final long RETRY_DELAY_MS = 5000;
+
+    private final Supplier<Consumer<byte[], byte[]>> consumerFactory;
+    private final java.util.function.Consumer<ConsumerRecord<byte[], byte[]>> recordHandler;
+
+    private Worker worker;
+
+    /**
+     * @param consumerFactory creates the consumer of each run of the engine
+     * @param recordHandler receives each record on the consumer thread; it must not block
+     */
+    public KafkaStreamEngine(Supplier<Consumer<byte[], byte[]>> consumerFactory,
+                             java.util.function.Consumer<ConsumerRecord<byte[], byte[]>> recordHandler) {
+        this.consumerFactory = consumerFactory;
+        this.recordHandler = recordHandler;
+    }
+
+    /**
+     * Set the topics to consume. The engine starts with the first topic and stops with the last.
+     *
+     * @param topics the subscribed topics
+     */
+    public synchronized void setTopics(Set<String> topics) {
+        if (topics.isEmpty()) {
+            if (worker != null) {
+                log.debug("No topics are streamed, stopping the stream consumer");
+                worker.stop();
+                worker = null;
+            }
+            return;
+        }
+
+        if (worker == null) {
+            log.debug("Starting the stream consumer for topics {}", topics);
+            worker = new Worker(Set.copyOf(topics));
+            Thread thread = new Thread(worker, "kraven-kafka-stream");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            worker.setTopics(Set.copyOf(topics));
+        }
+    }
+
+    /**
+     * @return true if the consumer thread is running
+     */
+    public synchronized boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * Stop the engine regardless of the subscribed topics.
+     */
+    public void shutdown() {
+        setTopics(Collections.emptySet());
+    }
+
+    /**
+     * One run of the engine, from the first subscribed topic to the last.
+     */
+    private final class Worker implements Runnable {
+
+        private volatile Set<String> topics;
+        private volatile boolean topicsChanged = true;
+        private volatile boolean running = true;
+        private volatile Consumer<byte[], byte[]> consumer;
+
+        private Worker(Set<String> topics) {
+            this.topics = topics;
+        }
+
+        private void setTopics(Set<String> topics) {
+            this.topics = topics;
+            this.topicsChanged = true;
+            wakeup();
+        }
+
+        private void stop() {
+            running = false;
+            wakeup();
+        }
+
+        private void wakeup() {
+            synchronized (this) {
+                notifyAll();
+            }
+            Consumer<byte[], byte[]> current = consumer;
+            if (current != null) {
+                current.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    consumer = consumerFactory.get();
+                    if (running) {
+                        poll();
+                    }
+                } catch (WakeupException e) {
+                    // Stopped while the consumer was being set up
+                } catch (Exception e) {
+                    log.warn("Stream consumer failed, retrying in {} ms: {}", RETRY_DELAY_MS, e.toString());
+                    topicsChanged = true;
+                    pause();
+                } finally {
+                    close();
+                }
+            }
+            log.debug("Stream consumer stopped");
+        }
+
+        private void poll() {
+            Set<TopicPartition> assignment = new HashSet<>();
+            while (running) {
+                if (topicsChanged) {
+                    topicsChanged = false;
+                    try {
+                        assignment = assign(assignment);
+                    } catch (WakeupException e) {
+                        topicsChanged = true;
+                        continue;
+                    }
+                }
+                if (assignment.isEmpty()) {
+                    // None of the subscribed topics exists yet
+                    pause();
+                    topicsChanged = true;
+                    continue;
+                }
+
+                ConsumerRecords<byte[], byte[]> records;
+                try {
+                    records = consumer.poll(POLL_TIMEOUT);
+                } catch (WakeupException e) {
+                    continue;
+                }
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    try {
+                        recordHandler.accept(record);
+                    } catch (Exception e) {
+                        log.warn("Error handling record {}-{}@{}: {}",
+                                record.topic(), record.partition(), record.offset(), e.toString());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Assign the partitions of the subscribed topics, starting new partitions at the log end.
+         *
+         * @param previous the current assignment
+         * @return the new assignment
+         */
+        private Set<TopicPartition> assign(Set<TopicPartition> previous) {
+            Set<TopicPartition> assignment = new HashSet<>();
+            for (String topic : topics) {
+                List<PartitionInfo> partitions = consumer.partitionsFor(topic);
+                if (partitions == null || partitions.isEmpty()) {
+                    log.debug("Topic {} has no partitions to stream", topic);
+                    continue;
+                }
+                for (PartitionInfo partition : partitions) {
+                    assignment.add(new TopicPartition(partition.topic(), partition.partition()));
+                }
+            }
+
+            List<TopicPartition> added = new ArrayList<>(assignment);
+            added.removeAll(previous);
+            consumer.assign(assignment);
+            if (!added.isEmpty()) {
+                consumer.seekToEnd(added);
+                // Resolve the end offsets now, so records produced before the next poll are not skipped
+                for (TopicPartition partition : added) {
+                    consumer.position(partition);
+                }
+            }
+            log.debug("Stream consumer assigned {} partitions of topics {}", assignment.size(), topics);
+            return assignment;
+        }
+
+        private void pause() {
+            try {
+                synchronized (this) {
+                    if (running) {
+                        wait(RETRY_DELAY_MS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+
+        private void close() {
+            Consumer<byte[], byte[]> current = consumer;
+            consumer = null;
+            if (current != null) {
+                try {
+                    current.close(Duration.ofSeconds(5));
+                } catch (Exception e) {
+                    log.debug("Error closing stream consumer: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Reads pages of messages from topics for the message browser.
+ * <p>
+ * The browser keeps a small pool of consumers that are created on first use and reused by every
+ * fetch. They read with {@code assign} and {@code seek} only, so browsing a topic never creates,
+ * joins or rebalances a consumer group.
+ * <p>
+ * A page is a merge of the partitions of the topic by timestamp. Each partition is read in chunks
+ * of a page, from its beginning offset forward or, for newest-first pages, from its end offset
+ * backwards. The first chunks of all partitions are read in parallel, each with its own consumer
+ * from the pool, and once a chunk of a partition arrives the next one is read while the merge uses
+ * it. The messages skipped to reach a later page are dropped as they are merged, so a page holds
+ * at most two chunks per partition in memory however deep it is. Chunks still being read when the
+ * page is full are dropped. Every fetch has a time
+ * budget; a page whose partitions could not all be read in time is returned as far as it was
+ * merged and marked partial.
+ */
+@Slf4j
+public class KafkaTopicBrowser {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(200);
+
+    private final Supplier<Consumer<byte[], byte[]>> consumerFactory;
+    private final int poolSize;
+    private final long timeoutMs;
+    private final BlockingQueue<Consumer<byte[], byte[]>> idleConsumers;
+    private final ExecutorService fetchExecutor;
+
+    private int liveConsumers;
+    private volatile boolean closed;
+
+    /**
+     * @param consumerFactory creates the pooled consumers
+     * @param poolSize the number of consumers, which is also the number of partitions read at once
+     * @param timeoutMs the time budget of each fetch
+     */
+    public KafkaTopicBrowser(Supplier<Consumer<byte[], byte[]>> consumerFactory, int poolSize, long timeoutMs) {
+        this.consumerFactory = consumerFactory;
+        this.poolSize = Math.max(1, poolSize);
+        this.timeoutMs = Math.max(1, timeoutMs);
+        this.idleConsumers = new ArrayBlockingQueue<>(this.poolSize);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.fetchExecutor = Executors.newFixedThreadPool(this.poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "kraven-kafka-browse-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Read a page of messages from a topic.
+     *
+     * @param topic the topic name
+     * @param limit the number of messages in the page
+     * @param offset the number of messages before the page
+     * @param newestFirst whether the page counts from the newest message instead of the oldest
+     * @return the messages of the page, newest first if requested, empty if the topic does not exist
+     */
+    public Page browse(String topic, int limit, long offset, boolean newestFirst) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        int chunkSize = Math.max(1, limit);
+        Map<TopicPartition, long[]> offsets = getOffsets(topic, deadline);
+
+        long total = 0;
+        List<PartitionCursor> cursors = new ArrayList<>();
+        for (Map.Entry<TopicPartition, long[]> entry : offsets.entrySet()) {
+            long beginning = entry.getValue()[0];
+            long end = entry.getValue()[1];
+            if (end > beginning) {
+                total += end - beginning;
+                cursors.add(new PartitionCursor(entry.getKey(), beginning, end, newestFirst, chunkSize));
+            }
+        }
+        if (offset >= total) {
+            return new Page(Collections.emptyList(), false);
+        }
+
+        Comparator<ConsumerRecord<byte[], byte[]>> order = Comparator
+                .comparingLong((ConsumerRecord<byte[], byte[]> record) -> record.timestamp())
+                .thenComparingInt(ConsumerRecord::partition)
+                .thenComparingLong(ConsumerRecord::offset);
+        Comparator<ConsumerRecord<byte[], byte[]>> pageOrder = newestFirst ? order.reversed() : order;
+        PriorityQueue<PartitionCursor> heads = new PriorityQueue<>(Math.max(1, cursors.size()),
+                (first, second) -> pageOrder.compare(first.head(), second.head()));
+
+        // Read the first chunk of every partition in parallel
+        cursors.forEach(cursor -> cursor.prefetch(deadline));
+        for (PartitionCursor cursor : cursors) {
+            if (cursor.advance(deadline)) {
+                heads.add(cursor);
+            }
+        }
+
+        List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>(limit);
+        long skipped = 0;
+        while (records.size() < limit && !heads.isEmpty()) {
+            PartitionCursor cursor = heads.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                records.add(cursor.head());
+            }
+            if (cursor.advance(deadline)) {
+                heads.add(cursor);
+            }
+        }
+        cursors.forEach(PartitionCursor::discard);
+
+        boolean partial = cursors.stream().anyMatch(PartitionCursor::isIncomplete);
+        if (partial) {
+            log.warn("Page of topic {} at offset {} is partial, not all partitions were read within {} ms",
+                    topic, offset, timeoutMs);
+        }
+        return new Page(records, partial);
+    }
+
+    /**
+     * Count the messages in a topic from the beginning and end offsets of its partitions.
+     * Compacted and transactional topics have fewer messages than offsets.
+     *
+     * @param topic the topic name
+     * @return the number of messages, 0 if the topic does not exist
+     */
+    public long count(String topic) {
+        long count = 0;
+        for (long[] range : getOffsets(topic, System.currentTimeMillis() + timeoutMs).values()) {
+            count += Math.max(0, range[1] - range[0]);
+        }
+        return count;
+    }
+
+    /**
+     * Count the partitions of a topic.
+     *
+     * @param topic the topic name
+     * @return the number of partitions, 0 if the topic does not exist
+     */
+    public int partitionCount(String topic) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        return withConsumer(deadline, consumer -> {
+            List<PartitionInfo> partitions = consumer.partitionsFor(topic, remaining(deadline));
+            return partitions != null ? partitions.size() : 0;
+        });
+    }
+
+    /**
+     * Read a single message.
+     *
+     * @param topic the topic name
+     * @param partition the partition
+     * @param offset the offset of the message
+     * @return the message, or null if the partition has no message at that offset
+     */
+    public ConsumerRecord<byte[], byte[]> fetch(String topic, int partition, long offset) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        long[] range = getOffsets(topic, deadline).get(topicPartition);
+        if (range == null || offset < range[0] || offset >= range[1]) {
+            return null;
+        }
+
+        // A compacted partition may not have the offset any more
+        return readRange(topicPartition, offset, offset + 1, deadline).records.stream()
+                .filter(record -> record.offset() == offset)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Close the pooled consumers and stop the fetch threads.
+     */
+    public void close() {
+        closed = true;
+        fetchExecutor.shutdownNow();
+        Consumer<byte[], byte[]> consumer;
+        while ((consumer = idleConsumers.poll()) != null) {
+            closeConsumer(consumer);
+        }
+    }
+
+    /**
+     * Get the beginning and end offsets of the partitions of a topic.
+     *
+     * @return the offsets of each partition by partition number, empty if the topic does not exist
+     */
+    private Map<TopicPartition, long[]> getOffsets(String topic, long deadline) {
+        return withConsumer(deadline, consumer -> {
+            List<PartitionInfo> partitions = consumer.partitionsFor(topic, remaining(deadline));
+            if (partitions == null || partitions.isEmpty()) {
+                return Collections.emptyMap();
+            }
+
+            List<TopicPartition> topicPartitions = new ArrayList<>();
+            for (PartitionInfo partition : partitions) {
+                topicPartitions.add(new TopicPartition(topic, partition.partition()));
+            }
+            topicPartitions.sort(Comparator.comparingInt(TopicPartition::partition));
+            Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(topicPartitions, remaining(deadline));
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(topicPartitions, remaining(deadline));
+
+            Map<TopicPartition, long[]> offsets = new LinkedHashMap<>();
+            for (TopicPartition topicPartition : topicPartitions) {
+                offsets.put(topicPartition, new long[]{
+                        beginningOffsets.getOrDefault(topicPartition, 0L),
+                        endOffsets.getOrDefault(topicPartition, 0L)});
+            }
+            return offsets;
+        });
+    }
+
+    /**
+     * Read the messages of a partition from one offset up to another, or until the deadline.
+     */
+    private Chunk readRange(TopicPartition partition, long from, long to, long deadline) {
+        return withConsumer(deadline, consumer -> {
+            List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>((int) Math.min(to - from, 1024));
+            consumer.assign(Collections.singletonList(partition));
+            consumer.seek(partition, from);
+            try {
+                while (System.currentTimeMillis() < deadline) {
+                    for (ConsumerRecord<byte[], byte[]> record : consumer.poll(POLL_TIMEOUT).records(partition)) {
+                        if (record.offset() >= to) {
+                            return new Chunk(records, true);
+                        }
+                        records.add(record);
+                    }
+                    // Compaction and transaction markers leave offsets without records
+                    if (consumer.position(partition, remaining(deadline)) >= to) {
+                        return new Chunk(records, true);
+                    }
+                }
+            } catch (org.apache.kafka.common.errors.TimeoutException e) {
+                // Out of time while looking up the position, keep what was read
+            }
+            log.debug("Reading offsets {} to {} of {} ran out of time after {} records", from, to, partition, records.size());
+            return new Chunk(records, false);
+        });
+    }
+
+    /**
+     * Run a task with a consumer from the pool. A consumer that fails is closed instead of
+     * returned, and replaced on the next fetch.
+     */
+    private <T> T withConsumer(long deadline, Function<Consumer<byte[], byte[]>, T> task) {
+        Consumer<byte[], byte[]> consumer = borrow(deadline);
+        boolean healthy = false;
+        try {
+            T result = task.apply(consumer);
+            healthy = true;
+            return result;
+        } finally {
+            release(consumer, healthy);
+        }
+    }
+
+    private Consumer<byte[], byte[]> borrow(long deadline) {
+        if (closed) {
+            throw new RejectedExecutionException("The topic browser is closed");
+        }
+        Consumer<byte[], byte[]> consumer = idleConsumers.poll();
+        if (consumer != null) {
+            return consumer;
+        }
+        synchronized (this) {
+            if (liveConsumers < poolSize) {
+                consumer = consumerFactory.get();
+                liveConsumers++;
+                return consumer;
+            }
+        }
+        try {
+            consumer = idleConsumers.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (consumer == null) {
+            throw new IllegalStateException("No consumer became available within " + timeoutMs + " ms");
+        }
+        return consumer;
+    }
+
+    private void release(Consumer<byte[], byte[]> consumer, boolean healthy) {
+        if (healthy && !closed) {
+            try {
+                consumer.unsubscribe();
+                idleConsumers.add(consumer);
+                return;
+            } catch (RuntimeException e) {
+                log.debug("Discarding pooled consumer: {}", e.getMessage());
+            }
+        }
+        synchronized (this) {
+            liveConsumers--;
+        }
+        closeConsumer(consumer);
+    }
+
+    private static void closeConsumer(Consumer<byte[], byte[]> consumer) {
+        try {
+            consumer.close(Duration.ofSeconds(1));
+        } catch (RuntimeException e) {
+            log.debug("Error closing pooled consumer: {}", e.getMessage());
+        }
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofMillis(Math.max(1, deadline - System.currentTimeMillis()));
+    }
+
+    /**
+     * A page of messages.
+     */
+    public static final class Page {
+
+        private final List<ConsumerRecord<byte[], byte[]>> records;
+        private final boolean partial;
+
+        Page(List<ConsumerRecord<byte[], byte[]>> records, boolean partial) {
+            this.records = records;
+            this.partial = partial;
+        }
+
+        /**
+         * @return the messages of the page
+         */
+        public List<ConsumerRecord<byte[], byte[]>> getRecords() {
+            return records;
+        }
+
+        /**
+         * @return true if not all partitions could be read within the time budget, so the page
+         * may miss messages or hold messages of a later page
+         */
+        public boolean isPartial() {
+            return partial;
+        }
+    }
+
+    /**
+     * The messages read from a range of offsets of a partition, and whether the range was read
+     * to its end.
+     */
+    private static final class Chunk {
+
+        private final List<ConsumerRecord<byte[], byte[]>> records;
+        private final boolean complete;
+
+        private Chunk(List<ConsumerRecord<byte[], byte[]>> records, boolean complete) {
+            this.records = records;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Reads one partition for the merge of a page, a chunk at a time, in page order.
+     * Only used by the thread that merges the page.
+     */
+    private final class PartitionCursor {
+
+        private final TopicPartition partition;
+        private final boolean backwards;
+        private final int chunkSize;
+        private final ArrayDeque<ConsumerRecord<byte[], byte[]>> buffer = new ArrayDeque<>();
+
+        // The offsets not read yet are from lower up to upper
+        private long lower;
+        private long upper;
+        private Future<Chunk> pending;
+        private ConsumerRecord<byte[], byte[]> head;
+        private boolean incomplete;
+
+        private PartitionCursor(TopicPartition partition, long beginning, long end, boolean backwards, int chunkSize) {
+            this.partition = partition;
+            this.backwards = backwards;
+            this.chunkSize = chunkSize;
+            this.lower = beginning;
+            this.upper = end;
+        }
+
+        /**
+         * @return the next message of the partition in page order
+         */
+        private ConsumerRecord<byte[], byte[]> head() {
+            return head;
+        }
+
+        /**
+         * @return true if the partition could not be read as far as the page needed
+         */
+        private boolean isIncomplete() {
+            return incomplete;
+        }
+
+        /**
+         * Start reading the next chunk, unless it is already being read or the partition is read.
+         */
+        private void prefetch(long deadline) {
+            if (pending != null || incomplete || lower >= upper) {
+                return;
+            }
+            long from = backwards ? Math.max(lower, upper - chunkSize) : lower;
+            long to = backwards ? upper : Math.min(upper, lower + chunkSize);
+            if (backwards) {
+                upper = from;
+            } else {
+                lower = to;
+            }
+            try {
+                pending = fetchExecutor.submit(() -> readRange(partition, from, to, deadline));
+            } catch (RejectedExecutionException e) {
+                incomplete = true;
+            }
+        }
+
+        /**
+         * Move to the next message, waiting for the next chunk when the current one is used up.
+         *
+         * @return false if the partition has no more messages for the page
+         */
+        private boolean advance(long deadline) {
+            while (buffer.isEmpty()) {
+                prefetch(deadline);
+                if (pending == null) {
+                    head = null;
+                    return false;
+                }
+                Chunk chunk = await(deadline);
+                pending = null;
+                if (chunk == null || !chunk.complete) {
+                    incomplete = true;
+                    // An unfinished chunk holds the oldest messages of its range, which only
+                    // continue the page when it is read oldest first
+                    if (chunk != null && !backwards) {
+                        buffer.addAll(chunk.records);
+                    }
+                    lower = upper;
+                    if (buffer.isEmpty()) {
+                        head = null;
+                        return false;
+                    }
+                } else {
+                    if (backwards) {
+                        chunk.records.forEach(buffer::addFirst);
+                    } else {
+                        buffer.addAll(chunk.records);
+                    }
+                    // Read the next chunk while the merge uses this one
+                    prefetch(deadline);
+                }
+            }
+            head = buffer.poll();
+            return true;
+        }
+
+        /**
+         * Drop the chunk being read ahead once the page no longer needs it. A read that has
+         * started is left to finish so its consumer goes back to the pool.
+         */
+        private void discard() {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        }
+
+        private Chunk await(long deadline) {
+            try {
+                // Fetches end themselves at the deadline, the grace only covers handing back the result
+                return pending.get(Math.max(0, deadline - System.currentTimeMillis()) + 1000, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("Fetch of {} did not finish within {} ms", partition, timeoutMs);
+                pending.cancel(true);
+            } catch (ExecutionException e) {
+                log.warn("Error fetching messages from {}: {}", partition, e.getCause().toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A filter on the records of a live topic stream.
+ * <p>
+ * A filter is compiled once, when a client opens its stream, and evaluated before a record is
+ * converted or serialized, so records that do not match never cost more than the check. The
+ * criteria whose cost does not depend on the client's input, the partitions, the exact key and the
+ * headers, are checked by {@link #prefilter} on the shared stream consumer thread, so records the
+ * client never receives are not queued for it. The key pattern and the JSONPath expression can be
+ * arbitrarily costly, so they are checked by {@link #matches} in the client's own send loop, where
+ * a costly filter only holds up the client that sent it. A record matches if it passes every
+ * criterion:
+ * <ul>
+ *     <li>its key equals the given key, or contains a match of the key pattern</li>
+ *     <li>it has every given header, with the given value where one is given</li>
+ *     <li>the JSONPath expression selects a non-null value from its value</li>
+ *     <li>it is in one of the given partitions</li>
+ * </ul>
+ * A JSONPath filter on the root, such as {@code $[?(@.status == 'FAILED')]}, selects the value
+ * itself when the predicate holds. Values that are not JSON never match a JSONPath expression.
+ */
+public final class StreamFilter {
+
+    /**
+     * The filter that matches every record.
+     */
+    public static final StreamFilter NONE = new StreamFilter(null, null, List.of(), null, null, null);
+
+    /**
+     * JSONPath configuration used to parse values and evaluate expressions.
+     * Missing paths evaluate to null (or an empty list for indefinite paths) instead of throwing.
+     */
+    static final Configuration JSON_PATH_CONFIGURATION = Configuration.builder()
+            .jsonProvider(new JacksonJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .options(Option.SUPPRESS_EXCEPTIONS)
+            .build();
+
+    private final byte[] key;
+    private final Pattern keyPattern;
+    private final List<HeaderCriterion> headers;
+    private final JsonPath valuePath;
+    private final int[] partitions;
+    private final String description;
+
+    private StreamFilter(String key, Pattern keyPattern, List<HeaderCriterion> headers, JsonPath valuePath,
+                         int[] partitions, String description) {
+        this.key = key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+        this.keyPattern = keyPattern;
+        this.headers = headers;
+        this.valuePath = valuePath;
+        this.partitions = partitions;
+        this.description = description;
+    }
+
+    /**
+     * Compile a filter.
+     *
+     * @param key the key records must have, or null
+     * @param keyRegex a pattern keys must contain a match of, or null
+     * @param headers headers records must have, each as {@code name} or {@code name=value}, or null
+     * @param valuePath a JSONPath expression that must select a value from the record value, or null
+     * @param partitions the partitions records must be in, or null
+     * @param partitionCount the number of partitions of the topic
+     * @return the filter, {@link #NONE} if no criterion is given
+     * @throws IllegalArgumentException if the pattern, the expression or a partition is invalid
+     */
+    public static StreamFilter compile(String key, String keyRegex, Collection<String> headers, String valuePath,
+                                       Collection<Integer> partitions, int partitionCount) {
+        List<String> description = new ArrayList<>();
+
+        Pattern keyPattern = null;
+        if (StringUtils.hasLength(keyRegex)) {
+            try {
+                keyPattern = Pattern.compile(keyRegex);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid key pattern '" + keyRegex + "': " + e.getDescription(), e);
+            }
+            description.add("key ~ " + keyRegex);
+        }
+        if (key != null) {
+            description.add("key = " + key);
+        }
+
+        List<HeaderCriterion> headerCriteria = new ArrayList<>();
+        if (headers != null) {
+            for (String header : headers) {
+                if (!StringUtils.hasText(header)) {
+                    continue;
+                }
+                int separator = header.indexOf('=');
+                headerCriteria.add(separator < 0
+                        ? new HeaderCriterion(header.trim(), null)
+                        : new HeaderCriterion(header.substring(0, separator).trim(), header.substring(separator + 1)));
+                description.add("header " + header);
+            }
+        }
+
+        JsonPath path = null;
+        if (StringUtils.hasText(valuePath)) {
+            try {
+                path = JsonPath.compile(valuePath);
+            } catch (InvalidPathException e) {
+                throw new IllegalArgumentException("Invalid JSON path '" + valuePath + "': " + e.getMessage(), e);
+            }
+            description.add("value " + valuePath);
+        }
+
+        int[] partitionSet = null;
+        if (partitions != null && !partitions.isEmpty()) {
+            TreeSet<Integer> sorted = new TreeSet<>(partitions);
+            for (int partition : sorted) {
+                if (partition < 0 || partition >= partitionCount) {
+                    throw new IllegalArgumentException("Invalid partition " + partition + ", the topic has "
+                            + partitionCount + " partitions");
+                }
+            }
+            partitionSet = sorted.stream().mapToInt(Integer::intValue).toArray();
+            description.add("partition in " + sorted);
+        }
+
+        if (description.isEmpty()) {
+            return NONE;
+        }
+        return new StreamFilter(key, keyPattern, List.copyOf(headerCriteria), path, partitionSet,
+                String.join(" and ", description));
+    }
+
+    /**
+     * Parse a comma-separated list of partitions.
+     *
+     * @param partitions the partitions, such as {@code 0,2,5}, or null
+     * @return the partitions, or null if none are given
+     * @throws IllegalArgumentException if a partition is not a number
+     */
+    public static List<Integer> parsePartitions(String partitions) {
+        if (!StringUtils.hasText(partitions)) {
+            return null;
+        }
+        List<Integer> parsed = new ArrayList<>();
+        for (String partition : partitions.split(",")) {
+            if (StringUtils.hasText(partition)) {
+                try {
+                    parsed.add(Integer.parseInt(partition.trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid partition '" + partition.trim() + "'", e);
+                }
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * @return true if the filter matches every record
+     */
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    /**
+     * Check the criteria of the filter whose cost is bounded: the partitions, the exact key and the
+     * headers. Called on the stream consumer thread.
+     *
+     * @param record the record
+     * @return true if the record passes these criteria
+     */
+    public boolean prefilter(ConsumerRecord<byte[], byte[]> record) {
+        if (this == NONE) {
+            return true;
+        }
+        if (partitions != null && Arrays.binarySearch(partitions, record.partition()) < 0) {
+            return false;
+        }
+        if (key != null && !Arrays.equals(key, record.key())) {
+            return false;
+        }
+        for (HeaderCriterion header : headers) {
+            if (!header.matches(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the criteria of the filter that the client's input makes costly: the key pattern and
+     * the JSONPath expression. Called in the client's send loop, for records that passed
+     * {@link #prefilter}.
+     *
+     * @param record the record, which also caches its decoded key and parsed value for other clients
+     * @return true if the record passes these criteria
+     */
+    public boolean matches(StreamRecord record) {
+        if (keyPattern != null && (record.getKey() == null || !keyPattern.matcher(record.getKey()).find())) {
+            return false;
+        }
+        if (valuePath != null) {
+            Object document = record.getDocument();
+            if (document == null) {
+                return false;
+            }
+            Object result = valuePath.read(document, JSON_PATH_CONFIGURATION);
+            return result != null && !(result instanceof List && ((List<?>) result).isEmpty());
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return description != null ? description : "none";
+    }
+
+    private static final class HeaderCriterion {
+
+        private final String name;
+        private final byte[] value;
+
+        private HeaderCriterion(String name, String value) {
+            this.name = name;
+            this.value = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+        }
+
+        private boolean matches(ConsumerRecord<byte[], byte[]> record) {
+            for (Header header : record.headers().headers(name)) {
+                if (value == null || Arrays.equals(value, header.value())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
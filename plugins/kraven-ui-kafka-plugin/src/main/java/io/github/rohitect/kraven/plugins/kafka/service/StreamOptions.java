@@ -0,0 +1,47 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * How records are delivered to one client of a live topic stream.
+ * The defaults come from the plugin configuration, and a client can override them when it opens
+ * the stream.
+ */
+@Value
+@Builder(toBuilder = true)
+public class StreamOptions {
+
+    /**
+     * The number of records that can be queued for the client.
+     */
+    int queueCapacity;
+
+    /**
+     * What to do with a record when the queue is full.
+     */
+    StreamSubscription.OverflowPolicy overflowPolicy;
+
+    /**
+     * How long records are collected into one frame, or 0 to send every record as its own event.
+     */
+    long batchMs;
+
+    /**
+     * The most records in one frame; a full frame is sent without waiting for the batch interval.
+     */
+    int batchSize;
+
+    /**
+     * The records the client receives.
+     */
+    @Builder.Default
+    StreamFilter filter = StreamFilter.NONE;
+
+    /**
+     * @return true if records are sent in frames of several records
+     */
+    public boolean isBatched() {
+        return batchMs > 0;
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaMessage;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * A consumed record on its way to the clients of a live topic stream.
+ * <p>
+ * The same instance is queued for every client of the topic, and the send loops of the clients
+ * read it concurrently. The key is decoded, the value parsed and the record converted to a
+ * {@link KafkaMessage} at most once, and only when a client's filter or a send needs it.
+ */
+public final class StreamRecord {
+
+    private static final Object INVALID = new Object();
+
+    private final ConsumerRecord<byte[], byte[]> record;
+    private final Function<ConsumerRecord<byte[], byte[]>, KafkaMessage> converter;
+
+    private String key;
+    private boolean keyDecoded;
+    private Object document;
+    private KafkaMessage message;
+
+    /**
+     * @param record the consumed record
+     * @param converter converts the record to the message sent to clients
+     */
+    public StreamRecord(ConsumerRecord<byte[], byte[]> record, Function<ConsumerRecord<byte[], byte[]>, KafkaMessage> converter) {
+        this.record = record;
+        this.converter = converter;
+    }
+
+    /**
+     * @return the consumed record
+     */
+    public ConsumerRecord<byte[], byte[]> getRecord() {
+        return record;
+    }
+
+    /**
+     * @return the key decoded as UTF-8, or null if the record has no key
+     */
+    public synchronized String getKey() {
+        if (!keyDecoded) {
+            key = record.key() != null ? new String(record.key(), StandardCharsets.UTF_8) : null;
+            keyDecoded = true;
+        }
+        return key;
+    }
+
+    /**
+     * @return the value parsed for JSONPath evaluation, or null if it is not JSON
+     */
+    public synchronized Object getDocument() {
+        if (document == null) {
+            document = INVALID;
+            if (record.value() != null && record.value().length > 0) {
+                try {
+                    document = StreamFilter.JSON_PATH_CONFIGURATION.jsonProvider()
+                            .parse(new String(record.value(), StandardCharsets.UTF_8));
+                } catch (RuntimeException e) {
+                    // Not JSON
+                }
+            }
+        }
+        return document != INVALID ? document : null;
+    }
+
+    /**
+     * @return the message sent to clients
+     */
+    public synchronized KafkaMessage getMessage() {
+        if (message == null) {
+            message = converter.apply(record);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,338 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaMessage;
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaStreamSubscription;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One SSE client of a live topic stream.
+ * <p>
+ * Records are handed to a subscription by the stream consumer thread and put in a bounded queue
+ * without blocking. A send loop on a shared executor takes them from the queue and writes them to
+ * the emitter, so a slow client only ever holds up its own queue. A send loop runs only while
+ * the queue has records, and at most one runs per subscription. When the queue is full, the
+ * subscription's {@link OverflowPolicy} decides what happens. The send loop also checks the
+ * costly criteria of the client's {@link StreamFilter} before a record is converted, so a slow
+ * key pattern or JSONPath expression only holds up the client that sent it.
+ * <p>
+ * In batch mode, records are collected for an interval and sent as one {@code messages} event
+ * holding a JSON array, so a busy topic costs one serialization and one flush per frame instead
+ * of per record.
+ */
+@Slf4j
+public class StreamSubscription {
+
+    /**
+     * What to do with a record when a client's queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the oldest queued record to make room, so the client stays on the latest records.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new record, so the client sees an unbroken run of older records.
+         */
+        DROP_NEWEST,
+        /**
+         * Close the stream, so the client knows it has fallen behind.
+         */
+        DISCONNECT;
+
+        /**
+         * Parse a policy from its configuration name, such as {@code drop-oldest}.
+         *
+         * @param name the policy name
+         * @return the policy
+         * @throws IllegalArgumentException if the name is not a policy
+         */
+        public static OverflowPolicy of(String name) {
+            return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+
+        /**
+         * @return the configuration name of the policy
+         */
+        public String getName() {
+            return name().replace('_', '-').toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String topic;
+    private final SseEmitter emitter;
+    private final StreamOptions options;
+    private final int capacity;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<StreamSubscription> onClose;
+    private final long connectedAt = System.currentTimeMillis();
+
+    private final ArrayDeque<StreamRecord> queue;
+    private boolean draining;
+    private ScheduledFuture<?> batchTimer;
+    private boolean closed;
+    private long dropped;
+    private long sent;
+    private long filtered;
+
+    /**
+     * @param topic the streamed topic
+     * @param emitter the client's emitter
+     * @param options how records are queued and sent
+     * @param executor runs the send loop
+     * @param scheduler starts the send loop when a batch interval ends
+     * @param onClose called once when the subscription is closed because of a failed send or an overflow
+     */
+    public StreamSubscription(String topic, SseEmitter emitter, StreamOptions options, Executor executor,
+                              ScheduledExecutorService scheduler, Consumer<StreamSubscription> onClose) {
+        this.topic = topic;
+        this.emitter = emitter;
+        this.options = options;
+        this.capacity = Math.max(1, options.getQueueCapacity());
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.onClose = onClose;
+        this.queue = new ArrayDeque<>(Math.min(this.capacity, 1024));
+    }
+
+    /**
+     * @return the emitter of the subscription
+     */
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * Check whether the client may receive a record, with the cheap criteria of its filter.
+     * Called on the stream consumer thread.
+     *
+     * @param record the record
+     * @return true if the record passes the prefilter
+     */
+    public boolean accepts(ConsumerRecord<byte[], byte[]> record) {
+        if (options.getFilter().prefilter(record)) {
+            return true;
+        }
+        synchronized (this) {
+            filtered++;
+        }
+        return false;
+    }
+
+    /**
+     * Queue a record for the client. Never blocks.
+     * In batch mode, the send loop starts when the batch interval of the first queued record ends,
+     * or as soon as a full batch is queued.
+     *
+     * @param record the record
+     * @return false if the subscription is closed
+     */
+    public boolean offer(StreamRecord record) {
+        boolean disconnect = false;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (queue.size() >= capacity) {
+                dropped++;
+                switch (options.getOverflowPolicy()) {
+                    case DROP_OLDEST:
+                        queue.poll();
+                        queue.add(record);
+                        break;
+                    case DROP_NEWEST:
+                        break;
+                    default:
+                        closed = true;
+                        dropped += queue.size();
+                        queue.clear();
+                        cancelBatchTimer();
+                        disconnect = true;
+                }
+            } else {
+                queue.add(record);
+            }
+
+            if (!disconnect) {
+                boolean fullBatch = !options.isBatched() || queue.size() >= options.getBatchSize();
+                if (draining) {
+                    // Send a full batch now instead of at the end of the interval
+                    if (!fullBatch || batchTimer == null || !batchTimer.cancel(false)) {
+                        return true;
+                    }
+                    batchTimer = null;
+                } else {
+                    draining = true;
+                    if (!fullBatch) {
+                        scheduleDrain();
+                        return true;
+                    }
+                }
+            }
+        }
+
+        if (disconnect) {
+            log.debug("Disconnecting SSE emitter {} of topic {} after its queue of {} records overflowed",
+                    id, topic, capacity);
+            execute(this::disconnect);
+        } else {
+            execute(this::drain);
+        }
+        return !disconnect;
+    }
+
+    /**
+     * Close the subscription and discard its queued records. The emitter is left as it is.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+            cancelBatchTimer();
+        }
+    }
+
+    /**
+     * @return the state and counters of the subscription
+     */
+    public synchronized KafkaStreamSubscription getStatistics() {
+        return KafkaStreamSubscription.builder()
+                .id(id)
+                .topic(topic)
+                .overflowPolicy(options.getOverflowPolicy().getName())
+                .queueCapacity(capacity)
+                .batchMs(options.getBatchMs())
+                .batchSize(options.isBatched() ? options.getBatchSize() : 1)
+                .filter(options.getFilter().isEmpty() ? null : options.getFilter().toString())
+                .filtered(filtered)
+                .queued(queue.size())
+                .dropped(dropped)
+                .sent(sent)
+                .connectedAt(connectedAt)
+                .build();
+    }
+
+    /**
+     * Send queued records until the queue is empty. In batch mode, records are sent in frames of
+     * up to a batch each, and a remainder smaller than a batch waits for the next interval.
+     * Records that do not match the filter are skipped before they are converted.
+     */
+    private void drain() {
+        while (true) {
+            List<StreamRecord> taken = new ArrayList<>();
+            synchronized (this) {
+                if (closed || queue.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                int size = options.isBatched() ? options.getBatchSize() : 1;
+                while (taken.size() < size && !queue.isEmpty()) {
+                    taken.add(queue.poll());
+                }
+            }
+
+            List<KafkaMessage> batch = new ArrayList<>(taken.size());
+            for (StreamRecord record : taken) {
+                if (options.getFilter().matches(record)) {
+                    batch.add(record.getMessage());
+                }
+            }
+
+            try {
+                if (options.isBatched() && !batch.isEmpty()) {
+                    emitter.send(SseEmitter.event()
+                            .name("messages")
+                            .data(batch));
+                } else if (!batch.isEmpty()) {
+                    emitter.send(SseEmitter.event()
+                            .name("message")
+                            .data(batch.get(0)));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Error sending message to SSE emitter {} of topic {}: {}", id, topic, e.getMessage());
+                synchronized (this) {
+                    draining = false;
+                }
+                fail();
+                return;
+            }
+
+            synchronized (this) {
+                sent += batch.size();
+                filtered += taken.size() - batch.size();
+                if (options.isBatched() && !closed && !queue.isEmpty() && queue.size() < options.getBatchSize()) {
+                    scheduleDrain();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Start the send loop when the batch interval ends. Called with the lock held.
+     */
+    private void scheduleDrain() {
+        try {
+            batchTimer = scheduler.schedule(() -> {
+                synchronized (this) {
+                    batchTimer = null;
+                }
+                execute(this::drain);
+            }, options.getBatchMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The scheduler is shut down with the application
+            draining = false;
+            closed = true;
+            queue.clear();
+        }
+    }
+
+    private void cancelBatchTimer() {
+        if (batchTimer != null) {
+            batchTimer.cancel(false);
+            batchTimer = null;
+        }
+    }
+
+    private void disconnect() {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("overflow")
+                    .data("The stream fell more than " + capacity + " records behind and was closed"));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Error closing SSE emitter {} of topic {}: {}", id, topic, e.getMessage());
+        }
+        onClose.accept(this);
+    }
+
+    private void fail() {
+        close();
+        onClose.accept(this);
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The executor is shut down with the application
+            fail();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the KafkaStreamEngine class.
+ */
+class KafkaStreamEngineTest {
+
+    private static final TopicPartition ORDERS_0 = new TopicPartition("orders", 0);
+    private static final TopicPartition ORDERS_1 = new TopicPartition("orders", 1);
+    private static final TopicPartition PAYMENTS_0 = new TopicPartition("payments", 0);
+
+    private MockConsumer<byte[], byte[]> consumer;
+    private List<ConsumerRecord<byte[], byte[]>> received;
+    private KafkaStreamEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.LATEST);
+        consumer.updatePartitions("orders", partitions("orders", 2));
+        consumer.updatePartitions("payments", partitions("payments", 1));
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        endOffsets.put(ORDERS_0, 5L);
+        endOffsets.put(ORDERS_1, 3L);
+        endOffsets.put(PAYMENTS_0, 7L);
+        consumer.updateEndOffsets(endOffsets);
+
+        received = new CopyOnWriteArrayList<>();
+        engine = new KafkaStreamEngine(() -> consumer, received::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testNewPartitionsStartAtLogEnd() {
+        engine.setTopics(Set.of("orders"));
+        await(() -> consumer.assignment().equals(Set.of(ORDERS_0, ORDERS_1)));
+        assertEquals(5L, consumer.position(ORDERS_0));
+        assertEquals(3L, consumer.position(ORDERS_1));
+
+        // Records before the log end were produced before the client subscribed
+        consumer.addRecord(record(ORDERS_0, 2));
+        consumer.addRecord(record(ORDERS_0, 5));
+        consumer.addRecord(record(ORDERS_1, 3));
+        await(() -> received.size() == 2);
+
+        assertEquals(List.of("orders-0@5", "orders-1@3"), describe(received));
+    }
+
+    @Test
+    void testReassignmentKeepsPositionsOfRemainingPartitions() {
+        engine.setTopics(Set.of("orders"));
+        await(() -> consumer.assignment().size() == 2);
+        consumer.addRecord(record(ORDERS_0, 5));
+        await(() -> received.size() == 1);
+
+        engine.setTopics(Set.of("orders", "payments"));
+        await(() -> consumer.assignment().equals(Set.of(ORDERS_0, ORDERS_1, PAYMENTS_0)));
+        assertEquals(6L, consumer.position(ORDERS_0));
+        assertEquals(7L, consumer.position(PAYMENTS_0));
+
+        consumer.addRecord(record(ORDERS_0, 6));
+        consumer.addRecord(record(PAYMENTS_0, 7));
+        await(() -> received.size() == 3);
+
+        engine.setTopics(Set.of("payments"));
+        await(() -> consumer.assignment().equals(Set.of(PAYMENTS_0)));
+        assertEquals(8L, consumer.position(PAYMENTS_0));
+    }
+
+    @Test
+    void testUnknownTopicIsNotAssigned() {
+        engine.setTopics(Set.of("orders", "missing"));
+        await(() -> consumer.assignment().size() == 2);
+
+        assertEquals(Set.of(ORDERS_0, ORDERS_1), consumer.assignment());
+    }
+
+    @Test
+    void testLastTopicStopsEngine() {
+        engine.setTopics(Set.of("orders"));
+        assertTrue(engine.isRunning());
+        await(() -> consumer.assignment().size() == 2);
+
+        engine.setTopics(Set.of());
+        assertFalse(engine.isRunning());
+        await(consumer::closed);
+    }
+
+    private static List<PartitionInfo> partitions(String topic, int count) {
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int partition = 0; partition < count; partition++) {
+            partitions.add(new PartitionInfo(topic, partition, null, null, null));
+        }
+        return partitions;
+    }
+
+    private static ConsumerRecord<byte[], byte[]> record(TopicPartition partition, long offset) {
+        return new ConsumerRecord<>(partition.topic(), partition.partition(), offset, null, new byte[0]);
+    }
+
+    private static List<String> describe(List<ConsumerRecord<byte[], byte[]>> records) {
+        List<String> descriptions = new ArrayList<>();
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            descriptions.add(record.topic() + "-" + record.partition() + "@" + record.offset());
+        }
+        descriptions.sort(null);
+        return descriptions;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met within 5 seconds");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the KafkaTopicBrowser class.
+ */
+class KafkaTopicBrowserTest {
+
+    private static final TopicPartition ORDERS_0 = new TopicPartition("orders", 0);
+    private static final TopicPartition ORDERS_1 = new TopicPartition("orders", 1);
+
+    // Partition 0 has even timestamps at offsets 0 to 4, partition 1 odd timestamps at offsets 10 to 14
+    private final Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> topic = Map.of(
+            ORDERS_0, records(ORDERS_0, 0, 0),
+            ORDERS_1, records(ORDERS_1, 10, 1));
+    private final Set<TopicPartition> stalled = ConcurrentHashMap.newKeySet();
+    private final List<TopicConsumer> consumers = new ArrayList<>();
+    private KafkaTopicBrowser browser;
+
+    @AfterEach
+    void tearDown() {
+        if (browser != null) {
+            browser.close();
+        }
+    }
+
+    @Test
+    void testOldestFirstPagesMergePartitionsByTimestamp() {
+        browser = browser(5000);
+
+        assertEquals(List.of(0L, 1L, 2L), timestamps(browser.browse("orders", 3, 0, false)));
+        assertEquals(List.of(3L, 4L, 5L), timestamps(browser.browse("orders", 3, 3, false)));
+        assertEquals(List.of(9L), timestamps(browser.browse("orders", 3, 9, false)));
+        assertTrue(browser.browse("orders", 3, 10, false).getRecords().isEmpty());
+    }
+
+    @Test
+    void testNewestFirstPagesReadBackwardsFromEnd() {
+        browser = browser(5000);
+
+        assertEquals(List.of(9L, 8L, 7L), timestamps(browser.browse("orders", 3, 0, true)));
+        assertEquals(List.of(6L, 5L, 4L), timestamps(browser.browse("orders", 3, 3, true)));
+        // Deeper pages take several chunks of each partition
+        assertEquals(List.of(3L, 2L), timestamps(browser.browse("orders", 2, 6, true)));
+        assertEquals(List.of(0L), timestamps(browser.browse("orders", 2, 9, true)));
+        assertFalse(browser.browse("orders", 2, 6, true).isPartial());
+    }
+
+    @Test
+    void testPageIsPartialWhenPartitionRunsOutOfTime() {
+        browser = browser(300);
+        stalled.add(ORDERS_1);
+
+        KafkaTopicBrowser.Page page = browser.browse("orders", 3, 0, true);
+        assertTrue(page.isPartial());
+        // The page holds the newest records of the partitions that were read, never older ones
+        assertEquals(List.of(8L, 6L, 4L), timestamps(page));
+    }
+
+    @Test
+    void testCountsAndSingleMessages() {
+        browser = browser(5000);
+
+        assertEquals(10, browser.count("orders"));
+        assertEquals(2, browser.partitionCount("orders"));
+        assertEquals(12, browser.fetch("orders", 1, 12).offset());
+        assertNull(browser.fetch("orders", 1, 2));
+        assertNull(browser.fetch("orders", 5, 0));
+    }
+
+    @Test
+    void testUnknownTopicIsEmpty() {
+        browser = browser(5000);
+
+        assertEquals(0, browser.count("missing"));
+        assertEquals(0, browser.partitionCount("missing"));
+        KafkaTopicBrowser.Page page = browser.browse("missing", 10, 0, true);
+        assertTrue(page.getRecords().isEmpty());
+        assertFalse(page.isPartial());
+    }
+
+    @Test
+    void testConsumersArePooled() {
+        browser = browser(5000);
+        for (int i = 0; i < 5; i++) {
+            browser.browse("orders", 3, 0, i % 2 == 0);
+        }
+
+        assertTrue(consumers.size() <= 2);
+        browser.close();
+        assertTrue(consumers.stream().allMatch(MockConsumer::closed));
+    }
+
+    private KafkaTopicBrowser browser(long timeoutMs) {
+        return new KafkaTopicBrowser(() -> {
+            TopicConsumer consumer = new TopicConsumer();
+            synchronized (consumers) {
+                consumers.add(consumer);
+            }
+            return consumer;
+        }, 2, timeoutMs);
+    }
+
+    private static List<ConsumerRecord<byte[], byte[]>> records(TopicPartition partition, long firstOffset, long firstTimestamp) {
+        List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            records.add(new ConsumerRecord<>(partition.topic(), partition.partition(), firstOffset + i,
+                    firstTimestamp + 2L * i, TimestampType.CREATE_TIME, ConsumerRecord.NULL_SIZE,
+                    ConsumerRecord.NULL_SIZE, null, new byte[0], new RecordHeaders(), Optional.empty()));
+        }
+        return records;
+    }
+
+    private static List<Long> timestamps(KafkaTopicBrowser.Page page) {
+        List<Long> timestamps = new ArrayList<>();
+        for (ConsumerRecord<byte[], byte[]> record : page.getRecords()) {
+            timestamps.add(record.timestamp());
+        }
+        return timestamps;
+    }
+
+    /**
+     * A consumer of the test topic. Each poll returns up to two records from the position of each
+     * assigned partition, so ranges take several polls; stalled partitions return nothing.
+     */
+    private final class TopicConsumer extends MockConsumer<byte[], byte[]> {
+
+        private TopicConsumer() {
+            super(OffsetResetStrategy.LATEST);
+            List<PartitionInfo> partitions = new ArrayList<>();
+            Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+            Map<TopicPartition, Long> endOffsets = new HashMap<>();
+            for (Map.Entry<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> entry : topic.entrySet()) {
+                List<ConsumerRecord<byte[], byte[]>> records = entry.getValue();
+                partitions.add(new PartitionInfo("orders", entry.getKey().partition(), null, null, null));
+                beginningOffsets.put(entry.getKey(), records.get(0).offset());
+                endOffsets.put(entry.getKey(), records.get(records.size() - 1).offset() + 1);
+            }
+            updatePartitions("orders", partitions);
+            updateBeginningOffsets(beginningOffsets);
+            updateEndOffsets(endOffsets);
+        }
+
+        @Override
+        public synchronized ConsumerRecords<byte[], byte[]> poll(Duration timeout) {
+            for (TopicPartition partition : assignment()) {
+                if (stalled.contains(partition)) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    continue;
+                }
+                long position = position(partition);
+                topic.get(partition).stream()
+                        .filter(record -> record.offset() >= position)
+                        .limit(2)
+                        .forEach(this::addRecord);
+            }
+            return super.poll(timeout);
+        }
+    }
+}
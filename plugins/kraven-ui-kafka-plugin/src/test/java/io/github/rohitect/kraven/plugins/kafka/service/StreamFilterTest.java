@@ -0,0 +1,136 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaMessage;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the StreamFilter class.
+ */
+class StreamFilterTest {
+
+    @Test
+    void testNoCriteriaMatchesEverything() {
+        StreamFilter filter = StreamFilter.compile(null, "", List.of(" "), null, List.of(), 3);
+
+        assertSame(StreamFilter.NONE, filter);
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.prefilter(record(0, "a", "not json")));
+        assertTrue(filter.matches(new StreamRecord(record(0, null, null), r -> null)));
+        assertEquals("none", filter.toString());
+    }
+
+    @Test
+    void testPartitionsAreCheckedInPrefilter() {
+        StreamFilter filter = StreamFilter.compile(null, null, null, null, List.of(2, 0, 2), 3);
+
+        assertTrue(filter.prefilter(record(0, "a", "{}")));
+        assertFalse(filter.prefilter(record(1, "a", "{}")));
+        assertTrue(filter.prefilter(record(2, "a", "{}")));
+        assertEquals("partition in [0, 2]", filter.toString());
+    }
+
+    @Test
+    void testPartitionsOutsideTopicAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> StreamFilter.compile(null, null, null, null, List.of(3), 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> StreamFilter.compile(null, null, null, null, List.of(2000000000), 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> StreamFilter.compile(null, null, null, null, List.of(-1), 3));
+    }
+
+    @Test
+    void testParsePartitions() {
+        assertNull(StreamFilter.parsePartitions(null));
+        assertNull(StreamFilter.parsePartitions(" "));
+        assertEquals(List.of(0, 3, 5), StreamFilter.parsePartitions("0, 3,,5"));
+        assertThrows(IllegalArgumentException.class, () -> StreamFilter.parsePartitions("0,x"));
+    }
+
+    @Test
+    void testKeyAndHeadersAreCheckedInPrefilter() {
+        StreamFilter filter = StreamFilter.compile("order-42", null, List.of("traceId", "source=billing"), null, null, 1);
+        ConsumerRecord<byte[], byte[]> record = record(0, "order-42", "{}");
+
+        assertFalse(filter.prefilter(record));
+        record.headers().add("traceId", new byte[0]);
+        assertFalse(filter.prefilter(record));
+        record.headers().add("source", "shipping".getBytes(StandardCharsets.UTF_8));
+        assertFalse(filter.prefilter(record));
+        record.headers().add("source", "billing".getBytes(StandardCharsets.UTF_8));
+        assertTrue(filter.prefilter(record));
+
+        ConsumerRecord<byte[], byte[]> other = record(0, "order-43", "{}");
+        other.headers().add("traceId", new byte[0]);
+        other.headers().add("source", "billing".getBytes(StandardCharsets.UTF_8));
+        assertFalse(filter.prefilter(other));
+    }
+
+    @Test
+    void testKeyPatternIsCheckedInSendLoop() {
+        StreamFilter filter = StreamFilter.compile(null, "^eu-", null, null, null, 1);
+
+        // The prefilter leaves costly criteria to the send loop
+        assertTrue(filter.prefilter(record(0, "us-1", "{}")));
+        assertTrue(filter.matches(streamRecord("eu-1", "{}")));
+        assertFalse(filter.matches(streamRecord("us-1", "{}")));
+        assertFalse(filter.matches(streamRecord(null, "{}")));
+        assertThrows(IllegalArgumentException.class, () -> StreamFilter.compile(null, "[", null, null, null, 1));
+    }
+
+    @Test
+    void testValuePathIsCheckedInSendLoop() {
+        StreamFilter filter = StreamFilter.compile(null, null, null, "$[?(@.status == 'FAILED')]", null, 1);
+
+        assertTrue(filter.matches(streamRecord("a", "{\"status\": \"FAILED\"}")));
+        assertFalse(filter.matches(streamRecord("a", "{\"status\": \"OK\"}")));
+        assertFalse(filter.matches(streamRecord("a", "not json")));
+        assertFalse(filter.matches(streamRecord("a", null)));
+
+        StreamFilter path = StreamFilter.compile(null, null, null, "$.items[?(@.quantity > 100)]", null, 1);
+        assertTrue(path.matches(streamRecord("a", "{\"items\": [{\"quantity\": 150}]}")));
+        assertFalse(path.matches(streamRecord("a", "{\"items\": [{\"quantity\": 5}]}")));
+        assertFalse(path.matches(streamRecord("a", "{}")));
+        assertThrows(IllegalArgumentException.class, () -> StreamFilter.compile(null, null, null, "$[", null, 1));
+    }
+
+    @Test
+    void testStreamRecordParsesAndConvertsOnce() {
+        AtomicInteger conversions = new AtomicInteger();
+        StreamRecord record = new StreamRecord(record(0, "a", "{\"status\": \"FAILED\"}"), r -> {
+            conversions.incrementAndGet();
+            return KafkaMessage.builder().offset(r.offset()).build();
+        });
+        StreamFilter failed = StreamFilter.compile(null, null, null, "$.status", null, 1);
+        StreamFilter keyed = StreamFilter.compile(null, "a", null, "$[?(@.status == 'FAILED')]", null, 1);
+
+        assertTrue(failed.matches(record));
+        assertTrue(keyed.matches(record));
+        Object document = record.getDocument();
+        assertSame(document, record.getDocument());
+        assertSame(record.getMessage(), record.getMessage());
+        assertEquals(1, conversions.get());
+    }
+
+    private static StreamRecord streamRecord(String key, String value) {
+        return new StreamRecord(record(0, key, value), r -> KafkaMessage.builder().build());
+    }
+
+    private static ConsumerRecord<byte[], byte[]> record(int partition, String key, String value) {
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] valueBytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+        return new ConsumerRecord<>("orders", partition, 0, 0L, TimestampType.CREATE_TIME,
+                ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, keyBytes, valueBytes,
+                new RecordHeaders(), Optional.empty());
+    }
+}
@@ -0,0 +1,314 @@
+package io.github.rohitect.kraven.plugins.kafka.service;
+
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaMessage;
+import io.github.rohitect.kraven.plugins.kafka.model.KafkaStreamSubscription;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the StreamSubscription class.
+ */
+class StreamSubscriptionTest {
+
+    private ManualExecutor executor;
+    private ScheduledExecutorService scheduler;
+    private RecordingEmitter emitter;
+    private List<StreamSubscription> closed;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ManualExecutor();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        emitter = new RecordingEmitter();
+        closed = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testRecordsAreSentInOrderByOneSendLoop() {
+        StreamSubscription subscription = subscribe(options(10, StreamSubscription.OverflowPolicy.DROP_OLDEST));
+        assertTrue(subscription.offer(record(0)));
+        assertTrue(subscription.offer(record(1)));
+        assertTrue(subscription.offer(record(2)));
+
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(List.of("message", "message", "message"), emitter.names);
+        assertEquals(List.of(0L, 1L, 2L), offsets(emitter.data));
+        KafkaStreamSubscription statistics = subscription.getStatistics();
+        assertEquals(3, statistics.getSent());
+        assertEquals(0, statistics.getQueued());
+        assertEquals(0, statistics.getDropped());
+
+        // The send loop ended with the queue, the next record starts a new one
+        assertTrue(subscription.offer(record(3)));
+        assertEquals(1, executor.tasks.size());
+    }
+
+    @Test
+    void testDropOldestKeepsLatestRecords() {
+        StreamSubscription subscription = subscribe(options(2, StreamSubscription.OverflowPolicy.DROP_OLDEST));
+        for (int offset = 0; offset < 4; offset++) {
+            assertTrue(subscription.offer(record(offset)));
+        }
+        assertEquals(2, subscription.getStatistics().getQueued());
+        executor.runAll();
+
+        assertEquals(List.of(2L, 3L), offsets(emitter.data));
+        assertEquals(2, subscription.getStatistics().getDropped());
+        assertEquals(2, subscription.getStatistics().getSent());
+    }
+
+    @Test
+    void testDropNewestKeepsOldestRecords() {
+        StreamSubscription subscription = subscribe(options(2, StreamSubscription.OverflowPolicy.DROP_NEWEST));
+        for (int offset = 0; offset < 4; offset++) {
+            assertTrue(subscription.offer(record(offset)));
+        }
+        executor.runAll();
+
+        assertEquals(List.of(0L, 1L), offsets(emitter.data));
+        assertEquals(2, subscription.getStatistics().getDropped());
+    }
+
+    @Test
+    void testDisconnectSendsOverflowAndCloses() {
+        StreamSubscription subscription = subscribe(options(2, StreamSubscription.OverflowPolicy.DISCONNECT));
+        assertTrue(subscription.offer(record(0)));
+        assertTrue(subscription.offer(record(1)));
+        assertFalse(subscription.offer(record(2)));
+        executor.runAll();
+
+        assertEquals(List.of("overflow"), emitter.names);
+        assertTrue(emitter.completed);
+        assertEquals(List.of(subscription), closed);
+        assertEquals(3, subscription.getStatistics().getDropped());
+        assertFalse(subscription.offer(record(3)));
+    }
+
+    @Test
+    void testFailedSendClosesSubscription() {
+        StreamSubscription subscription = subscribe(options(10, StreamSubscription.OverflowPolicy.DROP_OLDEST));
+        emitter.broken = true;
+        assertTrue(subscription.offer(record(0)));
+        assertTrue(subscription.offer(record(1)));
+        executor.runAll();
+
+        assertEquals(List.of(subscription), closed);
+        assertEquals(0, subscription.getStatistics().getQueued());
+        assertFalse(subscription.offer(record(2)));
+        assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    void testClosedSubscriptionDiscardsQueue() {
+        StreamSubscription subscription = subscribe(options(10, StreamSubscription.OverflowPolicy.DROP_OLDEST));
+        assertTrue(subscription.offer(record(0)));
+        subscription.close();
+        executor.runAll();
+
+        assertTrue(emitter.names.isEmpty());
+        assertTrue(closed.isEmpty());
+        assertFalse(subscription.offer(record(1)));
+    }
+
+    @Test
+    void testBatchWaitsForIntervalUntilFull() {
+        StreamSubscription subscription = subscribe(batchOptions(60000, 3));
+        assertTrue(subscription.offer(record(0)));
+        assertTrue(subscription.offer(record(1)));
+
+        // The batch timer holds the records until the interval ends
+        assertTrue(executor.tasks.isEmpty());
+        assertEquals(2, subscription.getStatistics().getQueued());
+
+        // A full batch cancels the timer and is sent at once
+        assertTrue(subscription.offer(record(2)));
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(List.of("messages"), emitter.names);
+        assertEquals(List.of(0L, 1L, 2L), offsets(emitter.data));
+        assertEquals(3, subscription.getStatistics().getSent());
+    }
+
+    @Test
+    void testRemainderWaitsForNextInterval() {
+        StreamSubscription subscription = subscribe(batchOptions(60000, 2));
+        assertTrue(subscription.offer(record(0)));
+        assertTrue(subscription.offer(record(1)));
+        assertTrue(subscription.offer(record(2)));
+        executor.runAll();
+
+        assertEquals(List.of("messages"), emitter.names);
+        assertEquals(List.of(0L, 1L), offsets(emitter.data));
+        assertEquals(1, subscription.getStatistics().getQueued());
+
+        // Completing the batch sends it without waiting for the interval
+        assertTrue(subscription.offer(record(3)));
+        executor.runAll();
+        assertEquals(List.of(0L, 1L, 2L, 3L), offsets(emitter.data));
+        assertEquals(0, subscription.getStatistics().getQueued());
+    }
+
+    @Test
+    void testBatchIntervalStartsSendLoop() throws InterruptedException {
+        StreamSubscription subscription = subscribe(batchOptions(20, 100));
+        assertTrue(subscription.offer(record(0)));
+        assertTrue(subscription.offer(record(1)));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.tasks.isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Batch interval did not end within 5 seconds");
+            Thread.sleep(10);
+        }
+        executor.runAll();
+
+        assertEquals(List.of("messages"), emitter.names);
+        assertEquals(List.of(0L, 1L), offsets(emitter.data));
+        assertEquals(1, emitter.data.size());
+    }
+
+    @Test
+    void testCloseCancelsBatchTimer() throws InterruptedException {
+        StreamSubscription subscription = subscribe(batchOptions(20, 100));
+        assertTrue(subscription.offer(record(0)));
+        subscription.close();
+
+        Thread.sleep(100);
+        executor.runAll();
+        assertTrue(emitter.names.isEmpty());
+    }
+
+    @Test
+    void testFilterIsCheckedInSendLoop() {
+        StreamOptions options = batchOptions(60000, 4).toBuilder()
+                .filter(StreamFilter.compile(null, "-[02]$", null, null, List.of(0), 1))
+                .build();
+        StreamSubscription subscription = subscribe(options);
+        for (int offset = 0; offset < 4; offset++) {
+            assertTrue(subscription.offer(record(offset)));
+        }
+        executor.runAll();
+
+        assertEquals(List.of(0L, 2L), offsets(emitter.data));
+        assertEquals(2, subscription.getStatistics().getFiltered());
+        assertEquals(2, subscription.getStatistics().getSent());
+    }
+
+    private StreamSubscription subscribe(StreamOptions options) {
+        return new StreamSubscription("orders", emitter, options, executor, scheduler, closed::add);
+    }
+
+    private static StreamOptions options(int capacity, StreamSubscription.OverflowPolicy policy) {
+        return StreamOptions.builder()
+                .queueCapacity(capacity)
+                .overflowPolicy(policy)
+                .batchMs(0)
+                .batchSize(1)
+                .build();
+    }
+
+    private static StreamOptions batchOptions(long batchMs, int batchSize) {
+        return StreamOptions.builder()
+                .queueCapacity(1000)
+                .overflowPolicy(StreamSubscription.OverflowPolicy.DROP_OLDEST)
+                .batchMs(batchMs)
+                .batchSize(batchSize)
+                .build();
+    }
+
+    static StreamRecord record(long offset) {
+        ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>("orders", 0, offset,
+                ("key-" + offset).getBytes(StandardCharsets.UTF_8), "{}".getBytes(StandardCharsets.UTF_8));
+        return new StreamRecord(record, r -> KafkaMessage.builder()
+                .key(new String(r.key(), StandardCharsets.UTF_8))
+                .partition(r.partition())
+                .offset(r.offset())
+                .build());
+    }
+
+    static List<Long> offsets(List<Object> data) {
+        List<Long> offsets = new ArrayList<>();
+        for (Object item : data) {
+            if (item instanceof List) {
+                for (Object message : (List<?>) item) {
+                    offsets.add(((KafkaMessage) message).getOffset());
+                }
+            } else {
+                offsets.add(((KafkaMessage) item).getOffset());
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Runs send loops when the test asks for it.
+     */
+    static final class ManualExecutor implements Executor {
+
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Records the name and data of every event sent, instead of writing them to a response.
+     */
+    static final class RecordingEmitter extends SseEmitter {
+
+        final List<String> names = new CopyOnWriteArrayList<>();
+        final List<Object> data = new CopyOnWriteArrayList<>();
+        volatile boolean broken;
+        volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            List<ResponseBodyEmitter.DataWithMediaType> parts = new ArrayList<>(builder.build());
+            String header = parts.get(0).getData().toString();
+            int name = header.indexOf("event:") + "event:".length();
+            names.add(header.substring(name, header.indexOf('\n', name)));
+            data.add(parts.get(1).getData());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
@@ -1,59 +1,93 @@
 package io.github.rohitect.kraven.plugins.mockserver;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.github.rohitect.kraven.plugins.mockserver.engine.BodyFile;
+import io.github.rohitect.kraven.plugins.mockserver.engine.CompiledEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.engine.CompiledResponse;
+import io.github.rohitect.kraven.plugins.mockserver.engine.Compressor;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ConcurrencyLimiter;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ConnectionFault;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ContentEncoding;
+import io.github.rohitect.kraven.plugins.mockserver.engine.DelayDistribution;
+import io.github.rohitect.kraven.plugins.mockserver.engine.JournalEntry;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ProxyForwarder;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RecordingStore;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RequestBody;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RequestJournal;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RouteMatch;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RoutingTable;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ServerMetrics;
+import io.github.rohitect.kraven.plugins.mockserver.engine.TemplateContext;
+import io.github.rohitect.kraven.plugins.mockserver.engine.Throttle;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ThrottledSender;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
 import io.github.rohitect.kraven.plugins.mockserver.service.DelayService;
+import io.github.rohitect.kraven.plugins.mockserver.service.MockConfigurationStore;
 import io.github.rohitect.kraven.plugins.mockserver.service.MockServerService;
 import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Receiver;
+import io.undertow.io.Sender;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
-import io.undertow.server.RoutingHandler;
 import io.undertow.server.handlers.PathHandler;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.ByteRange;
 import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
 import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.util.StringUtils;
+import org.xnio.IoUtils;
+import org.xnio.Options;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * The main Mock Server implementation.
- * This class manages the Undertow server and handles request routing.
+ * This class manages the Undertow server and handles request routing. Requests go through a
+ * single root handler that reads the current {@link RoutingTable} snapshot, so configuration
+ * reloads and endpoint changes at runtime take effect without restarting the listener.
  */
 @Slf4j
 public class MockServer {
 
+    private static final AttachmentKey<RequestTrace> TRACE_KEY = AttachmentKey.create(RequestTrace.class);
+
     private final MockServerConfig config;
-    private final ObjectMapper objectMapper;
-    private final AtomicReference<MockConfiguration> mockConfiguration;
-    private final Map<String, Map<String, MockResponse>> activeResponses;
-    private ScheduledExecutorService scheduler;
+    private final AtomicReference<RoutingTable> routingTable;
+    private final MockConfigurationStore configurationStore;
+    private final boolean ownsConfigurationStore;
+    private final Consumer<MockConfiguration> configurationListener = this::registerEndpoints;
     private final MockServerService mockServerService;
+    private final RequestJournal requestJournal;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final RecordingStore recordings;
     private DelayService delayService;
+    private ProxyForwarder proxy;
+    private boolean dispatchTemplates;
+    private ExecutorService templateExecutor;
 
     private Undertow server;
-    private long lastConfigModified = 0;
-    private boolean isShutdown = false;
 
     /**
      * Create a new MockServer with the given configuration.
@@ -66,20 +100,39 @@ public class MockServer {
 
     /**
      * Create a new MockServer with the given configuration and services.
+     * With a service, the server shares the service's configuration store, so the configuration
+     * is parsed once for both the server and the management API.
      *
      * @param config the server configuration
      * @param mockServerService the mock server service
      * @param delayService the delay service
      */
     public MockServer(MockServerConfig config, MockServerService mockServerService, DelayService delayService) {
+        this(config, mockServerService, delayService, null);
+    }
+
+    /**
+     * Create a new MockServer that records the requests it serves in the given journal.
+     *
+     * @param config the server configuration
+     * @param mockServerService the mock server service
+     * @param delayService the delay service
+     * @param requestJournal the request journal, or null for a journal of the server's own
+     */
+    public MockServer(MockServerConfig config, MockServerService mockServerService, DelayService delayService,
+                      RequestJournal requestJournal) {
         this.config = config;
         this.mockServerService = mockServerService;
         this.delayService = delayService;
-        this.objectMapper = new ObjectMapper();
-        this.mockConfiguration = new AtomicReference<>(new MockConfiguration());
-        this.activeResponses = new ConcurrentHashMap<>();
-        this.scheduler = Executors.newScheduledThreadPool(1);
-        this.isShutdown = false;
+        this.requestJournal = requestJournal != null
+                ? requestJournal
+                : new RequestJournal(config.getMaxHistoryEntries());
+        this.recordings = new RecordingStore(config.getMaxRecordings());
+        this.routingTable = new AtomicReference<>(RoutingTable.empty());
+        this.ownsConfigurationStore = mockServerService == null;
+        this.configurationStore = ownsConfigurationStore
+                ? new MockConfigurationStore(config, null)
+                : mockServerService.getConfigurationStore();
     }
 
     /**
@@ -97,25 +150,16 @@ public class MockServer {
      */
     public void start() {
         try {
-            // Check if the scheduler has been shut down and recreate it if necessary
-            if (isShutdown || scheduler.isShutdown() || scheduler.isTerminated()) {
-                log.info("Recreating scheduler as it was previously shut down");
-                scheduler = Executors.newScheduledThreadPool(1);
-                isShutdown = false;
+            // Publish the routing table for the current configuration and follow later changes
+            configurationStore.addListener(configurationListener);
+            HttpHandler routingHandler = this::handleRequest;
+            configureTemplateDispatch();
+            proxy = ProxyForwarder.of(config, config.isRecordingEnabled() ? recordings : null);
+            if (proxy != null) {
+                log.info("Forwarding unmatched requests to {}{}", proxy.getUpstream(),
+                        config.isRecordingEnabled() ? " and recording them" : "");
             }
 
-            // Load the initial configuration
-            loadConfiguration();
-
-            // Create the routing handler
-            RoutingHandler routingHandler = new RoutingHandler();
-
-            // Add a default handler for the root path
-            routingHandler.get("/", this::handleRootRequest);
-
-            // Register all endpoints from the configuration
-            registerEndpoints(routingHandler);
-
             // Create and start the server with the appropriate handler
             String basePath = config.getBasePath();
 
@@ -124,16 +168,14 @@ public class MockServer {
                 PathHandler pathHandler = new PathHandler();
                 pathHandler.addPrefixPath(basePath, routingHandler);
 
-                server = Undertow.builder()
-                        .addHttpListener(config.getPort(), config.getHost())
+                server = createServerBuilder()
                         .setHandler(pathHandler)
                         .build();
 
                 log.info("Using base path: {}", basePath);
             } else {
                 // If no base path is specified, use the routing handler directly
-                server = Undertow.builder()
-                        .addHttpListener(config.getPort(), config.getHost())
+                server = createServerBuilder()
                         .setHandler(routingHandler)
                         .build();
 
@@ -144,27 +186,80 @@ public class MockServer {
             log.info("Mock Server started on {}:{}{}", config.getHost(), config.getPort(),
                     StringUtils.hasText(basePath) ? " with base path " + basePath : "");
 
-            // Schedule configuration reload if enabled
+            // Watch the configuration file if auto-reload is enabled
             if (config.isAutoReload()) {
                 try {
-                    scheduler.scheduleAtFixedRate(
-                            this::checkAndReloadConfiguration,
-                            config.getReloadIntervalMs(),
-                            config.getReloadIntervalMs(),
-                            TimeUnit.MILLISECONDS
-                    );
-                    log.info("Configuration auto-reload enabled with interval of {}ms", config.getReloadIntervalMs());
+                    configurationStore.startWatching();
                 } catch (Exception e) {
-                    log.warn("Failed to schedule configuration reload: {}", e.getMessage());
+                    log.warn("Failed to watch configuration for changes: {}", e.getMessage());
                     // Continue without auto-reload
                 }
             }
         } catch (Exception e) {
+            configurationStore.removeListener(configurationListener);
+            shutdownTemplateExecutor();
             log.error("Failed to start Mock Server", e);
             throw new RuntimeException("Failed to start Mock Server", e);
         }
     }
 
+    /**
+     * Create an Undertow builder with the listener and runtime settings of the configuration.
+     * Settings left at 0 keep Undertow's defaults.
+     */
+    private Undertow.Builder createServerBuilder() {
+        Undertow.Builder builder = Undertow.builder()
+                .addHttpListener(config.getPort(), config.getHost())
+                .setDirectBuffers(config.isDirectBuffers())
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, config.isHttp2Enabled());
+        if (config.getIoThreads() > 0) {
+            builder.setIoThreads(config.getIoThreads());
+        }
+        if (config.getWorkerThreads() > 0) {
+            builder.setWorkerThreads(config.getWorkerThreads());
+        }
+        if (config.getBufferSize() > 0) {
+            builder.setBufferSize(config.getBufferSize());
+        }
+        if (config.getBacklog() > 0) {
+            builder.setSocketOption(Options.BACKLOG, config.getBacklog());
+        }
+        if (config.getIdleTimeoutMs() > 0) {
+            builder.setServerOption(UndertowOptions.IDLE_TIMEOUT, config.getIdleTimeoutMs());
+        }
+        return builder;
+    }
+
+    /**
+     * Decide where templated responses are rendered.
+     * Virtual threads are looked up reflectively, so the server still runs on JDKs without them
+     * and falls back to the worker pool there.
+     */
+    private void configureTemplateDispatch() {
+        String mode = config.getTemplateDispatch();
+        dispatchTemplates = "worker".equals(mode) || "virtual".equals(mode);
+        if ("virtual".equals(mode)) {
+            try {
+                templateExecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+                log.info("Rendering templated responses on virtual threads");
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn("Virtual threads are not available on Java {}, rendering templated responses on worker threads",
+                        System.getProperty("java.version"));
+            }
+        } else if (mode != null && !"io-thread".equals(mode) && !dispatchTemplates) {
+            log.warn("Unknown template dispatch mode '{}', rendering templated responses on IO threads", mode);
+        }
+    }
+
+    private void shutdownTemplateExecutor() {
+        if (templateExecutor != null) {
+            templateExecutor.shutdown();
+            templateExecutor = null;
+        }
+    }
+
     /**
      * Stop the mock server.
      */
@@ -173,200 +268,263 @@ public class MockServer {
             server.stop();
             log.info("Mock Server stopped");
         }
+        shutdownTemplateExecutor();
 
-        try {
-            if (!scheduler.isShutdown()) {
-                scheduler.shutdownNow();
-                log.info("Configuration reload scheduler stopped");
-            }
-            isShutdown = true;
-        } catch (Exception e) {
-            log.warn("Error while shutting down scheduler: {}", e.getMessage());
-            // Continue with shutdown process
+        configurationStore.removeListener(configurationListener);
+        if (ownsConfigurationStore) {
+            configurationStore.stopWatching();
+            log.info("Configuration watcher stopped");
         }
     }
 
     /**
-     * Load the mock configuration from the configured path.
+     * Reload the configuration and swap the new routing table in.
+     * Requests already being handled finish against the table they started with.
      */
-    private void loadConfiguration() throws IOException {
-        MockConfiguration configuration;
-
-        // If we have a MockServerService, use it to load the configuration with resolved properties
-        if (mockServerService != null) {
-            log.info("Using MockServerService to load configuration with resolved properties");
-            List<Map<String, Object>> endpoints = mockServerService.getEndpoints();
-            configuration = new MockConfiguration();
-
-            // Convert the endpoints from the service to MockEndpoint objects
-            List<MockEndpoint> mockEndpoints = new ArrayList<>();
-            for (Map<String, Object> endpointMap : endpoints) {
-                MockEndpoint endpoint = new MockEndpoint();
-                endpoint.setMethod((String) endpointMap.get("method"));
-                endpoint.setPath((String) endpointMap.get("path"));
-
-                // Store the original path if available
-                if (endpointMap.containsKey("originalPath")) {
-                    endpoint.setOriginalPath((String) endpointMap.get("originalPath"));
-                }
-
-                endpoint.setResponseType((String) endpointMap.get("responseType"));
+    public void reloadConfiguration() {
+        configurationStore.reload();
+    }
 
-                // Convert responses
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> responsesList = (List<Map<String, Object>>) endpointMap.get("responses");
-                List<MockResponse> responses = new ArrayList<>();
+    /**
+     * Add an endpoint to the running server.
+     * The endpoint is compiled into a new routing table and served from the next request on.
+     * Endpoints added at runtime are replaced by the next configuration reload.
+     *
+     * @param endpoint the endpoint to add
+     */
+    public void addEndpoint(MockEndpoint endpoint) {
+        RoutingTable table = routingTable.updateAndGet(current -> current.withEndpoint(endpoint));
+        log.info("Added endpoint {} {} (routing table version {})",
+                getHttpMethod(endpoint.getMethod()), endpoint.getPath(), table.getVersion());
+    }
 
-                if (responsesList != null) {
-                    for (Map<String, Object> responseMap : responsesList) {
-                        MockResponse response = new MockResponse();
-                        response.setId((String) responseMap.get("id"));
-                        response.setDefault((Boolean) responseMap.get("isDefault"));
+    /**
+     * Remove the endpoints registered for a method and path from the running server.
+     *
+     * @param method the HTTP method
+     * @param path the endpoint path, as configured
+     * @return true if at least one endpoint was removed
+     */
+    public boolean removeEndpoint(String method, String path) {
+        while (true) {
+            RoutingTable current = routingTable.get();
+            RoutingTable updated = current.withoutEndpoint(method, path);
+            if (updated == current) {
+                return false;
+            }
+            if (routingTable.compareAndSet(current, updated)) {
+                log.info("Removed endpoint {} {} (routing table version {})",
+                        getHttpMethod(method), path, updated.getVersion());
+                return true;
+            }
+        }
+    }
 
-                        if (responseMap.containsKey("status")) {
-                            response.setStatus(((Number) responseMap.get("status")).intValue());
-                        }
+    /**
+     * @return the endpoints currently served, in configuration order
+     */
+    public List<MockEndpoint> getEndpoints() {
+        return routingTable.get().getEndpoints();
+    }
 
-                        response.setDescription((String) responseMap.get("description"));
-                        responses.add(response);
-                    }
-                }
+    /**
+     * @return the routing table currently served, with the compiled form of every endpoint
+     */
+    public RoutingTable getRoutingTable() {
+        return routingTable.get();
+    }
 
-                endpoint.setResponses(responses);
-                mockEndpoints.add(endpoint);
-            }
+    /**
+     * @return the throughput and latency metrics of this server
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
 
-            configuration.setEndpoints(mockEndpoints);
+    /**
+     * @return the requests forwarded to the upstream server and the responses they got
+     */
+    public RecordingStore getRecordings() {
+        return recordings;
+    }
 
-            // Update the last modified time if using a file
-            if (StringUtils.hasText(config.getConfigVolumePath())) {
-                Path path = Paths.get(config.getConfigVolumePath());
-                if (Files.exists(path)) {
-                    lastConfigModified = Files.getLastModifiedTime(path).toMillis();
-                }
-            }
-        } else {
-            // Fall back to direct loading if no service is available
-            Resource configResource = null;
-
-            // Try to load from volume path first
-            if (StringUtils.hasText(config.getConfigVolumePath())) {
-                Path path = Paths.get(config.getConfigVolumePath());
-                if (Files.exists(path)) {
-                    configResource = new FileSystemResource(path);
-                    lastConfigModified = Files.getLastModifiedTime(path).toMillis();
-                    log.info("Loading configuration from volume path: {}", config.getConfigVolumePath());
-                } else {
-                    log.warn("Configuration volume path does not exist: {}", config.getConfigVolumePath());
-                }
-            }
+    /**
+     * @return the journal of requests served by this server
+     */
+    public RequestJournal getRequestJournal() {
+        return requestJournal;
+    }
 
-            // Fall back to classpath resource
-            if (configResource == null && StringUtils.hasText(config.getConfigPath())) {
-                String path = config.getConfigPath();
-                if (path.startsWith("classpath:")) {
-                    path = path.substring("classpath:".length());
-                }
+    /**
+     * Compile all endpoints from the configuration into a new routing table and publish it.
+     * Paths, matchers and delay conditions are compiled here, once per configuration change,
+     * and only for endpoints that changed.
+     */
+    private void registerEndpoints(MockConfiguration configuration) {
+        for (MockEndpoint endpoint : configuration.getEndpoints()) {
+            log.debug("Registering endpoint: {} {}", getHttpMethod(endpoint.getMethod()), endpoint.getPath());
+        }
+        RoutingTable table = routingTable.updateAndGet(current -> current.replace(configuration.getEndpoints()));
+        log.info("Routing table version {} published with {} endpoints",
+                table.getVersion(), table.getCompiledEndpoints().size());
+    }
 
-                ClassPathResource classpathResource = new ClassPathResource(path);
-                if (classpathResource.exists()) {
-                    configResource = classpathResource;
-                    log.info("Loading configuration from classpath: {}", path);
-                } else {
-                    log.warn("Configuration classpath resource does not exist: {}", path);
-                }
-            }
+    /**
+     * Resolve a request through the current routing table and hand it to the matched endpoint.
+     * The table is read once, so a request sees a single consistent snapshot even while a
+     * reload swaps in a new one.
+     * When several endpoints share the method and path, the first one whose matchers accept the
+     * request is used. The match is attached to the exchange so that matchers, delays and templates can reuse
+     * the bound path variables. If any candidate inspects the request body, the body is read without
+     * blocking and attached before the matchers run.
+     */
+    private void handleRequest(HttpServerExchange exchange) {
+        if (requestJournal.isEnabled() || config.isMetricsEnabled()) {
+            trace(exchange);
+        }
+        if (!config.isKeepAlive()) {
+            exchange.setPersistent(false);
+        }
 
-            // Load the configuration
-            if (configResource != null) {
-                try (InputStream is = configResource.getInputStream()) {
-                    configuration = objectMapper.readValue(is, MockConfiguration.class);
-                } catch (Exception e) {
-                    log.error("Failed to load configuration", e);
-                    configuration = new MockConfiguration();
-                }
+        RoutingTable table = routingTable.get();
+        String path = exchange.getRelativePath();
+        RouteMatch match = table.lookup(exchange.getRequestMethod().toString(), path);
+
+        if (match == null) {
+            if (proxy != null) {
+                proxy(exchange);
+            } else if (Methods.GET.equals(exchange.getRequestMethod()) && ("/".equals(path) || path.isEmpty())) {
+                handleRootRequest(exchange, table);
+            } else if (table.hasPath(path)) {
+                exchange.setStatusCode(405);
+                exchange.endExchange();
             } else {
-                log.warn("No configuration resource found, using empty configuration");
-                configuration = new MockConfiguration();
+                exchange.setStatusCode(404);
+                exchange.endExchange();
             }
+            return;
         }
 
-        // Set the configuration and initialize active responses
-        mockConfiguration.set(configuration);
-        initializeActiveResponses(configuration);
+        exchange.putAttachment(RouteMatch.ATTACHMENT_KEY, match);
 
-        log.info("Configuration loaded successfully with {} endpoints",
-                configuration.getEndpoints().size());
+        if (readsBody(match)) {
+            readBody(exchange, () -> selectEndpoint(exchange, match));
+            return;
+        }
+        selectEndpoint(exchange, match);
     }
 
     /**
-     * Initialize the active responses map with default responses.
+     * Pick the first candidate endpoint whose matchers accept the request and handle it.
+     * Endpoints with a capacity model first take a slot from their concurrency limiter, which
+     * may park the request in its queue or reject it.
      */
-    private void initializeActiveResponses(MockConfiguration configuration) {
-        activeResponses.clear();
-
-        for (MockEndpoint endpoint : configuration.getEndpoints()) {
-            String key = endpoint.getMethod() + ":" + endpoint.getPath();
-            Map<String, MockResponse> responses = new HashMap<>();
+    private void selectEndpoint(HttpServerExchange exchange, RouteMatch match) {
+        CompiledEndpoint selected = null;
+        for (CompiledEndpoint candidate : match.getCandidates()) {
+            if (candidate.matches(exchange, match)) {
+                selected = candidate;
+                break;
+            }
+        }
 
-            for (MockResponse response : endpoint.getResponses()) {
-                responses.put(response.getId(), response);
+        if (selected == null) {
+            if (proxy != null) {
+                proxy(exchange);
+                return;
             }
+            log.warn("Request does not match matchers for endpoint: {} {}", exchange.getRequestMethod(), exchange.getRelativePath());
+            exchange.setStatusCode(404);
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            exchange.getResponseSender().send("{\"error\":\"Request does not match endpoint matchers\"}");
+            return;
+        }
 
-            activeResponses.put(key, responses);
+        match.select(selected);
+        RequestTrace trace = exchange.getAttachment(TRACE_KEY);
+        if (trace != null) {
+            trace.endpoint = selected.getKey();
+        }
 
-            // Set the default response as active
-            MockResponse defaultResponse = endpoint.getDefaultResponse();
-            if (defaultResponse != null) {
-                log.debug("Setting default response '{}' for endpoint {}",
-                        defaultResponse.getId(), key);
-            }
+        ConcurrencyLimiter limiter = selected.getLimiter();
+        if (limiter == null) {
+            handleEndpointRequest(exchange, selected, 0);
+            return;
         }
+        CompiledEndpoint admitted = selected;
+        long queuedAt = System.nanoTime();
+        limiter.acquire(exchange, concurrency -> {
+            if (trace != null) {
+                trace.queueMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt);
+            }
+            handleEndpointRequest(exchange, admitted, limiter.getCurveDelay(concurrency));
+        });
     }
 
     /**
-     * Check if the configuration file has been modified and reload it if necessary.
+     * Forward a request that no endpoint accepts to the upstream server.
+     * The body is read without blocking first, unless a body matcher already read it.
      */
-    private void checkAndReloadConfiguration() {
-        try {
-            if (StringUtils.hasText(config.getConfigVolumePath())) {
-                Path path = Paths.get(config.getConfigVolumePath());
-                if (Files.exists(path)) {
-                    long lastModified = Files.getLastModifiedTime(path).toMillis();
-                    if (lastModified > lastConfigModified) {
-                        log.info("Configuration file has been modified, reloading...");
-                        loadConfiguration();
-                    }
-                }
+    private void proxy(HttpServerExchange exchange) {
+        RequestBody body = exchange.getAttachment(RequestBody.ATTACHMENT_KEY);
+        if (body != null) {
+            proxy.forward(exchange, body.getBytes());
+            return;
+        }
+        readBody(exchange, () -> proxy.forward(exchange, exchange.getAttachment(RequestBody.ATTACHMENT_KEY).getBytes()));
+    }
+
+    private static boolean readsBody(RouteMatch match) {
+        for (CompiledEndpoint candidate : match.getCandidates()) {
+            if (candidate.readsBody()) {
+                return true;
             }
-        } catch (Exception e) {
-            log.error("Failed to check or reload configuration", e);
         }
+        return false;
     }
 
     /**
-     * Register all endpoints from the configuration with the routing handler.
+     * Read the request body without blocking and attach it to the exchange before continuing.
+     * The receiver collects the body on the IO thread as it arrives and invokes the callback once
+     * it is complete; bodies larger than {@link MockServerConfig#getMaxRequestBodySize()} are
+     * rejected with 413.
+     *
+     * @param exchange the HTTP server exchange
+     * @param next the task to run once the body is attached
      */
-    private void registerEndpoints(RoutingHandler routingHandler) {
-        MockConfiguration configuration = mockConfiguration.get();
-
-        for (MockEndpoint endpoint : configuration.getEndpoints()) {
-            HttpString method = getHttpMethod(endpoint.getMethod());
-            String path = endpoint.getPath();
-
-            log.debug("Registering endpoint: {} {}", method, path);
-            routingHandler.add(method, path, exchange -> handleEndpointRequest(exchange, endpoint));
-        }
+    private void readBody(HttpServerExchange exchange, Runnable next) {
+        Receiver receiver = exchange.getRequestReceiver();
+        receiver.setMaxBufferSize(config.getMaxRequestBodySize());
+        receiver.receiveFullBytes((ex, bytes) -> {
+            ex.putAttachment(RequestBody.ATTACHMENT_KEY, new RequestBody(bytes));
+            next.run();
+        }, (ex, e) -> {
+            if (e instanceof Receiver.RequestToLargeException) {
+                log.warn("Request body exceeds {} bytes: {} {}", config.getMaxRequestBodySize(),
+                        ex.getRequestMethod(), ex.getRequestPath());
+                ex.setStatusCode(413);
+                ex.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                ex.getResponseSender().send("{\"error\":\"Request body too large\"}");
+            } else {
+                log.debug("Failed to read request body: {}", e.getMessage());
+                ex.setStatusCode(400);
+                ex.endExchange();
+            }
+        });
     }
 
     /**
-     * Handle a request to an endpoint.
+     * Handle a request to an endpoint whose matchers accepted it.
+     *
+     * @param exchange the HTTP server exchange
+     * @param compiledEndpoint the endpoint
+     * @param loadDelayMs the delay the endpoint's latency curve adds at its current concurrency
      */
-    private void handleEndpointRequest(HttpServerExchange exchange, MockEndpoint endpoint) {
-        String key = endpoint.getMethod() + ":" + endpoint.getPath();
-        Map<String, MockResponse> responses = activeResponses.get(key);
+    private void handleEndpointRequest(HttpServerExchange exchange, CompiledEndpoint compiledEndpoint, int loadDelayMs) {
+        MockEndpoint endpoint = compiledEndpoint.getEndpoint();
+        String key = compiledEndpoint.getKey();
 
-        if (responses == null || responses.isEmpty()) {
+        if (endpoint.getResponses() == null || endpoint.getResponses().isEmpty()) {
             log.warn("No responses found for endpoint: {}", key);
             exchange.setStatusCode(404);
             exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
@@ -374,18 +532,9 @@ public class MockServer {
             return;
         }
 
-        // Check if the request matches the endpoint matchers
-        if (mockServerService != null && !mockServerService.matchesRequest(exchange, endpoint)) {
-            log.warn("Request does not match matchers for endpoint: {}", key);
-            exchange.setStatusCode(404);
-            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
-            exchange.getResponseSender().send("{\"error\":\"Request does not match endpoint matchers\"}");
-            return;
-        }
-
-        // Get the default response
-        MockResponse response = endpoint.getDefaultResponse();
-        if (response == null) {
+        // Get the default response, or pick one by weight
+        CompiledResponse compiledResponse = compiledEndpoint.selectResponse();
+        if (compiledResponse == null) {
             log.warn("No default response found for endpoint: {}", key);
             exchange.setStatusCode(500);
             exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
@@ -394,125 +543,349 @@ public class MockServer {
         }
 
         // Apply delay if configured
+        MockResponse response = compiledResponse.getResponse();
         int delay;
         if (delayService != null) {
             // Use the delay service for advanced delay calculation
-            delay = delayService.calculateDelay(response, exchange, endpoint);
+            delay = delayService.calculateDelay(response, exchange, compiledEndpoint);
         } else {
             // Fall back to simple delay calculation
-            delay = response.getDelay() > 0 ? response.getDelay() : config.getDefaultDelayMs();
+            DelayDistribution distribution = compiledResponse.getDelayDistribution();
+            if (distribution != null) {
+                delay = distribution.sample(ThreadLocalRandom.current());
+            } else {
+                delay = response.getDelay() > 0 ? response.getDelay() : config.getDefaultDelayMs();
+            }
+        }
+
+        delay = Math.max(delay, 0) + loadDelayMs;
+
+        RequestTrace trace = exchange.getAttachment(TRACE_KEY);
+        if (trace != null) {
+            trace.responseId = response.getId();
+            trace.delayMs = delay + trace.queueMs;
         }
 
+        Throttle throttle = compiledEndpoint.getThrottle(compiledResponse);
         if (delay > 0) {
             log.debug("Applying delay of {}ms for endpoint: {}", delay, key);
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            scheduleDelayedResponse(exchange, delay, () -> sendResponse(exchange, compiledResponse, throttle));
+            return;
         }
 
-        // Set response status
-        exchange.setStatusCode(response.getStatus());
+        sendResponse(exchange, compiledResponse, throttle);
+    }
 
-        // Set response headers
-        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
-            exchange.getResponseHeaders().put(new HttpString(header.getKey()), header.getValue());
+    /**
+     * Park the exchange and send the response once the delay has elapsed.
+     * The exchange is dispatched without handing it to a worker thread and is resumed from the
+     * timer of its own XNIO IO thread, so a waiting request does not occupy any thread.
+     *
+     * @param exchange the HTTP server exchange
+     * @param delayMs the delay in milliseconds
+     * @param task the task that sends the response
+     */
+    private void scheduleDelayedResponse(HttpServerExchange exchange, int delayMs, Runnable task) {
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () ->
+                exchange.getIoThread().executeAfter(() -> {
+                    // Nothing else completes the exchange if the task fails on the IO thread
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.error("Failed to send delayed response", e);
+                        if (exchange.isResponseStarted()) {
+                            exchange.endExchange();
+                        } else {
+                            sendError(exchange);
+                        }
+                    }
+                }, delayMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Write the status, headers and body of a response to the exchange.
+     * Static bodies are written straight from their pre-encoded buffer, file bodies straight from
+     * the file; only templated bodies are rendered per request. Static bodies are sent
+     * pre-compressed and templated bodies are compressed on the fly when compression is enabled
+     * and the client accepts it. With a throttle, the body is written in paced chunks. A response
+     * with a connection fault breaks the connection instead of completing the reply.
+     *
+     * @param exchange the HTTP server exchange
+     * @param compiledResponse the response to send
+     * @param throttle the throttle to send the body with, or null to send it at full speed
+     */
+    private void sendResponse(HttpServerExchange exchange, CompiledResponse compiledResponse, Throttle throttle) {
+        ConnectionFault fault = compiledResponse.getFault();
+        if (fault != null && !fault.sendsHeaders()) {
+            fault.inject(exchange, null);
+            return;
         }
 
-        // Set response body
-        try {
-            String responseBody;
+        // Set response status and headers
+        compiledResponse.applyStatusAndHeaders(exchange);
 
-            // Create template context with request data
-            Map<String, Object> templateContext = createTemplateContext(exchange, endpoint);
+        if (compiledResponse.getBodyFile() != null) {
+            sendFile(exchange, compiledResponse.getBodyFile(), fault, throttle);
+            return;
+        }
 
-            if (response.getBody() != null) {
-                if (response.getBody() instanceof String) {
-                    responseBody = (String) response.getBody();
-                } else {
-                    responseBody = objectMapper.writeValueAsString(response.getBody());
-                }
-            } else if (StringUtils.hasText(response.getBodyTemplate())) {
-                // Render the template with the context
-                if (mockServerService != null) {
-                    try {
-                        responseBody = mockServerService.renderTemplate(
-                                response.getBodyTemplateEngine(),
-                                response.getBodyTemplate(),
-                                templateContext
-                        );
-                    } catch (Exception e) {
-                        log.error("Failed to render template", e);
-                        responseBody = response.getBodyTemplate();
-                    }
-                } else {
+        if (!compiledResponse.isTemplated()) {
+            ByteBuffer body = compiledResponse.getBody();
+            if (body == null) {
+                sendError(exchange);
+                return;
+            }
+            trace(exchange, body.duplicate());
+            ContentEncoding encoding = negotiateEncoding(exchange, compiledResponse);
+            ByteBuffer encoded = encoding != null ? compiledResponse.getBody(encoding) : null;
+            if (encoded != null) {
+                exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, encoding.getToken());
+                body = encoded;
+            }
+            writeBody(exchange, body, fault, throttle);
+            return;
+        }
+
+        if (dispatchTemplates && exchange.isInIoThread()) {
+            // Rendering may block or take a while, so keep it off the IO thread
+            Runnable render = () -> sendTemplatedResponse(exchange, compiledResponse, fault, throttle);
+            ExecutorService executor = templateExecutor;
+            if (executor != null) {
+                exchange.dispatch(executor, render);
+            } else {
+                exchange.dispatch(render);
+            }
+            return;
+        }
+        sendTemplatedResponse(exchange, compiledResponse, fault, throttle);
+    }
+
+    /**
+     * Render a templated body with request data and send it.
+     */
+    private void sendTemplatedResponse(HttpServerExchange exchange, CompiledResponse compiledResponse,
+                                       ConnectionFault fault, Throttle throttle) {
+        MockResponse response = compiledResponse.getResponse();
+        try {
+            String responseBody;
+            if (mockServerService != null) {
+                try {
+                    responseBody = mockServerService.renderTemplate(
+                            response.getBodyTemplateEngine(),
+                            response.getBodyTemplate(),
+                            createTemplateContext(exchange, response)
+                    );
+                } catch (Exception e) {
+                    log.error("Failed to render template", e);
                     responseBody = response.getBodyTemplate();
                 }
             } else {
-                responseBody = "{}";
+                responseBody = response.getBodyTemplate();
             }
 
+            trace(exchange, responseBody);
+            ContentEncoding encoding = negotiateEncoding(exchange, compiledResponse);
+            if (encoding != null || fault != null || throttle != null) {
+                byte[] bytes = responseBody.getBytes(StandardCharsets.UTF_8);
+                if (encoding != null && bytes.length >= Compressor.MIN_SIZE) {
+                    bytes = Compressor.compress(bytes, encoding);
+                    exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, encoding.getToken());
+                }
+                writeBody(exchange, ByteBuffer.wrap(bytes), fault, throttle);
+                return;
+            }
             exchange.getResponseSender().send(responseBody);
         } catch (Exception e) {
             log.error("Failed to send response", e);
-            exchange.setStatusCode(500);
-            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
-            exchange.getResponseSender().send("{\"error\":\"Failed to generate response\"}");
+            sendError(exchange);
         }
     }
 
     /**
-     * Create a template context with request data.
+     * Pick the content coding for a compressible response from the request's Accept-Encoding.
      *
-     * @param exchange the HTTP server exchange
-     * @param endpoint the endpoint being requested
-     * @return a map of context variables for template rendering
+     * @return the coding, or null to send the body uncompressed
      */
-    private Map<String, Object> createTemplateContext(HttpServerExchange exchange, MockEndpoint endpoint) {
-        Map<String, Object> context = new HashMap<>();
+    private ContentEncoding negotiateEncoding(HttpServerExchange exchange, CompiledResponse compiledResponse) {
+        if (!config.isCompressionEnabled() || !compiledResponse.isCompressible()) {
+            return null;
+        }
+        exchange.getResponseHeaders().add(Headers.VARY, Headers.ACCEPT_ENCODING_STRING);
+        return ContentEncoding.negotiate(exchange.getRequestHeaders().getFirst(Headers.ACCEPT_ENCODING));
+    }
 
-        // Add request information
-        Map<String, Object> request = new HashMap<>();
-        request.put("method", exchange.getRequestMethod().toString());
-        request.put("path", exchange.getRequestPath());
-        request.put("uri", exchange.getRequestURI());
-        request.put("url", exchange.getRequestURL());
+    /**
+     * Write a body, breaking the connection part way if the response has a fault and pacing it
+     * if it has a throttle.
+     */
+    private void writeBody(HttpServerExchange exchange, ByteBuffer body, ConnectionFault fault, Throttle throttle) {
+        if (fault != null) {
+            fault.inject(exchange, body);
+        } else if (throttle != null) {
+            ThrottledSender.send(exchange, body, throttle);
+        } else {
+            exchange.getResponseSender().send(body);
+        }
+    }
 
-        // Add headers
-        Map<String, String> headers = new HashMap<>();
-        exchange.getRequestHeaders().forEach(header ->
-                headers.put(header.getHeaderName().toString(), header.getFirst()));
-        request.put("headers", headers);
+    /**
+     * Send a response body from a file, honouring a single-range Range header on 200 responses.
+     * A full, unthrottled file is transferred with sendfile; ranges, throttled and faulted bodies
+     * and cached files are sent from a memory mapping. Either way the file is not read into the heap.
+     *
+     * @param exchange the HTTP server exchange, with status and headers already set
+     * @param bodyFile the file to send
+     * @param fault the connection fault of the response, or null
+     * @param throttle the throttle to send the body with, or null
+     */
+    private void sendFile(HttpServerExchange exchange, BodyFile bodyFile, ConnectionFault fault, Throttle throttle) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(bodyFile.getPath(), StandardOpenOption.READ);
+            long size = channel.size();
+            long start = 0;
+            long length = size;
+
+            ByteRange.RangeResponseResult range = null;
+            if (exchange.getStatusCode() == 200) {
+                exchange.getResponseHeaders().put(Headers.ACCEPT_RANGES, "bytes");
+                range = resolveRange(exchange, bodyFile, size);
+            }
+            if (range != null) {
+                exchange.setStatusCode(range.getStatusCode());
+                exchange.getResponseHeaders().put(Headers.CONTENT_RANGE, range.getContentRange());
+                if (range.getStatusCode() == 416) {
+                    exchange.endExchange();
+                    return;
+                }
+                start = range.getStart();
+                length = range.getContentLength();
+            }
 
-        // Add query parameters
-        Map<String, List<String>> queryParams = new HashMap<>();
-        exchange.getQueryParameters().forEach((name, values) ->
-                queryParams.put(name, new ArrayList<>(values)));
-        request.put("queryParams", queryParams);
+            if (range != null || fault != null || throttle != null || bodyFile.isCached()) {
+                if (length <= Integer.MAX_VALUE) {
+                    ByteBuffer body = bodyFile.map(channel, start, length);
+                    // The mapping may be large and belongs to this response only, keep a copied preview
+                    trace(exchange, JournalEntry.BodyPreview.copy(body, config.getJournalBodyPreviewSize()));
+                    writeBody(exchange, body, fault, throttle);
+                    return;
+                }
+                log.warn("Body file {} is too large to map, sending it unthrottled", bodyFile.getPath());
+            }
+
+            exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, size);
+            FileChannel source = channel;
+            channel = null;
+            exchange.getResponseSender().transferFrom(source, new IoCallback() {
+                @Override
+                public void onComplete(HttpServerExchange exchange, Sender sender) {
+                    IoUtils.safeClose(source);
+                    exchange.endExchange();
+                }
 
-        // Add path variables if available
-        if (mockServerService != null) {
-            Map<String, String> pathVariables = mockServerService.extractPathVariables(
-                    endpoint.getPath(), exchange.getRequestPath());
-            request.put("pathVariables", pathVariables);
+                @Override
+                public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+                    IoUtils.safeClose(source);
+                    IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+                }
+            });
+        } catch (IOException e) {
+            log.error("Failed to send body file {}", bodyFile.getPath(), e);
+            sendError(exchange);
+        } finally {
+            // A mapping stays valid after its channel is closed
+            IoUtils.safeClose(channel);
         }
+    }
 
-        // Add timestamp and random values
-        context.put("timestamp", System.currentTimeMillis());
-        context.put("random", Math.random());
-        context.put("uuid", java.util.UUID.randomUUID().toString());
+    /**
+     * Resolve the Range header of a request against a file.
+     *
+     * @return the range to send, or null to send the whole file
+     */
+    private static ByteRange.RangeResponseResult resolveRange(HttpServerExchange exchange, BodyFile bodyFile, long size) {
+        String rangeHeader = exchange.getRequestHeaders().getFirst(Headers.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        ByteRange byteRange = ByteRange.parse(rangeHeader);
+        if (byteRange == null || byteRange.getRanges() != 1) {
+            // Malformed and multi-range requests get the whole file
+            return null;
+        }
+        ByteRange.RangeResponseResult range = byteRange.getResponseResult(size,
+                exchange.getRequestHeaders().getFirst(Headers.IF_RANGE), new Date(bodyFile.getLastModified()), null);
+        if (range != null && range.getContentLength() > Integer.MAX_VALUE) {
+            return null;
+        }
+        return range;
+    }
 
-        // Add the request to the context
-        context.put("request", request);
+    /**
+     * Start tracing a request and record it in the journal and metrics once the exchange completes.
+     */
+    private void trace(HttpServerExchange exchange) {
+        RequestTrace trace = new RequestTrace(System.currentTimeMillis(), System.nanoTime());
+        exchange.putAttachment(TRACE_KEY, trace);
+        exchange.addExchangeCompleteListener((ex, next) -> {
+            try {
+                long latencyNanos = System.nanoTime() - trace.startNanos;
+                if (config.isMetricsEnabled()) {
+                    metrics.record(trace.endpoint, trace.responseId, ex.getStatusCode(), trace.delayMs, latencyNanos);
+                }
+                if (requestJournal.isEnabled()) {
+                    requestJournal.record(trace.toEntry(ex, latencyNanos, config.getJournalBodyPreviewSize()));
+                }
+            } catch (RuntimeException e) {
+                log.debug("Failed to record request: {}", e.getMessage());
+            } finally {
+                next.proceed();
+            }
+        });
+    }
+
+    /**
+     * Remember the body sent for a traced request.
+     */
+    private static void trace(HttpServerExchange exchange, Object responseBody) {
+        RequestTrace trace = exchange.getAttachment(TRACE_KEY);
+        if (trace != null) {
+            trace.responseBody = responseBody;
+        }
+    }
+
+    /**
+     * Replace the response with a generic server error.
+     */
+    private void sendError(HttpServerExchange exchange) {
+        exchange.setStatusCode(500);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send("{\"error\":\"Failed to generate response\"}");
+    }
 
-        return context;
+    /**
+     * Create a template context with request data.
+     * The context is a lazy view over the exchange: only the values the template reads are
+     * computed, and a template that references no context keys gets an empty context.
+     *
+     * @param exchange the HTTP server exchange
+     * @param response the response whose template is rendered
+     * @return a map of context variables for template rendering
+     * @throws IOException if the template cannot be compiled
+     */
+    private Map<String, Object> createTemplateContext(HttpServerExchange exchange, MockResponse response) throws IOException {
+        Set<String> referencedKeys = mockServerService.getReferencedTemplateKeys(
+                response.getBodyTemplateEngine(), response.getBodyTemplate());
+        if (referencedKeys != null && referencedKeys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return new TemplateContext(exchange, referencedKeys);
     }
 
     /**
      * Handle a request to the root path.
      */
-    private void handleRootRequest(HttpServerExchange exchange) {
+    private void handleRootRequest(HttpServerExchange exchange, RoutingTable table) {
         exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
 
         StringBuilder sb = new StringBuilder();
@@ -522,10 +895,9 @@ public class MockServer {
         sb.append("  \"status\": \"running\",\n");
         sb.append("  \"endpoints\": [\n");
 
-        MockConfiguration configuration = mockConfiguration.get();
         boolean first = true;
 
-        for (MockEndpoint endpoint : configuration.getEndpoints()) {
+        for (MockEndpoint endpoint : table.getEndpoints()) {
             if (!first) {
                 sb.append(",\n");
             }
@@ -577,4 +949,31 @@ public class MockServer {
                 return new HttpString(method.toUpperCase());
         }
     }
+
+    /**
+     * What the server learns about a request while handling it, recorded in the metrics and turned
+     * into a {@link JournalEntry} when the exchange completes. Only touched by the thread currently handling the exchange.
+     */
+    private static final class RequestTrace {
+
+        private final long timestamp;
+        private final long startNanos;
+        private String endpoint;
+        private String responseId;
+        private long delayMs;
+        private long queueMs;
+        private Object responseBody;
+
+        RequestTrace(long timestamp, long startNanos) {
+            this.timestamp = timestamp;
+            this.startNanos = startNanos;
+        }
+
+        JournalEntry toEntry(HttpServerExchange exchange, long latencyNanos, int maxBodyPreview) {
+            double latencyMs = latencyNanos / 1_000_000.0;
+            return new JournalEntry(timestamp, exchange.getRequestMethod().toString(), exchange.getRequestPath(),
+                    exchange.getQueryString(), endpoint, responseId, exchange.getStatusCode(), delayMs, latencyMs,
+                    exchange.getAttachment(RequestBody.ATTACHMENT_KEY), responseBody, maxBodyPreview);
+        }
+    }
 }
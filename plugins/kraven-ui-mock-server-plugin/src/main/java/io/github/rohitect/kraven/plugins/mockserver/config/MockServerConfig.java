@@ -52,15 +52,120 @@ public class MockServerConfig {
     private boolean autoReload = true;
 
     /**
-     * The interval in milliseconds to check for configuration changes.
+     * The interval in milliseconds to poll the configuration file for changes.
+     * Only used when the file system does not support watching the configuration directory.
      */
     private int reloadIntervalMs = 5000;
 
     /**
-     * The maximum number of history entries to keep.
+     * How long in milliseconds the configuration file must stay unchanged after a change
+     * before it is reloaded, so that a single save triggers a single reload.
+     */
+    private int reloadDebounceMs = 250;
+
+    /**
+     * The directory to keep a compiled snapshot of the configuration in. An unchanged configuration
+     * is then memory-mapped on startup instead of parsed. Snapshots are not used without a directory.
+     */
+    private String snapshotDirectory;
+
+    /**
+     * The maximum size in bytes of a request body read for body matchers.
+     * Larger requests to endpoints with body matchers are rejected with 413.
+     */
+    private int maxRequestBodySize = 1024 * 1024;
+
+    /**
+     * The maximum number of served requests to keep in the request journal.
+     * Set to 0 to disable the journal.
      */
     private int maxHistoryEntries = 100;
 
+    /**
+     * The maximum number of bytes of each request and response body kept in the request journal.
+     */
+    private int journalBodyPreviewSize = 1024;
+
+    /**
+     * Whether to record per-endpoint throughput counters and latency histograms.
+     */
+    private boolean metricsEnabled = true;
+
+    /**
+     * Whether to compress response bodies for clients that accept gzip or deflate.
+     * Static bodies are compressed once when the configuration is loaded.
+     */
+    private boolean compressionEnabled = false;
+
+    /**
+     * The number of IO threads of the server, 0 for Undertow's default of one per CPU core.
+     */
+    private int ioThreads = 0;
+
+    /**
+     * The number of worker threads of the server, 0 for Undertow's default of eight per IO thread.
+     */
+    private int workerThreads = 0;
+
+    /**
+     * The size in bytes of the buffers used for request and response data, 0 for Undertow's default.
+     */
+    private int bufferSize = 0;
+
+    /**
+     * Whether to allocate the buffers outside the heap.
+     */
+    private boolean directBuffers = true;
+
+    /**
+     * The length of the queue of connections waiting to be accepted, 0 for the default.
+     */
+    private int backlog = 0;
+
+    /**
+     * Whether to accept HTTP/2 over plain text, by upgrade or with prior knowledge.
+     */
+    private boolean http2Enabled = false;
+
+    /**
+     * Whether to keep connections open for further requests.
+     */
+    private boolean keepAlive = true;
+
+    /**
+     * How long in milliseconds an idle connection is kept open, 0 for no limit.
+     */
+    private int idleTimeoutMs = 0;
+
+    /**
+     * Where templated responses are rendered.
+     * Possible values: "io-thread" (the thread that received the request), "worker" (the worker pool),
+     * "virtual" (a virtual thread per response on JDK 21 and later, the worker pool otherwise)
+     */
+    private String templateDispatch = "io-thread";
+
+    /**
+     * The URL of an upstream server to forward requests that no endpoint matches to, such as
+     * {@code http://staging.example.com/api}. Unmatched requests get 404 without one.
+     */
+    private String proxyUrl;
+
+    /**
+     * How long in milliseconds to wait for the upstream server to connect and to respond.
+     */
+    private int proxyTimeoutMs = 30000;
+
+    /**
+     * Whether to record the requests forwarded to the upstream server and their responses,
+     * so they can be exported as mock endpoints.
+     */
+    private boolean recordingEnabled = true;
+
+    /**
+     * The maximum number of distinct requests to record. Further requests are still forwarded.
+     */
+    private int maxRecordings = 1000;
+
     /**
      * The default delay in milliseconds to apply to all responses.
      */
@@ -1,27 +1,25 @@
 package io.github.rohitect.kraven.plugins.mockserver.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.rohitect.kraven.plugins.mockserver.MockServer;
 import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.github.rohitect.kraven.plugins.mockserver.engine.JournalEntry;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RecordingStore;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RequestJournal;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import io.github.rohitect.kraven.plugins.mockserver.service.DelayService;
 import io.github.rohitect.kraven.plugins.mockserver.service.MockServerService;
+import io.github.rohitect.kraven.plugins.mockserver.service.RequestJournalService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,7 +38,11 @@ public class MockServerController {
     @Autowired
     private MockServerService mockServerService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private DelayService delayService;
+
+    @Autowired
+    private RequestJournalService requestJournalService;
 
     private MockServer mockServer;
     private boolean serverRunning = false;
@@ -53,7 +55,7 @@ public class MockServerController {
     @GetMapping("/config")
     public ResponseEntity<MockConfiguration> getConfiguration() {
         try {
-            MockConfiguration configuration = loadConfiguration();
+            MockConfiguration configuration = mockServerService.getConfiguration();
             return ResponseEntity.ok(configuration);
         } catch (Exception e) {
             log.error("Failed to load configuration", e);
@@ -77,6 +79,7 @@ public class MockServerController {
         status.put("configVolumePath", config.getConfigVolumePath());
         status.put("autoReload", config.isAutoReload());
         status.put("reloadIntervalMs", config.getReloadIntervalMs());
+        status.put("reloadDebounceMs", config.getReloadDebounceMs());
         status.put("maxHistoryEntries", config.getMaxHistoryEntries());
         status.put("defaultDelayMs", config.getDefaultDelayMs());
         status.put("defaultTemplateEngine", config.getDefaultTemplateEngine());
@@ -84,7 +87,8 @@ public class MockServerController {
         status.put("enableDynamicResponses", config.isEnableDynamicResponses());
 
         try {
-            MockConfiguration configuration = loadConfiguration();
+            MockConfiguration configuration = mockServerService.getConfiguration();
+            status.put("configurationVersion", mockServerService.getConfigurationStore().getVersion());
             status.put("endpointCount", configuration.getEndpoints().size());
 
             int responseCount = 0;
@@ -125,7 +129,8 @@ public class MockServerController {
         try {
             if (mockServer == null) {
                 // Pass the MockServerService to the MockServer to use resolved properties
-                mockServer = new MockServer(config, mockServerService);
+                mockServer = new MockServer(config, mockServerService, delayService,
+                        requestJournalService.getJournal());
             }
 
             mockServer.start();
@@ -196,6 +201,274 @@ public class MockServerController {
         return ResponseEntity.ok(status);
     }
 
+    /**
+     * Reload the configuration of the running server.
+     * The new routing table is swapped in without restarting the server.
+     *
+     * @return the result of the operation
+     */
+    @PostMapping("/server/reload")
+    public ResponseEntity<Map<String, Object>> reloadServer() {
+        Map<String, Object> result = new HashMap<>();
+
+        if (!serverRunning || mockServer == null) {
+            result.put("success", false);
+            result.put("message", "Server is not running");
+            return ResponseEntity.ok(result);
+        }
+
+        try {
+            mockServer.reloadConfiguration();
+            result.put("success", true);
+            result.put("message", "Configuration reloaded successfully");
+            result.put("endpoints", mockServer.getEndpoints().size());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Failed to reload configuration", e);
+            result.put("success", false);
+            result.put("message", "Failed to reload configuration: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+        }
+    }
+
+    /**
+     * Add an endpoint to the running server.
+     * The endpoint is served from the next request on and replaced by the next configuration reload.
+     *
+     * @param endpoint the endpoint to add
+     * @return the result of the operation
+     */
+    @PostMapping("/endpoints")
+    public ResponseEntity<Map<String, Object>> addEndpoint(@RequestBody MockEndpoint endpoint) {
+        Map<String, Object> result = new HashMap<>();
+
+        if (!serverRunning || mockServer == null) {
+            result.put("success", false);
+            result.put("message", "Server is not running");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+        }
+
+        if (!StringUtils.hasText(endpoint.getPath())) {
+            result.put("success", false);
+            result.put("message", "Endpoint path is required");
+            return ResponseEntity.badRequest().body(result);
+        }
+
+        try {
+            mockServer.addEndpoint(endpoint);
+            result.put("success", true);
+            result.put("message", "Endpoint added: " + endpoint.getMethod() + " " + endpoint.getPath());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Failed to add endpoint", e);
+            result.put("success", false);
+            result.put("message", "Failed to add endpoint: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+        }
+    }
+
+    /**
+     * Remove the endpoints registered for a method and path from the running server.
+     * The path is a query parameter, so paths of any number of segments can be given.
+     *
+     * @param method the HTTP method
+     * @param path the endpoint path, such as {@code /api/users/{id}}
+     * @return the result of the operation
+     */
+    @DeleteMapping("/endpoints/{method}")
+    public ResponseEntity<Map<String, Object>> removeEndpoint(
+            @PathVariable String method,
+            @RequestParam("path") String path) {
+        Map<String, Object> result = new HashMap<>();
+
+        if (!StringUtils.hasText(path)) {
+            result.put("success", false);
+            result.put("message", "The path of the endpoint is required");
+            return ResponseEntity.badRequest().body(result);
+        }
+        path = normalizeEndpointPath(path);
+
+        if (!serverRunning || mockServer == null) {
+            result.put("success", false);
+            result.put("message", "Server is not running");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+        }
+
+        if (mockServer.removeEndpoint(method, path)) {
+            result.put("success", true);
+            result.put("message", "Endpoint removed: " + method + " " + path);
+            return ResponseEntity.ok(result);
+        }
+
+        result.put("success", false);
+        result.put("message", "Endpoint not found for method " + method + " and path " + path);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
+    }
+
+    /**
+     * Get the throughput and latency metrics recorded since the server started or the metrics were reset.
+     * Latencies are reported per endpoint and per response, both as seen by the client and as
+     * server time excluding the configured delay.
+     *
+     * @return the metrics
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        if (mockServer == null) {
+            return serverNotStarted();
+        }
+        return ResponseEntity.ok(mockServer.getMetrics().snapshot());
+    }
+
+    /**
+     * Get the metrics recorded since the previous call to this endpoint.
+     * Calling it at the start and end of each load test phase gives the metrics of that phase.
+     *
+     * @return the metrics of the interval
+     */
+    @GetMapping("/metrics/interval")
+    public ResponseEntity<Map<String, Object>> getIntervalMetrics() {
+        if (mockServer == null) {
+            return serverNotStarted();
+        }
+        return ResponseEntity.ok(mockServer.getMetrics().intervalSnapshot());
+    }
+
+    /**
+     * Reset the metrics.
+     *
+     * @return the result of the operation
+     */
+    @DeleteMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> resetMetrics() {
+        if (mockServer == null) {
+            return serverNotStarted();
+        }
+        mockServer.getMetrics().reset();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "Metrics reset");
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Get the requests forwarded to the upstream server while proxying, oldest first.
+     *
+     * @return the recordings and the state of the store
+     */
+    @GetMapping("/recordings")
+    public ResponseEntity<Map<String, Object>> getRecordings() {
+        if (mockServer == null) {
+            return serverNotStarted();
+        }
+        RecordingStore recordings = mockServer.getRecordings();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("recordings", recordings.list());
+        result.put("size", recordings.size());
+        result.put("capacity", recordings.getCapacity());
+        result.put("dropped", recordings.getDropped());
+        result.put("proxyUrl", config.getProxyUrl());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Export the recordings as a mock configuration, which can be saved as the configuration
+     * file to replay the recorded traffic without the upstream server.
+     *
+     * @return the configuration
+     */
+    @GetMapping("/recordings/export")
+    public ResponseEntity<MockConfiguration> exportRecordings() {
+        if (mockServer == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(mockServer.getRecordings().toConfiguration());
+    }
+
+    /**
+     * Clear the recordings.
+     *
+     * @return the result of the operation
+     */
+    @DeleteMapping("/recordings")
+    public ResponseEntity<Map<String, Object>> clearRecordings() {
+        if (mockServer == null) {
+            return serverNotStarted();
+        }
+        mockServer.getRecordings().clear();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "Recordings cleared");
+        return ResponseEntity.ok(result);
+    }
+
+    private ResponseEntity<Map<String, Object>> serverNotStarted() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("message", "Server has not been started");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+    }
+
+    /**
+     * Get a page of the request journal, newest first.
+     *
+     * @param before only return requests with a lower sequence number, for the next page
+     * @param limit the maximum number of requests to return
+     * @return the requests and paging information
+     */
+    @GetMapping("/journal")
+    public ResponseEntity<Map<String, Object>> getJournal(
+            @RequestParam(required = false, defaultValue = "0") long before,
+            @RequestParam(required = false, defaultValue = "50") int limit) {
+        RequestJournal journal = requestJournalService.getJournal();
+        List<JournalEntry> entries = journal.page(before, Math.min(Math.max(limit, 0), journal.getCapacity()));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("entries", entries);
+        result.put("capacity", journal.getCapacity());
+        result.put("size", journal.size());
+        result.put("latestSequence", journal.getLatestSequence());
+        if (!entries.isEmpty()) {
+            result.put("nextBefore", entries.get(entries.size() - 1).getSequence());
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Clear the request journal.
+     *
+     * @return the result of the operation
+     */
+    @DeleteMapping("/journal")
+    public ResponseEntity<Map<String, Object>> clearJournal() {
+        requestJournalService.getJournal().clear();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "Request journal cleared");
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Stream requests as they are recorded in the journal.
+     * Each event is named {@code request} and carries the sequence number as its id, so a
+     * reconnecting EventSource resumes after the last request it received.
+     *
+     * @param after also send the journaled requests with a higher sequence number
+     * @param lastEventId the id of the last event received before reconnecting
+     * @return the SSE emitter
+     */
+    @GetMapping(value = "/journal/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJournal(
+            @RequestParam(required = false) Long after,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        log.debug("Establishing SSE stream for the request journal");
+        return requestJournalService.subscribe(lastEventId != null ? lastEventId : after);
+    }
+
     /**
      * Get all endpoints.
      *
@@ -282,7 +555,7 @@ public class MockServerController {
         result.put("success", false);
 
         try {
-            MockConfiguration configuration = loadConfiguration();
+            MockConfiguration configuration = mockServerService.getConfiguration();
 
             boolean endpointFound = false;
 
@@ -406,48 +679,12 @@ public class MockServerController {
     }
 
     /**
-     * Load the mock configuration from the configured path.
+     * Normalize an endpoint path given by a client: trimmed, with a leading slash and no empty segments.
      */
-    private MockConfiguration loadConfiguration() throws IOException {
-        Resource configResource = null;
-
-        // Try to load from volume path first
-        if (StringUtils.hasText(config.getConfigVolumePath())) {
-            Path path = Paths.get(config.getConfigVolumePath());
-            if (Files.exists(path)) {
-                configResource = new FileSystemResource(path);
-                log.debug("Loading configuration from volume path: {}", config.getConfigVolumePath());
-            } else {
-                log.warn("Configuration volume path does not exist: {}", config.getConfigVolumePath());
-            }
-        }
-
-        // Fall back to classpath resource
-        if (configResource == null && StringUtils.hasText(config.getConfigPath())) {
-            String path = config.getConfigPath();
-            if (path.startsWith("classpath:")) {
-                path = path.substring("classpath:".length());
-            }
-
-            ClassPathResource classpathResource = new ClassPathResource(path);
-            if (classpathResource.exists()) {
-                configResource = classpathResource;
-                log.debug("Loading configuration from classpath: {}", path);
-            } else {
-                log.warn("Configuration classpath resource does not exist: {}", path);
-            }
-        }
-
-        // Load the configuration
-        if (configResource != null) {
-            try (InputStream is = configResource.getInputStream()) {
-                return objectMapper.readValue(is, MockConfiguration.class);
-            }
-        } else {
-            log.warn("No configuration resource found, using empty configuration");
-            return new MockConfiguration();
-        }
+    private static String normalizeEndpointPath(String path) {
+        String normalized = ("/" + path.trim()).replaceAll("/{2,}", "/");
+        return normalized.length() > 1 && normalized.endsWith("/")
+                ? normalized.substring(0, normalized.length() - 1)
+                : normalized;
     }
-
-
 }
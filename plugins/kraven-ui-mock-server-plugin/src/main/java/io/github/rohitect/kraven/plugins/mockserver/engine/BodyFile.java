@@ -0,0 +1,110 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The file a response body is served from.
+ * The file is never read into the heap: full responses are sent with the sender's
+ * {@link io.undertow.io.Sender#transferFrom(FileChannel, io.undertow.io.IoCallback) transferFrom},
+ * which uses sendfile where the platform supports it, and everything else is served from a
+ * memory mapping. A cached file keeps its mapping across requests and is mapped again when its
+ * size or modification time changes.
+ */
+public final class BodyFile {
+
+    private final Path path;
+    private final boolean cached;
+    private volatile Mapping mapping;
+
+    private BodyFile(Path path, boolean cached) {
+        this.path = path;
+        this.cached = cached;
+    }
+
+    /**
+     * Resolve the body file of a response.
+     *
+     * @param response the response configuration
+     * @return the body file, or null if the response has none
+     */
+    public static BodyFile of(MockResponse response) {
+        if (!StringUtils.hasText(response.getBodyFile())) {
+            return null;
+        }
+        return new BodyFile(Paths.get(response.getBodyFile()), response.isCacheBodyFile());
+    }
+
+    /**
+     * @return the path of the file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the last modification time of the file in epoch milliseconds, 0 if it is unknown
+     */
+    public long getLastModified() {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Get a region of the file as a buffer backed by a memory mapping.
+     * Cached files share one mapping of the whole file; other files map just the region.
+     *
+     * @param channel an open channel of the file
+     * @param start the offset of the region
+     * @param length the length of the region, at most {@link Integer#MAX_VALUE}
+     * @return the region
+     * @throws IOException if the file cannot be mapped
+     */
+    public ByteBuffer map(FileChannel channel, long start, long length) throws IOException {
+        long size = channel.size();
+        if (!cached || size > Integer.MAX_VALUE) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+
+        long lastModified = getLastModified();
+        Mapping current = mapping;
+        if (current == null || current.size != size || current.lastModified != lastModified) {
+            // Concurrent requests may map the file twice; the last mapping wins and the other is collected
+            current = new Mapping(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), size, lastModified);
+            mapping = current;
+        }
+        ByteBuffer region = current.buffer.duplicate();
+        region.position((int) start).limit((int) (start + length));
+        return region.slice();
+    }
+
+    /**
+     * @return true if the file is served from a mapping kept across requests
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    private static final class Mapping {
+
+        private final ByteBuffer buffer;
+        private final long size;
+        private final long lastModified;
+
+        Mapping(ByteBuffer buffer, long size, long lastModified) {
+            this.buffer = buffer;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
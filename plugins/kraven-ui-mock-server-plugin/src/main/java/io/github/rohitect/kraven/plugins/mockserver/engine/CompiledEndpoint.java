@@ -0,0 +1,179 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A mock endpoint together with everything the request path needs from it in compiled form:
+ * the path template, the request matchers and each of its responses, the response selector of
+ * weighted endpoints and the concurrency limiter of endpoints with a capacity model.
+ * Instances are immutable and built once per configuration load.
+ */
+public final class CompiledEndpoint {
+
+    private final MockEndpoint endpoint;
+    private final String key;
+    private final PathTemplate template;
+    private final CompiledMatcher[] matchers;
+    private final Map<MockResponse, CompiledResponse> responses;
+    private final CompiledResponse defaultResponse;
+    private final ResponseSelector selector;
+    private final ConcurrencyLimiter limiter;
+    private final boolean readsBody;
+    private final Throttle throttle;
+
+    private CompiledEndpoint(MockEndpoint endpoint) {
+        this.endpoint = endpoint;
+        this.key = endpoint.getMethod() + ":" + endpoint.getPath();
+        this.template = PathTemplate.compile(endpoint.getPath());
+        this.matchers = CompiledMatcher.ofMatchers(endpoint.getMatchers());
+
+        Map<MockResponse, CompiledResponse> compiled = new IdentityHashMap<>();
+        if (endpoint.getResponses() != null) {
+            for (MockResponse response : endpoint.getResponses()) {
+                compiled.put(response, CompiledResponse.of(response));
+            }
+        }
+        this.responses = compiled;
+
+        MockResponse response = endpoint.getResponses() != null ? endpoint.getDefaultResponse() : null;
+        this.defaultResponse = response != null ? compiled.get(response) : null;
+        this.selector = ResponseSelector.of(endpoint, compiled);
+        this.limiter = ConcurrencyLimiter.of(endpoint);
+
+        boolean body = readsBody(matchers);
+        for (CompiledResponse compiledResponse : compiled.values()) {
+            body |= readsBody(compiledResponse.getDelayConditions());
+        }
+        this.readsBody = body;
+        this.throttle = Throttle.of(endpoint.getThrottle());
+    }
+
+    /**
+     * Compile an endpoint.
+     *
+     * @param endpoint the endpoint configuration
+     * @return the compiled endpoint
+     */
+    public static CompiledEndpoint of(MockEndpoint endpoint) {
+        return new CompiledEndpoint(endpoint);
+    }
+
+    /**
+     * Check whether a request satisfies all required matchers of this endpoint.
+     *
+     * @param exchange the HTTP server exchange
+     * @param match the route match holding the bound path variables, may be null
+     * @return true if the request matches
+     */
+    public boolean matches(HttpServerExchange exchange, RouteMatch match) {
+        return CompiledMatcher.matchesAll(matchers, exchange, match);
+    }
+
+    /**
+     * Get the compiled form of one of this endpoint's responses.
+     *
+     * @param response the response
+     * @return the compiled response
+     */
+    public CompiledResponse getResponse(MockResponse response) {
+        CompiledResponse compiled = responses.get(response);
+        if (compiled == null) {
+            // The response was added after this endpoint was compiled
+            return CompiledResponse.of(response);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the compiled default response, or null if the endpoint has no responses
+     */
+    public CompiledResponse getDefaultResponse() {
+        return defaultResponse;
+    }
+
+    /**
+     * Select the response to send for a request.
+     *
+     * @return a response picked by weight for weighted endpoints, otherwise the default response;
+     * null if the endpoint has no responses
+     */
+    public CompiledResponse selectResponse() {
+        return selector != null ? selector.select() : defaultResponse;
+    }
+
+    /**
+     * @return the concurrency limiter, or null if the endpoint has no concurrency limit or latency curve
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Get the compiled delay conditions of one of this endpoint's responses.
+     *
+     * @param response the response
+     * @return the compiled conditions, empty if the response has none
+     */
+    public CompiledMatcher[] getDelayConditions(MockResponse response) {
+        return getResponse(response).getDelayConditions();
+    }
+
+    /**
+     * Get the throttle to send one of this endpoint's responses with.
+     *
+     * @param response the compiled response
+     * @return the throttle of the response, or else of the endpoint; null if neither has one
+     */
+    public Throttle getThrottle(CompiledResponse response) {
+        return response.getThrottle() != null ? response.getThrottle() : throttle;
+    }
+
+    /**
+     * @return the endpoint configuration
+     */
+    public MockEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the METHOD:path key identifying this endpoint
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the compiled path template
+     */
+    public PathTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return true if a matcher or delay condition of this endpoint inspects the request body
+     */
+    public boolean readsBody() {
+        return readsBody;
+    }
+
+    /**
+     * @return true if this endpoint has request matchers
+     */
+    public boolean hasMatchers() {
+        return matchers.length > 0;
+    }
+
+    private static boolean readsBody(CompiledMatcher[] matchers) {
+        for (CompiledMatcher matcher : matchers) {
+            if (matcher.readsBody()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
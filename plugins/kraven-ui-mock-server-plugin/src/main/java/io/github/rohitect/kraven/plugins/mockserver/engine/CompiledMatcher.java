@@ -0,0 +1,314 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockDelayCondition;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockMatcher;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.HttpString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable, pre-compiled form of a {@link MockMatcher} or {@link MockDelayCondition}.
+ * Regular expressions are compiled once, comparison values are lower-cased up front for
+ * case-insensitive matching, header names are resolved to {@link HttpString}s and body JSONPath
+ * expressions are compiled, so evaluating a matcher on the request path does not compile or
+ * allocate anything it can avoid.
+ * <p>
+ * Body matchers evaluate their JSONPath expression against the {@link RequestBody} attached to
+ * the exchange; a body matcher without an expression matches against the whole body text.
+ */
+@Slf4j
+public final class CompiledMatcher {
+
+    private static final CompiledMatcher[] NONE = new CompiledMatcher[0];
+
+    /**
+     * The part of the request a matcher inspects.
+     */
+    enum Source {
+        HEADER, QUERY_PARAM, PATH_VARIABLE, BODY, METHOD, PATH, UNKNOWN
+    }
+
+    /**
+     * The comparison a matcher performs.
+     */
+    enum Operator {
+        EQUALS, CONTAINS, STARTS_WITH, ENDS_WITH, REGEX, EXISTS, UNKNOWN
+    }
+
+    private final Source source;
+    private final String name;
+    private final HttpString headerName;
+    private final Operator operator;
+    private final String value;
+    private final Pattern pattern;
+    private final JsonPath jsonPath;
+    private final boolean caseSensitive;
+    private final boolean required;
+
+    private CompiledMatcher(Source source, String name, Operator operator, String value, String pattern,
+                            boolean caseSensitive, boolean required) {
+        this.source = source;
+        this.name = name;
+        this.headerName = source == Source.HEADER && name != null ? new HttpString(name) : null;
+        this.operator = operator;
+        this.caseSensitive = caseSensitive;
+        this.required = required;
+        this.value = value != null && !caseSensitive ? value.toLowerCase() : value;
+        this.pattern = compilePattern(pattern, caseSensitive);
+        this.jsonPath = source == Source.BODY ? compileJsonPath(name) : null;
+    }
+
+    /**
+     * Compile a request matcher.
+     *
+     * @param matcher the matcher configuration
+     * @return the compiled matcher
+     */
+    public static CompiledMatcher of(MockMatcher matcher) {
+        return new CompiledMatcher(source(matcher.getType()), matcher.getName(), operator(matcher.getOperator()),
+                matcher.getValue(), matcher.getPattern(), matcher.isCaseSensitive(), matcher.isRequired());
+    }
+
+    /**
+     * Compile a delay condition.
+     *
+     * @param condition the condition configuration
+     * @return the compiled condition
+     */
+    public static CompiledMatcher of(MockDelayCondition condition) {
+        return new CompiledMatcher(source(condition.getType()), condition.getName(), operator(condition.getOperator()),
+                condition.getValue(), condition.getPattern(), condition.isCaseSensitive(), condition.isRequired());
+    }
+
+    /**
+     * Compile a list of request matchers.
+     *
+     * @param matchers the matcher configurations, may be null
+     * @return the compiled matchers
+     */
+    public static CompiledMatcher[] ofMatchers(List<MockMatcher> matchers) {
+        if (matchers == null || matchers.isEmpty()) {
+            return NONE;
+        }
+        return matchers.stream().map(CompiledMatcher::of).toArray(CompiledMatcher[]::new);
+    }
+
+    /**
+     * Compile a list of delay conditions.
+     *
+     * @param conditions the condition configurations, may be null
+     * @return the compiled conditions
+     */
+    public static CompiledMatcher[] ofConditions(List<MockDelayCondition> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return NONE;
+        }
+        return conditions.stream().map(CompiledMatcher::of).toArray(CompiledMatcher[]::new);
+    }
+
+    /**
+     * Check a request against a set of compiled matchers.
+     * Only required matchers can cause the check to fail.
+     *
+     * @param matchers the compiled matchers
+     * @param exchange the HTTP server exchange
+     * @param match the route match holding the bound path variables, may be null
+     * @return true if every required matcher matches
+     */
+    public static boolean matchesAll(CompiledMatcher[] matchers, HttpServerExchange exchange, RouteMatch match) {
+        for (CompiledMatcher matcher : matchers) {
+            if (matcher.required && !matcher.test(exchange, match)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check a request against this matcher.
+     *
+     * @param exchange the HTTP server exchange
+     * @param match the route match holding the bound path variables, may be null
+     * @return true if the request matches
+     */
+    public boolean test(HttpServerExchange exchange, RouteMatch match) {
+        switch (source) {
+            case HEADER: {
+                HeaderValues values = exchange.getRequestHeaders().get(headerName);
+                return matchesValue(values == null || values.isEmpty() ? null : values.getFirst());
+            }
+            case QUERY_PARAM: {
+                Deque<String> values = exchange.getQueryParameters().get(name);
+                return matchesValue(values == null || values.isEmpty() ? null : values.getFirst());
+            }
+            case PATH_VARIABLE:
+                return matchesValue(match != null ? match.getPathVariable(name) : null);
+            case METHOD:
+                return matchesValue(exchange.getRequestMethod().toString());
+            case PATH:
+                return matchesValue(exchange.getRequestPath());
+            case BODY:
+                return matchesBody(exchange.getAttachment(RequestBody.ATTACHMENT_KEY));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check a request body against this matcher.
+     * When the expression selects several values, the matcher matches if any of them does.
+     *
+     * @param body the request body, null if it has not been read
+     * @return true if the body matches
+     */
+    public boolean matchesBody(RequestBody body) {
+        if (body == null) {
+            return matchesValue(null);
+        }
+        if (!StringUtils.hasText(name)) {
+            return matchesValue(body.getText());
+        }
+        if (jsonPath == null) {
+            // Invalid expression
+            return false;
+        }
+
+        Object result = body.read(jsonPath);
+        if (result instanceof List && !jsonPath.isDefinite()) {
+            List<?> values = (List<?>) result;
+            if (values.isEmpty()) {
+                return matchesValue(null);
+            }
+            for (Object value : values) {
+                if (matchesValue(value == null ? null : RequestBody.toJson(value))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return matchesValue(result == null ? null : RequestBody.toJson(result));
+    }
+
+    /**
+     * Check a single value against this matcher.
+     *
+     * @param valueToMatch the value to check, null if it is absent from the request
+     * @return true if the value matches
+     */
+    public boolean matchesValue(String valueToMatch) {
+        if (valueToMatch == null) {
+            // If the value to match is null, it only matches if we're checking for existence
+            return operator == Operator.EXISTS && !required;
+        }
+
+        switch (operator) {
+            case EQUALS:
+                return value != null && (caseSensitive ? value.equals(valueToMatch) : value.equalsIgnoreCase(valueToMatch));
+            case CONTAINS:
+                return value != null && (caseSensitive ? valueToMatch : valueToMatch.toLowerCase()).contains(value);
+            case STARTS_WITH:
+                return value != null && valueToMatch.regionMatches(!caseSensitive, 0, value, 0, value.length());
+            case ENDS_WITH:
+                return value != null && valueToMatch.regionMatches(!caseSensitive,
+                        valueToMatch.length() - value.length(), value, 0, value.length());
+            case REGEX:
+                return pattern != null && pattern.matcher(valueToMatch).matches();
+            case EXISTS:
+                return true; // If we got here, the value exists
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if this matcher inspects the request body, which must then be read before matching
+     */
+    public boolean readsBody() {
+        return source == Source.BODY;
+    }
+
+    /**
+     * @return whether this matcher must match for the request to be accepted
+     */
+    public boolean isRequired() {
+        return required;
+    }
+
+    private static Pattern compilePattern(String pattern, boolean caseSensitive) {
+        if (pattern == null) {
+            return null;
+        }
+        try {
+            return caseSensitive ? Pattern.compile(pattern) : Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+        } catch (PatternSyntaxException e) {
+            log.warn("Invalid matcher pattern '{}': {}", pattern, e.getMessage());
+            return null;
+        }
+    }
+
+    private static JsonPath compileJsonPath(String expression) {
+        if (!StringUtils.hasText(expression)) {
+            return null;
+        }
+        try {
+            return JsonPath.compile(expression);
+        } catch (InvalidPathException e) {
+            log.warn("Invalid body matcher JSON path '{}': {}", expression, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Source source(String type) {
+        if (type == null) {
+            return Source.UNKNOWN;
+        }
+        switch (type) {
+            case "header":
+                return Source.HEADER;
+            case "query-param":
+                return Source.QUERY_PARAM;
+            case "path-variable":
+                return Source.PATH_VARIABLE;
+            case "body":
+                return Source.BODY;
+            case "method":
+                return Source.METHOD;
+            case "path":
+                return Source.PATH;
+            default:
+                log.warn("Unknown matcher type: {}", type);
+                return Source.UNKNOWN;
+        }
+    }
+
+    private static Operator operator(String operator) {
+        if (operator == null) {
+            return Operator.UNKNOWN;
+        }
+        switch (operator) {
+            case "equals":
+                return Operator.EQUALS;
+            case "contains":
+                return Operator.CONTAINS;
+            case "startsWith":
+                return Operator.STARTS_WITH;
+            case "endsWith":
+                return Operator.ENDS_WITH;
+            case "regex":
+                return Operator.REGEX;
+            case "exists":
+                return Operator.EXISTS;
+            default:
+                return Operator.UNKNOWN;
+        }
+    }
+}
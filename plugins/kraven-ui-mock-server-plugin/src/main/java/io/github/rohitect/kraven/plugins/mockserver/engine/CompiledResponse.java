@@ -0,0 +1,256 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HttpString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Immutable, pre-serialized form of a {@link MockResponse}.
+ * Header names are resolved to {@link HttpString}s once, and a static body is serialized and
+ * encoded to UTF-8 into a direct buffer at load time. Sending a static response only writes a
+ * {@link ByteBuffer#duplicate() duplicate} of that buffer, so it does not serialize, encode or
+ * copy anything per request. Static bodies of at least {@value Compressor#MIN_SIZE} bytes are also
+ * compressed once with each {@link ContentEncoding}. A body file is only resolved here; it is
+ * streamed per request.
+ */
+@Slf4j
+public final class CompiledResponse {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final byte[] EMPTY_OBJECT = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private final MockResponse response;
+    private final HttpString[] headerNames;
+    private final String[] headerValues;
+    private final ByteBuffer body;
+    private final ByteBuffer[] encodedBodies;
+    private final boolean compressible;
+    private final boolean templated;
+    private final BodyFile bodyFile;
+    private final CompiledMatcher[] delayConditions;
+    private final DelayDistribution delayDistribution;
+    private final Throttle throttle;
+    private final ConnectionFault fault;
+
+    private CompiledResponse(MockResponse response) {
+        this.response = response;
+
+        Map<String, String> headers = response.getHeaders();
+        int headerCount = headers == null ? 0 : headers.size();
+        this.headerNames = new HttpString[headerCount];
+        this.headerValues = new String[headerCount];
+        if (headerCount > 0) {
+            int i = 0;
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                headerNames[i] = new HttpString(header.getKey());
+                headerValues[i] = header.getValue();
+                i++;
+            }
+        }
+
+        this.bodyFile = BodyFile.of(response);
+        this.templated = bodyFile == null && response.getBody() == null && StringUtils.hasText(response.getBodyTemplate());
+        this.body = templated || bodyFile != null ? null : encodeBody(response);
+        this.compressible = bodyFile == null && isCompressible(response);
+        if (body == null || !compressible) {
+            this.encodedBodies = null;
+        } else if (response.getBody() instanceof EncodedBody) {
+            this.encodedBodies = ((EncodedBody) response.getBody()).getEncodedBodies();
+        } else {
+            this.encodedBodies = compressBody(body);
+        }
+        this.delayConditions = CompiledMatcher.ofConditions(response.getDelayConditions());
+        this.delayDistribution = DelayDistribution.of(response.getDelayDistribution());
+        this.throttle = Throttle.of(response.getThrottle());
+        this.fault = ConnectionFault.of(response.getFault());
+    }
+
+    /**
+     * Compile a response.
+     *
+     * @param response the response configuration
+     * @return the compiled response
+     */
+    public static CompiledResponse of(MockResponse response) {
+        return new CompiledResponse(response);
+    }
+
+    /**
+     * Set the status code and headers of this response on the exchange.
+     *
+     * @param exchange the HTTP server exchange
+     */
+    public void applyStatusAndHeaders(HttpServerExchange exchange) {
+        exchange.setStatusCode(response.getStatus());
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        for (int i = 0; i < headerNames.length; i++) {
+            responseHeaders.put(headerNames[i], headerValues[i]);
+        }
+    }
+
+    /**
+     * Get a view of the pre-encoded body that can be handed to the response sender.
+     * Each call returns an independent duplicate sharing the same content.
+     *
+     * @return the body, or null if the response is templated, served from a file or its body could not be serialized
+     */
+    public ByteBuffer getBody() {
+        return body == null ? null : body.duplicate();
+    }
+
+    /**
+     * Get a view of the pre-compressed body.
+     *
+     * @param encoding the content coding
+     * @return the compressed body, or null if the body is not static, too small, or does not
+     * get smaller when compressed
+     */
+    public ByteBuffer getBody(ContentEncoding encoding) {
+        if (encodedBodies == null || encodedBodies[encoding.ordinal()] == null) {
+            return null;
+        }
+        return encodedBodies[encoding.ordinal()].duplicate();
+    }
+
+    /**
+     * @return true if the body may be compressed: it is not a file and has no configured Content-Encoding
+     */
+    public boolean isCompressible() {
+        return compressible && (templated || encodedBodies != null);
+    }
+
+    /**
+     * @return the file the body is served from, or null if the body is inline or templated
+     */
+    public BodyFile getBodyFile() {
+        return bodyFile;
+    }
+
+    /**
+     * @return true if the body is rendered from a template per request
+     */
+    public boolean isTemplated() {
+        return templated;
+    }
+
+    /**
+     * @return the response configuration
+     */
+    public MockResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the compiled delay conditions, empty if the response has none
+     */
+    public CompiledMatcher[] getDelayConditions() {
+        return delayConditions;
+    }
+
+    /**
+     * @return the compiled delay distribution, or null if the response has none
+     */
+    public DelayDistribution getDelayDistribution() {
+        return delayDistribution;
+    }
+
+    /**
+     * @return the compiled throttle of this response, or null if the response has none
+     */
+    public Throttle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * @return the connection fault this response injects, or null if it sends a normal response
+     */
+    public ConnectionFault getFault() {
+        return fault;
+    }
+
+    /**
+     * Compress a static body with each coding.
+     *
+     * @param body the body
+     * @return the compressed bodies indexed by {@link ContentEncoding#ordinal()}, null entries for
+     * codings that do not make the body smaller, or null if the body is too small to compress
+     */
+    static ByteBuffer[] compressBody(ByteBuffer body) {
+        if (body.remaining() < Compressor.MIN_SIZE) {
+            return null;
+        }
+        byte[] bytes = new byte[body.remaining()];
+        body.duplicate().get(bytes);
+
+        ByteBuffer[] encoded = new ByteBuffer[ContentEncoding.values().length];
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            byte[] compressed = Compressor.compress(bytes, encoding);
+            if (compressed.length < bytes.length) {
+                encoded[encoding.ordinal()] = toDirectBuffer(compressed);
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * @return true if the body of the response may be compressed, which it may not if the response
+     * configures its own Content-Encoding
+     */
+    static boolean isCompressible(MockResponse response) {
+        return !hasHeader(response, "Content-Encoding");
+    }
+
+    private static boolean hasHeader(MockResponse response, String name) {
+        if (response.getHeaders() != null) {
+            for (String header : response.getHeaders().keySet()) {
+                if (header.equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serialize the inline body of a response to UTF-8.
+     * A body restored from a snapshot is already encoded and is used as is.
+     *
+     * @param response the response
+     * @return a read-only buffer holding the body, or null if it could not be serialized
+     */
+    static ByteBuffer encodeBody(MockResponse response) {
+        byte[] bytes;
+        Object body = response.getBody();
+        if (body instanceof EncodedBody) {
+            return ((EncodedBody) body).getBody();
+        }
+        try {
+            if (body == null) {
+                bytes = EMPTY_OBJECT;
+            } else if (body instanceof String) {
+                bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+            } else {
+                bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+            }
+        } catch (Exception e) {
+            log.error("Failed to serialize body of response '{}'", response.getId(), e);
+            return null;
+        }
+
+        return toDirectBuffer(bytes);
+    }
+
+    private static ByteBuffer toDirectBuffer(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies with pooled {@link Deflater}s.
+ * A deflater holds native memory and is costly to create, so instances are reset and reused
+ * across requests instead of being created per body. Gzip output is framed by hand around a raw
+ * deflate stream, which avoids the stream wrappers of {@link java.util.zip.GZIPOutputStream}.
+ */
+public final class Compressor {
+
+    /**
+     * Bodies smaller than this are not worth compressing.
+     */
+    public static final int MIN_SIZE = 256;
+
+    private static final int MAX_POOLED = 64;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final Pool GZIP_POOL = new Pool(true);
+    private static final Pool DEFLATE_POOL = new Pool(false);
+
+    private Compressor() {
+    }
+
+    /**
+     * Compress a body.
+     *
+     * @param input the body
+     * @param encoding the coding to compress with
+     * @return the compressed body
+     */
+    public static byte[] compress(byte[] input, ContentEncoding encoding) {
+        boolean gzip = encoding == ContentEncoding.GZIP;
+        Pool pool = gzip ? GZIP_POOL : DEFLATE_POOL;
+        Deflater deflater = pool.acquire();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+
+            int headerSize = gzip ? GZIP_HEADER.length : 0;
+            byte[] output = new byte[headerSize + input.length / 2 + 64];
+            if (gzip) {
+                System.arraycopy(GZIP_HEADER, 0, output, 0, headerSize);
+            }
+            int length = headerSize;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+
+            if (gzip) {
+                if (length + GZIP_TRAILER_SIZE > output.length) {
+                    output = Arrays.copyOf(output, length + GZIP_TRAILER_SIZE);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(input);
+                writeIntLE(output, length, (int) crc.getValue());
+                writeIntLE(output, length + 4, input.length);
+                length += GZIP_TRAILER_SIZE;
+            }
+            return length == output.length ? output : Arrays.copyOf(output, length);
+        } finally {
+            pool.release(deflater);
+        }
+    }
+
+    private static void writeIntLE(byte[] output, int offset, int value) {
+        output[offset] = (byte) value;
+        output[offset + 1] = (byte) (value >>> 8);
+        output[offset + 2] = (byte) (value >>> 16);
+        output[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * A bounded pool of deflaters of one format. Deflaters beyond the bound are ended rather than kept.
+     */
+    private static final class Pool {
+
+        private final boolean raw;
+        private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        Pool(boolean raw) {
+            this.raw = raw;
+        }
+
+        Deflater acquire() {
+            Deflater deflater = deflaters.poll();
+            if (deflater == null) {
+                return new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+            }
+            size.decrementAndGet();
+            return deflater;
+        }
+
+        void release(Deflater deflater) {
+            deflater.reset();
+            if (size.incrementAndGet() <= MAX_POOLED) {
+                deflaters.offer(deflater);
+            } else {
+                size.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockLatencyPoint;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.SameThreadExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.xnio.XnioExecutor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Models the capacity of an endpoint: how many requests it serves at the same time, how many
+ * more may wait for a slot, and how its latency grows with the number of requests in flight.
+ * <p>
+ * Slots are counted with a non-blocking semaphore. A request that finds the endpoint at capacity
+ * is parked: its exchange is dispatched without a worker thread and waits in a lock-free queue,
+ * optionally with a timeout on its IO thread's timer. When a request completes, its slot is handed
+ * directly to the oldest waiting request, which resumes on its own IO thread. Requests that do
+ * not fit in the queue, or wait too long, are rejected with the endpoint's reject status.
+ */
+@Slf4j
+public final class ConcurrencyLimiter {
+
+    private final int maxConcurrency;
+    private final int queueDepth;
+    private final long queueTimeoutMs;
+    private final int rejectStatus;
+    private final int[] curveConcurrency;
+    private final int[] curveDelays;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private ConcurrencyLimiter(int maxConcurrency, int queueDepth, long queueTimeoutMs, int rejectStatus,
+                               int[] curveConcurrency, int[] curveDelays) {
+        this.maxConcurrency = maxConcurrency;
+        this.queueDepth = queueDepth;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.rejectStatus = rejectStatus;
+        this.curveConcurrency = curveConcurrency;
+        this.curveDelays = curveDelays;
+    }
+
+    /**
+     * Build the limiter of an endpoint.
+     *
+     * @param endpoint the endpoint configuration
+     * @return the limiter, or null if the endpoint has neither a concurrency limit nor a latency curve
+     */
+    public static ConcurrencyLimiter of(MockEndpoint endpoint) {
+        List<MockLatencyPoint> curve = new ArrayList<>();
+        if (endpoint.getLatencyCurve() != null) {
+            for (MockLatencyPoint point : endpoint.getLatencyCurve()) {
+                if (point != null && point.getConcurrency() > 0 && point.getDelayMs() >= 0) {
+                    curve.add(point);
+                } else {
+                    log.warn("Ignoring invalid latency curve point of endpoint {} {}: {}",
+                            endpoint.getMethod(), endpoint.getPath(), point);
+                }
+            }
+        }
+        if (endpoint.getMaxConcurrency() <= 0 && curve.isEmpty()) {
+            return null;
+        }
+
+        curve.sort(Comparator.comparingInt(MockLatencyPoint::getConcurrency));
+        int[] curveConcurrency = new int[curve.size()];
+        int[] curveDelays = new int[curve.size()];
+        for (int i = 0; i < curve.size(); i++) {
+            curveConcurrency[i] = curve.get(i).getConcurrency();
+            curveDelays[i] = curve.get(i).getDelayMs();
+        }
+
+        int rejectStatus = endpoint.getRejectStatus() >= 400 && endpoint.getRejectStatus() <= 599
+                ? endpoint.getRejectStatus()
+                : 503;
+        return new ConcurrencyLimiter(
+                endpoint.getMaxConcurrency() > 0 ? endpoint.getMaxConcurrency() : Integer.MAX_VALUE,
+                Math.max(endpoint.getQueueDepth(), 0), Math.max(endpoint.getQueueTimeoutMs(), 0), rejectStatus,
+                curveConcurrency, curveDelays);
+    }
+
+    /**
+     * Take a slot for a request, waiting in the queue if the endpoint is at capacity.
+     * Once admitted, the slot is released when the exchange completes. Rejected requests are
+     * answered by the limiter and never admitted.
+     *
+     * @param exchange the HTTP server exchange
+     * @param admitted called on the exchange's IO thread with the number of requests in flight,
+     *                 including this one, once the request holds a slot
+     */
+    public void acquire(HttpServerExchange exchange, IntConsumer admitted) {
+        int concurrency = tryAcquire();
+        if (concurrency > 0) {
+            admit(exchange, concurrency, admitted);
+            return;
+        }
+
+        if (queued.incrementAndGet() > queueDepth) {
+            queued.decrementAndGet();
+            reject(exchange, "Endpoint is at capacity");
+            return;
+        }
+
+        Waiter waiter = new Waiter(exchange, admitted);
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+            waiters.add(waiter);
+            if (queueTimeoutMs > 0) {
+                waiter.timeout = exchange.getIoThread()
+                        .executeAfter(() -> expire(waiter), queueTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+            // A slot may have been released before the waiter was queued
+            drain();
+        });
+    }
+
+    /**
+     * Get the delay the latency curve adds at a concurrency.
+     *
+     * @param concurrency the number of requests in flight
+     * @return the delay in milliseconds, 0 without a curve
+     */
+    public int getCurveDelay(int concurrency) {
+        if (curveConcurrency.length == 0) {
+            return 0;
+        }
+        if (concurrency <= curveConcurrency[0]) {
+            return curveDelays[0];
+        }
+        for (int i = 1; i < curveConcurrency.length; i++) {
+            if (concurrency <= curveConcurrency[i]) {
+                double fraction = (double) (concurrency - curveConcurrency[i - 1])
+                        / (curveConcurrency[i] - curveConcurrency[i - 1]);
+                return (int) Math.round(curveDelays[i - 1] + fraction * (curveDelays[i] - curveDelays[i - 1]));
+            }
+        }
+        return curveDelays[curveDelays.length - 1];
+    }
+
+    /**
+     * @return the number of requests holding a slot
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests waiting for a slot
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return the number of slots taken, or 0 if the endpoint is at capacity
+     */
+    private int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxConcurrency) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private void admit(HttpServerExchange exchange, int concurrency, IntConsumer admitted) {
+        exchange.addExchangeCompleteListener((ex, next) -> {
+            try {
+                release();
+            } finally {
+                next.proceed();
+            }
+        });
+        admitted.accept(concurrency);
+    }
+
+    /**
+     * Hand the slot of a completed request to the oldest waiting request, or free it.
+     */
+    private void release() {
+        Waiter waiter = pollWaiter();
+        if (waiter != null) {
+            waiter.resume(inFlight.get());
+            return;
+        }
+        inFlight.decrementAndGet();
+        // A request may have been queued after the poll and before the slot was freed
+        drain();
+    }
+
+    /**
+     * Admit waiting requests while there are free slots.
+     */
+    private void drain() {
+        while (!waiters.isEmpty()) {
+            int concurrency = tryAcquire();
+            if (concurrency == 0) {
+                return;
+            }
+            Waiter waiter = pollWaiter();
+            if (waiter == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            waiter.resume(concurrency);
+        }
+    }
+
+    /**
+     * @return the oldest waiter that has not timed out, now claimed, or null if there is none
+     */
+    private Waiter pollWaiter() {
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (waiter.claim()) {
+                queued.decrementAndGet();
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private void expire(Waiter waiter) {
+        if (waiter.claim()) {
+            queued.decrementAndGet();
+            waiters.remove(waiter);
+            reject(waiter.exchange, "Timed out waiting for the endpoint");
+        }
+    }
+
+    private void reject(HttpServerExchange exchange, String message) {
+        log.debug("Rejecting request {} {}: {}", exchange.getRequestMethod(), exchange.getRelativePath(), message);
+        exchange.setStatusCode(rejectStatus);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send("{\"error\":\"" + message + "\"}");
+    }
+
+    /**
+     * A parked request. Either a released slot or the queue timeout claims it, never both; a
+     * resumed request cancels its timeout so the IO thread's timer does not keep it.
+     */
+    private final class Waiter {
+
+        private final HttpServerExchange exchange;
+        private final IntConsumer admitted;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        // Set on the IO thread of the exchange, which is also where it is cancelled
+        private XnioExecutor.Key timeout;
+
+        Waiter(HttpServerExchange exchange, IntConsumer admitted) {
+            this.exchange = exchange;
+            this.admitted = admitted;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void resume(int concurrency) {
+            exchange.getIoThread().execute(() -> {
+                if (timeout != null) {
+                    timeout.remove();
+                }
+                admit(exchange, concurrency, admitted);
+            });
+        }
+    }
+}
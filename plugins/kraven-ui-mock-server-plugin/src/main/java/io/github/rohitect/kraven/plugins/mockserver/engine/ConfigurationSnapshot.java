@@ -0,0 +1,319 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled, binary form of a configuration that is memory-mapped on startup instead of parsed.
+ * <p>
+ * A snapshot holds the configuration as it was after loading, with body file paths resolved,
+ * and the bodies of its static responses already serialized to UTF-8 and compressed. It is keyed
+ * by the SHA-256 hash of the configuration content it was built from; a snapshot of other
+ * content is ignored and the configuration is parsed in full.
+ * <p>
+ * The layout is big-endian: a magic number, the format version and the content hash, then the
+ * length-prefixed JSON of the configuration without the bodies of static responses, then the
+ * number of responses and, for each response in configuration order, the kind of its body and
+ * for static bodies the length-prefixed body and its compressed forms. The JSON that is still
+ * parsed is small next to the bodies of a large configuration, and the bodies are sliced out of
+ * the mapping without being copied.
+ */
+@Slf4j
+public final class ConfigurationSnapshot {
+
+    private static final int MAGIC = 0x4B4D5353;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte NO_BODY = 0;
+    private static final byte STRING_BODY = 1;
+    private static final byte JSON_BODY = 2;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ConfigurationSnapshot() {
+    }
+
+    /**
+     * Compute the key of a snapshot.
+     *
+     * @param content the configuration content
+     * @return the SHA-256 hash of the content
+     */
+    public static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Map a snapshot and restore the configuration it holds.
+     *
+     * @param file the snapshot file
+     * @param hash the hash of the current configuration content
+     * @return the configuration, or null if there is no snapshot of that content or it cannot be read
+     */
+    public static MockConfiguration read(Path file, byte[] hash) {
+        try {
+            ByteBuffer mapping = map(file, hash);
+            if (mapping == null) {
+                return null;
+            }
+            MockConfiguration configuration = OBJECT_MAPPER.readValue(
+                    new ByteBufferBackedInputStream(slice(mapping)), MockConfiguration.class);
+            restoreBodies(configuration, mapping);
+            return configuration;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable configuration snapshot {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Map a snapshot and serve the static bodies of a configuration loaded from the same content
+     * from it, without parsing the configuration again.
+     *
+     * @param file the snapshot file
+     * @param hash the hash of the content the configuration was loaded from
+     * @param configuration the loaded configuration, whose bodies are replaced
+     * @return true if the bodies were replaced, false if there is no snapshot of that content or it cannot be read
+     */
+    public static boolean readBodies(Path file, byte[] hash, MockConfiguration configuration) {
+        try {
+            ByteBuffer mapping = map(file, hash);
+            if (mapping == null) {
+                return false;
+            }
+            // Skip the structure, it is the configuration that is already loaded
+            slice(mapping);
+            restoreBodies(configuration, mapping);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable configuration snapshot {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Map a snapshot, positioned after its header.
+     *
+     * @return the mapping, or null if there is no snapshot of the content
+     */
+    private static ByteBuffer map(Path file, byte[] hash) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 8 + hash.length || size > Integer.MAX_VALUE) {
+                log.debug("Ignoring configuration snapshot {} of {} bytes", file, size);
+                return null;
+            }
+            // The mapping stays valid after the channel is closed, for as long as a body refers to it
+            ByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapping.getInt() != MAGIC || mapping.getInt() != FORMAT_VERSION) {
+                log.debug("Ignoring configuration snapshot {} of another format", file);
+                return null;
+            }
+            byte[] storedHash = new byte[hash.length];
+            mapping.get(storedHash);
+            if (!Arrays.equals(storedHash, hash)) {
+                log.debug("Ignoring configuration snapshot {} of other content", file);
+                return null;
+            }
+            return mapping;
+        }
+    }
+
+    /**
+     * Read the bodies that follow the structure and set them on the responses of the configuration.
+     * No response is changed unless there is a body for each of them.
+     */
+    private static void restoreBodies(MockConfiguration configuration, ByteBuffer mapping) throws IOException {
+        int remaining = mapping.getInt();
+        List<MockResponse> responses = new ArrayList<>();
+        List<EncodedBody> bodies = new ArrayList<>();
+        for (MockEndpoint endpoint : configuration.getEndpoints()) {
+            for (MockResponse response : responses(endpoint)) {
+                if (remaining-- <= 0) {
+                    throw new IOException("fewer bodies than responses");
+                }
+                responses.add(response);
+                bodies.add(readBody(mapping));
+            }
+        }
+        if (remaining != 0) {
+            throw new IOException("more bodies than responses");
+        }
+        for (int i = 0; i < responses.size(); i++) {
+            if (bodies.get(i) != null) {
+                responses.get(i).setBody(bodies.get(i));
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot of a configuration.
+     * The snapshot is written next to the file and moved over it, so a snapshot that is still
+     * mapped is never modified.
+     *
+     * @param file the snapshot file
+     * @param hash the hash of the content the configuration was loaded from
+     * @param configuration the loaded configuration
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(Path file, byte[] hash, MockConfiguration configuration) throws IOException {
+        ObjectNode structure = OBJECT_MAPPER.valueToTree(configuration);
+        JsonNode endpointNodes = structure.path("endpoints");
+
+        ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+        DataOutputStream bodiesOut = new DataOutputStream(bodies);
+        int responseCount = 0;
+        for (int e = 0; e < configuration.getEndpoints().size(); e++) {
+            MockEndpoint endpoint = configuration.getEndpoints().get(e);
+            ObjectNode endpointNode = (ObjectNode) endpointNodes.get(e);
+            endpointNode.remove("defaultResponse");
+            List<MockResponse> responses = responses(endpoint);
+            for (int r = 0; r < responses.size(); r++) {
+                if (writeBody(responses.get(r), bodiesOut)) {
+                    ((ObjectNode) endpointNode.path("responses").get(r)).remove("body");
+                }
+                responseCount++;
+            }
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(hash);
+                byte[] structureBytes = OBJECT_MAPPER.writeValueAsBytes(structure);
+                out.writeInt(structureBytes.length);
+                out.write(structureBytes);
+                out.writeInt(responseCount);
+                bodies.writeTo(out);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Write the encoded body of a static response, or the marker of a response without one.
+     *
+     * @return true if the body was written
+     */
+    private static boolean writeBody(MockResponse response, DataOutputStream out) throws IOException {
+        Object body = response.getBody();
+        ByteBuffer encoded = body == null || BodyFile.of(response) != null ? null : CompiledResponse.encodeBody(response);
+        if (encoded == null) {
+            out.writeByte(NO_BODY);
+            return false;
+        }
+
+        boolean string = body instanceof String || (body instanceof EncodedBody && !((EncodedBody) body).isJson());
+        out.writeByte(string ? STRING_BODY : JSON_BODY);
+        writeBuffer(encoded, out);
+        ByteBuffer[] compressed = CompiledResponse.isCompressible(response) ? CompiledResponse.compressBody(encoded) : null;
+        out.writeBoolean(compressed != null);
+        if (compressed != null) {
+            for (ByteBuffer buffer : compressed) {
+                writeBuffer(buffer, out);
+            }
+        }
+        return true;
+    }
+
+    private static void writeBuffer(ByteBuffer buffer, DataOutputStream out) throws IOException {
+        if (buffer == null) {
+            out.writeInt(-1);
+            return;
+        }
+        ByteBuffer view = buffer.duplicate();
+        out.writeInt(view.remaining());
+        byte[] chunk = new byte[Math.min(view.remaining(), 8192)];
+        while (view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * @return the body of the next response, or null if it has no static body
+     */
+    private static EncodedBody readBody(ByteBuffer mapping) throws IOException {
+        byte kind = mapping.get();
+        if (kind == NO_BODY) {
+            return null;
+        }
+        if (kind != STRING_BODY && kind != JSON_BODY) {
+            throw new IOException("unknown body kind " + kind);
+        }
+
+        ByteBuffer body = slice(mapping);
+        ByteBuffer[] compressed = null;
+        if (mapping.get() != 0) {
+            compressed = new ByteBuffer[ContentEncoding.values().length];
+            for (int i = 0; i < compressed.length; i++) {
+                compressed[i] = slice(mapping);
+            }
+        }
+        return new EncodedBody(body, compressed, kind == JSON_BODY);
+    }
+
+    /**
+     * Take the next length-prefixed region of the mapping.
+     *
+     * @return a view of the region, or null for a length of -1
+     */
+    private static ByteBuffer slice(ByteBuffer mapping) throws IOException {
+        int length = mapping.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > mapping.remaining()) {
+            throw new IOException("truncated snapshot");
+        }
+        ByteBuffer region = mapping.slice();
+        region.limit(length);
+        mapping.position(mapping.position() + length);
+        return region;
+    }
+
+    private static List<MockResponse> responses(MockEndpoint endpoint) {
+        return endpoint.getResponses() != null ? endpoint.getResponses() : Collections.emptyList();
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import lombok.extern.slf4j.Slf4j;
+import org.xnio.IoUtils;
+import org.xnio.Options;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A connection-level fault a mock response can inject instead of a well-formed reply.
+ * Clients see these as I/O errors rather than HTTP errors, which exercises their retry and
+ * circuit breaker handling of broken connections.
+ */
+@Slf4j
+public enum ConnectionFault {
+
+    /**
+     * Reset the connection without sending anything.
+     */
+    CONNECTION_RESET("connection-reset"),
+
+    /**
+     * Close the connection without sending anything.
+     */
+    EMPTY_REPLY("empty-reply"),
+
+    /**
+     * Send the status, headers and the first half of the body, then reset the connection.
+     */
+    TRUNCATED_BODY("truncated-body");
+
+    private final String value;
+
+    ConnectionFault(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Resolve a fault from its configuration value.
+     *
+     * @param value the configuration value, may be null
+     * @return the fault, or null if there is none or it is unknown
+     */
+    public static ConnectionFault of(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (ConnectionFault fault : values()) {
+            if (fault.value.equalsIgnoreCase(value)) {
+                return fault;
+            }
+        }
+        log.warn("Unknown connection fault: {}", value);
+        return null;
+    }
+
+    /**
+     * @return true if the fault sends the status and headers of the response before failing
+     */
+    public boolean sendsHeaders() {
+        return this == TRUNCATED_BODY;
+    }
+
+    /**
+     * Inject the fault into an exchange.
+     *
+     * @param exchange the HTTP server exchange
+     * @param body the response body, only used by faults that send part of it
+     */
+    public void inject(HttpServerExchange exchange, ByteBuffer body) {
+        if (this == EMPTY_REPLY) {
+            close(exchange, false);
+            return;
+        }
+        if (this == CONNECTION_RESET || body == null || body.remaining() < 2) {
+            close(exchange, true);
+            return;
+        }
+
+        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, body.remaining());
+        ByteBuffer half = body.duplicate();
+        half.limit(half.position() + body.remaining() / 2);
+        exchange.getResponseSender().send(half, new IoCallback() {
+            @Override
+            public void onComplete(HttpServerExchange exchange, Sender sender) {
+                close(exchange, true);
+            }
+
+            @Override
+            public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+                close(exchange, true);
+            }
+        });
+    }
+
+    /**
+     * Close the underlying connection and end the exchange, so that it is still journaled.
+     * With abort, the socket is closed with SO_LINGER 0, which sends a TCP reset.
+     */
+    private static void close(HttpServerExchange exchange, boolean abort) {
+        try {
+            if (abort) {
+                exchange.getConnection().setOption(Options.CLOSE_ABORT, true);
+            }
+        } catch (IOException e) {
+            log.debug("Failed to enable abortive close: {}", e.getMessage());
+        }
+        IoUtils.safeClose(exchange.getConnection());
+        exchange.endExchange();
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.Locale;
+
+/**
+ * A content coding the mock server can compress response bodies with.
+ * Only codings the JDK implements are supported; Brotli would need a native library.
+ */
+public enum ContentEncoding {
+
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return the token of this coding in Accept-Encoding and Content-Encoding headers
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Pick the coding to use for a request.
+     * Codings with the highest quality value win, gzip before deflate on ties; a quality of 0
+     * excludes a coding, and the wildcard stands for every coding not listed.
+     *
+     * @param acceptEncoding the Accept-Encoding header, may be null
+     * @return the coding to use, or null to send the body uncompressed
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+
+        double[] quality = new double[values().length];
+        double wildcard = -1;
+        boolean[] listed = new boolean[quality.length];
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if ("*".equals(coding)) {
+                wildcard = q;
+                continue;
+            }
+            for (ContentEncoding encoding : values()) {
+                if (encoding.token.equals(coding) || (encoding == GZIP && "x-gzip".equals(coding))) {
+                    quality[encoding.ordinal()] = q;
+                    listed[encoding.ordinal()] = true;
+                }
+            }
+        }
+
+        ContentEncoding best = null;
+        double bestQuality = 0;
+        for (ContentEncoding encoding : values()) {
+            double q = listed[encoding.ordinal()] ? quality[encoding.ordinal()] : Math.max(wildcard, 0);
+            if (q > bestQuality) {
+                best = encoding;
+                bestQuality = q;
+            }
+        }
+        return best;
+    }
+}
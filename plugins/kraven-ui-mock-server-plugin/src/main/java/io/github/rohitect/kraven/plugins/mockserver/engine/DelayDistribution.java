@@ -0,0 +1,174 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockDelayDistribution;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Immutable, pre-compiled form of a {@link MockDelayDistribution}.
+ * Derived parameters, such as the log-normal location or the percentile knots, are computed
+ * once when the configuration is loaded. Samples are drawn from the caller's generator, which on
+ * the request path is the {@link java.util.concurrent.ThreadLocalRandom} of the IO thread, so
+ * concurrent requests never contend on a shared generator.
+ */
+@Slf4j
+public final class DelayDistribution {
+
+    /** z-score of the 99th percentile of the standard normal distribution. */
+    private static final double Z_99 = 2.3263478740408408;
+
+    private enum Type {
+        NORMAL, LOG_NORMAL, PARETO, PERCENTILES
+    }
+
+    private final Type type;
+    private final double location;
+    private final double spread;
+    private final double[] quantiles;
+    private final double[] values;
+    private final double min;
+    private final double max;
+
+    private DelayDistribution(Type type, double location, double spread, double[] quantiles, double[] values,
+                              double min, double max) {
+        this.type = type;
+        this.location = location;
+        this.spread = spread;
+        this.quantiles = quantiles;
+        this.values = values;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Compile a delay distribution.
+     *
+     * @param distribution the distribution configuration, may be null
+     * @return the compiled distribution, or null if there is none or it is invalid
+     */
+    public static DelayDistribution of(MockDelayDistribution distribution) {
+        if (distribution == null || distribution.getType() == null) {
+            return null;
+        }
+
+        double min = Math.max(distribution.getMin(), 0);
+        double max = distribution.getMax() > 0 ? Math.max(distribution.getMax(), min) : Double.MAX_VALUE;
+
+        switch (distribution.getType()) {
+            case "normal":
+                if (distribution.getStdDev() < 0) {
+                    break;
+                }
+                return new DelayDistribution(Type.NORMAL, distribution.getMean(), distribution.getStdDev(),
+                        null, null, min, max);
+            case "log-normal": {
+                if (distribution.getMedian() <= 0) {
+                    break;
+                }
+                double sigma = distribution.getSigma();
+                if (sigma <= 0 && distribution.getP99() > distribution.getMedian()) {
+                    sigma = Math.log(distribution.getP99() / distribution.getMedian()) / Z_99;
+                }
+                if (sigma <= 0) {
+                    break;
+                }
+                return new DelayDistribution(Type.LOG_NORMAL, Math.log(distribution.getMedian()), sigma,
+                        null, null, min, max);
+            }
+            case "pareto":
+                if (distribution.getScale() <= 0 || distribution.getShape() <= 0) {
+                    break;
+                }
+                return new DelayDistribution(Type.PARETO, distribution.getScale(), 1.0 / distribution.getShape(),
+                        null, null, min, max);
+            case "percentiles":
+                return percentiles(distribution, min, max);
+            default:
+                break;
+        }
+
+        log.warn("Invalid {} delay distribution: {}", distribution.getType(), distribution);
+        return null;
+    }
+
+    /**
+     * Draw a delay.
+     *
+     * @param random the generator to draw from
+     * @return the delay in milliseconds
+     */
+    public int sample(Random random) {
+        double delay;
+        switch (type) {
+            case NORMAL:
+                delay = location + spread * random.nextGaussian();
+                break;
+            case LOG_NORMAL:
+                delay = Math.exp(location + spread * random.nextGaussian());
+                break;
+            case PARETO:
+                // Inverse CDF with u in (0, 1]
+                delay = location / Math.pow(1.0 - random.nextDouble(), spread);
+                break;
+            default:
+                delay = interpolate(random.nextDouble());
+                break;
+        }
+        return (int) Math.round(Math.min(Math.max(delay, min), Math.min(max, Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Build the inverse CDF of a percentile-defined distribution from its knots.
+     * The distribution starts at the minimum delay and, without a maximum, ends one step above
+     * the highest percentile given, continuing the slope of the last two knots.
+     */
+    private static DelayDistribution percentiles(MockDelayDistribution distribution, double min, double max) {
+        List<double[]> knots = new ArrayList<>();
+        knots.add(new double[]{0.0, min});
+        addKnot(knots, 0.5, distribution.getP50());
+        addKnot(knots, 0.9, distribution.getP90());
+        addKnot(knots, 0.99, distribution.getP99());
+        addKnot(knots, 0.999, distribution.getP999());
+        if (knots.size() < 2) {
+            log.warn("Percentile delay distribution needs at least one percentile: {}", distribution);
+            return null;
+        }
+
+        double[] last = knots.get(knots.size() - 1);
+        double[] previous = knots.get(knots.size() - 2);
+        double end = max != Double.MAX_VALUE
+                ? max
+                : last[1] + (last[1] - previous[1]) / (last[0] - previous[0]) * (1.0 - last[0]);
+        knots.add(new double[]{1.0, Math.max(end, last[1])});
+
+        double[] quantiles = new double[knots.size()];
+        double[] values = new double[knots.size()];
+        for (int i = 0; i < knots.size(); i++) {
+            quantiles[i] = knots.get(i)[0];
+            values[i] = knots.get(i)[1];
+        }
+        return new DelayDistribution(Type.PERCENTILES, 0, 0, quantiles, values, min, max);
+    }
+
+    private static void addKnot(List<double[]> knots, double quantile, double value) {
+        if (value <= 0) {
+            return;
+        }
+        double[] last = knots.get(knots.size() - 1);
+        // Percentiles can only grow
+        knots.add(new double[]{quantile, Math.max(value, last[1])});
+    }
+
+    private double interpolate(double u) {
+        for (int i = 1; i < quantiles.length; i++) {
+            if (u <= quantiles[i]) {
+                double fraction = (u - quantiles[i - 1]) / (quantiles[i] - quantiles[i - 1]);
+                return values[i - 1] + fraction * (values[i] - values[i - 1]);
+            }
+        }
+        return values[values.length - 1];
+    }
+}
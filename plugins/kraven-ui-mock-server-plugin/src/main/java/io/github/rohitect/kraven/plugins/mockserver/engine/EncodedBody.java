@@ -0,0 +1,96 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response body restored from a {@link ConfigurationSnapshot} in its encoded form.
+ * The buffers are read-only views of the snapshot's memory mapping, so a restored body is sent
+ * without being serialized, encoded, compressed or copied onto the heap. It stands in for the
+ * parsed body of a {@link io.github.rohitect.kraven.plugins.mockserver.model.MockResponse} and
+ * serializes to the same JSON, so the management API shows it unchanged.
+ */
+public final class EncodedBody extends JsonSerializable.Base {
+
+    private final ByteBuffer body;
+    private final ByteBuffer[] encodedBodies;
+    private final boolean json;
+    private int hash;
+
+    EncodedBody(ByteBuffer body, ByteBuffer[] encodedBodies, boolean json) {
+        this.body = body;
+        this.encodedBodies = encodedBodies;
+        this.json = json;
+    }
+
+    /**
+     * @return a view of the UTF-8 body
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    /**
+     * @return the compressed bodies indexed by {@link ContentEncoding#ordinal()}, null entries for
+     * codings that do not make the body smaller, or null if the body is too small to compress
+     */
+    ByteBuffer[] getEncodedBodies() {
+        return encodedBodies;
+    }
+
+    /**
+     * @return true if the body is a JSON document, false if it is a plain string
+     */
+    public boolean isJson() {
+        return json;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        if (json) {
+            generator.writeRawValue(toString());
+        } else {
+            generator.writeString(toString());
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer)
+            throws IOException {
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EncodedBody)) {
+            return false;
+        }
+        EncodedBody other = (EncodedBody) o;
+        return json == other.json && body.equals(other.body);
+    }
+
+    @Override
+    public int hashCode() {
+        // Content hashes of large bodies are costly and the buffer never changes
+        int h = hash;
+        if (h == 0) {
+            h = 31 * body.hashCode() + (json ? 1 : 0);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return StandardCharsets.UTF_8.decode(body.duplicate()).toString();
+    }
+}
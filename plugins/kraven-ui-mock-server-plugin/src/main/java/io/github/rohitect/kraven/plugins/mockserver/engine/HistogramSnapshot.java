@@ -0,0 +1,114 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the counts of a {@link LatencyHistogram}.
+ * Percentiles are reported as the highest value of the bucket they fall into, like HdrHistogram
+ * does, so they never understate the latency that was recorded.
+ */
+public final class HistogramSnapshot {
+
+    /**
+     * A snapshot without any recorded values.
+     */
+    public static final HistogramSnapshot EMPTY =
+            new HistogramSnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0, 0, 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long sumMicros;
+    private final long maxMicros;
+
+    HistogramSnapshot(long[] counts, long count, long sumMicros, long maxMicros) {
+        this.counts = counts;
+        this.count = count;
+        this.sumMicros = sumMicros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Get the histogram of the values recorded between an earlier snapshot and this one.
+     *
+     * @param earlier an earlier snapshot of the same histogram
+     * @return the interval histogram
+     */
+    public HistogramSnapshot minus(HistogramSnapshot earlier) {
+        long[] interval = new long[counts.length];
+        int highest = -1;
+        long intervalCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            interval[i] = Math.max(counts[i] - earlier.counts[i], 0);
+            if (interval[i] > 0) {
+                highest = i;
+                intervalCount += interval[i];
+            }
+        }
+        long max = highest < 0 ? 0 : Math.min(LatencyHistogram.highestValueAt(highest), maxMicros);
+        return new HistogramSnapshot(interval, intervalCount, Math.max(sumMicros - earlier.sumMicros, 0), max);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean value in microseconds, 0 if nothing was recorded
+     */
+    public double getMeanMicros() {
+        return count == 0 ? 0 : (double) sumMicros / count;
+    }
+
+    /**
+     * @return the highest recorded value in microseconds
+     */
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    /**
+     * Get the value at a percentile.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value in microseconds, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(LatencyHistogram.highestValueAt(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    /**
+     * Summarize the snapshot in milliseconds for the management API.
+     *
+     * @return count, mean, p50, p90, p99, p99.9 and max
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("meanMs", millis(getMeanMicros()));
+        summary.put("p50Ms", millis(getValueAtPercentile(50)));
+        summary.put("p90Ms", millis(getValueAtPercentile(90)));
+        summary.put("p99Ms", millis(getValueAtPercentile(99)));
+        summary.put("p999Ms", millis(getValueAtPercentile(99.9)));
+        summary.put("maxMs", millis(maxMicros));
+        return summary;
+    }
+
+    private static double millis(double micros) {
+        return Math.round(micros) / 1000.0;
+    }
+}
@@ -0,0 +1,191 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A request served by the mock server, as recorded in the {@link RequestJournal}.
+ * Bodies are kept as truncated previews. A static response body is not copied at all: the entry
+ * keeps a view of the shared pre-encoded buffer and only decodes its preview when it is read.
+ * Bodies that only exist for one response, such as mapped body files, are kept as a
+ * {@link BodyPreview} copied when the response is sent, so the entry never holds the body itself.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class JournalEntry {
+
+    long sequence;
+
+    private final long timestamp;
+    private final String method;
+    private final String path;
+    private final String query;
+    private final String endpoint;
+    private final String responseId;
+    private final int status;
+    private final long delayMs;
+    private final double latencyMs;
+    private final String requestBody;
+    private final int requestBodySize;
+    private final Object responseBody;
+    private final int responseBodySize;
+    private final int maxBodyPreview;
+
+    /**
+     * Create an entry.
+     *
+     * @param timestamp when the request was received, in epoch milliseconds
+     * @param method the request method
+     * @param path the request path
+     * @param query the query string, empty if there is none
+     * @param endpoint the METHOD:path key of the matched endpoint, null if no endpoint matched
+     * @param responseId the id of the response sent, null if no configured response was sent
+     * @param status the response status code
+     * @param delayMs the delay applied before responding
+     * @param latencyMs the time from receiving the request to completing the response
+     * @param requestBody the request body, null if it was not read
+     * @param responseBody the response body, as a shared {@link ByteBuffer}, a {@link BodyPreview} or a String,
+     *                     null if unknown
+     * @param maxBodyPreview the maximum number of bytes or characters of a body to keep
+     */
+    public JournalEntry(long timestamp, String method, String path, String query, String endpoint, String responseId,
+                        int status, long delayMs, double latencyMs, RequestBody requestBody, Object responseBody,
+                        int maxBodyPreview) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.endpoint = endpoint;
+        this.responseId = responseId;
+        this.status = status;
+        this.delayMs = delayMs;
+        this.latencyMs = latencyMs;
+        this.maxBodyPreview = maxBodyPreview;
+
+        this.requestBody = requestBody != null ? requestBody.preview(maxBodyPreview) : null;
+        this.requestBodySize = requestBody != null ? requestBody.length() : -1;
+
+        if (responseBody instanceof ByteBuffer) {
+            this.responseBody = responseBody;
+            this.responseBodySize = ((ByteBuffer) responseBody).remaining();
+        } else if (responseBody instanceof BodyPreview) {
+            this.responseBody = responseBody;
+            this.responseBodySize = ((BodyPreview) responseBody).size;
+        } else if (responseBody instanceof String) {
+            String text = (String) responseBody;
+            this.responseBody = text.length() > maxBodyPreview ? text.substring(0, maxBodyPreview) : text;
+            this.responseBodySize = text.length();
+        } else {
+            this.responseBody = null;
+            this.responseBodySize = -1;
+        }
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getResponseId() {
+        return responseId;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getDelayMs() {
+        return delayMs;
+    }
+
+    public double getLatencyMs() {
+        return latencyMs;
+    }
+
+    /**
+     * @return the start of the request body, null if the body was not read
+     */
+    public String getRequestBody() {
+        return requestBody;
+    }
+
+    /**
+     * @return the full size of the request body, -1 if the body was not read
+     */
+    public int getRequestBodySize() {
+        return requestBodySize;
+    }
+
+    /**
+     * @return the start of the response body, null if it is unknown
+     */
+    public String getResponseBody() {
+        if (responseBody instanceof ByteBuffer) {
+            ByteBuffer body = ((ByteBuffer) responseBody).duplicate();
+            byte[] bytes = new byte[Math.min(body.remaining(), maxBodyPreview)];
+            body.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        if (responseBody instanceof BodyPreview) {
+            byte[] bytes = ((BodyPreview) responseBody).bytes;
+            return new String(bytes, 0, Math.min(bytes.length, maxBodyPreview), StandardCharsets.UTF_8);
+        }
+        return (String) responseBody;
+    }
+
+    /**
+     * @return the full size of the response body, -1 if it is unknown
+     */
+    public int getResponseBodySize() {
+        return responseBodySize;
+    }
+
+    /**
+     * The start of a response body that is not shared between responses, with the size of the
+     * whole body.
+     */
+    public static final class BodyPreview {
+
+        private final byte[] bytes;
+        private final int size;
+
+        private BodyPreview(byte[] bytes, int size) {
+            this.bytes = bytes;
+            this.size = size;
+        }
+
+        /**
+         * Copy the start of a body.
+         *
+         * @param body the body, whose position is left as it is
+         * @param maxBodyPreview the maximum number of bytes to copy
+         * @return the preview
+         */
+        public static BodyPreview copy(ByteBuffer body, int maxBodyPreview) {
+            ByteBuffer view = body.duplicate();
+            byte[] bytes = new byte[Math.max(0, Math.min(view.remaining(), maxBodyPreview))];
+            view.get(bytes);
+            return new BodyPreview(bytes, body.remaining());
+        }
+    }
+}
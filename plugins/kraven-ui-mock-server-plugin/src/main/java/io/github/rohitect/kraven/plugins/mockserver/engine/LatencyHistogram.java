@@ -0,0 +1,83 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ * Values are recorded in microseconds. Each power of two is split into {@value #SUB_BUCKETS}
+ * linear sub-buckets, which keeps every recorded value within about 1.5% of its true value
+ * from 1µs up to {@link #MAX_VALUE_MICROS} (about 19 hours) in a fixed array of counters.
+ * <p>
+ * Recording is a single atomic increment on the value's bucket plus striped {@link LongAdder}
+ * totals, so concurrent writers do not contend on a shared counter. Readers take a
+ * {@link #snapshot() snapshot} of the counts; the difference between two snapshots is the
+ * histogram of the interval between them.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    static final int MAX_MAGNITUDE = 36;
+    static final long MAX_VALUE_MICROS = (1L << MAX_MAGNITUDE) - 1;
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value.
+     *
+     * @param micros the value in microseconds; negative values are recorded as 0 and values
+     *               above {@link #MAX_VALUE_MICROS} as the maximum
+     */
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE_MICROS);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalMicros.add(value);
+        maxMicros.accumulate(value);
+    }
+
+    /**
+     * Copy the current counts.
+     * Concurrent writes may or may not be included, but no write is ever lost from later snapshots.
+     *
+     * @return the snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copy, totalCount.sum(), totalMicros.sum(), maxMicros.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKETS + (magnitude - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * @return the highest value that falls into the bucket at the index
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int offset = index - SUB_BUCKETS;
+        int magnitude = offset / HALF_SUB_BUCKETS + SUB_BUCKET_BITS;
+        long subBucket = offset % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
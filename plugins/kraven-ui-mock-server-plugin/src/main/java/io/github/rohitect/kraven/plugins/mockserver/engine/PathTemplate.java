@@ -0,0 +1,241 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mock endpoint path compiled into segments.
+ * Each segment is either a literal or a variable with an optional literal prefix and suffix,
+ * for example {@code order-${id}.json}. Paths are compared segment by segment after dropping
+ * one leading and one trailing slash.
+ */
+public final class PathTemplate {
+
+    private final String template;
+    private final Segment[] segments;
+    private final String[] variableNames;
+
+    private PathTemplate(String template, Segment[] segments, String[] variableNames) {
+        this.template = template;
+        this.segments = segments;
+        this.variableNames = variableNames;
+    }
+
+    /**
+     * Compile a path template.
+     *
+     * @param template the path with potential ${} variables
+     * @return the compiled template
+     */
+    public static PathTemplate compile(String template) {
+        String normalized = normalize(template);
+        List<Segment> segments = new ArrayList<>();
+        List<String> variableNames = new ArrayList<>();
+
+        int start = 0;
+        while (true) {
+            int slash = normalized.indexOf('/', start);
+            int end = slash == -1 ? normalized.length() : slash;
+            Segment segment = Segment.parse(normalized.substring(start, end));
+            segments.add(segment);
+            if (segment.isVariable()) {
+                variableNames.add(segment.getName());
+            }
+            if (slash == -1) {
+                break;
+            }
+            start = slash + 1;
+        }
+
+        return new PathTemplate(template,
+                segments.toArray(new Segment[0]),
+                variableNames.toArray(new String[0]));
+    }
+
+    /**
+     * Match a request path against this template.
+     *
+     * @param path the actual path to match against
+     * @return a map of variable names to values, or null if the path does not match
+     */
+    public Map<String, String> match(String path) {
+        String normalized = normalize(path);
+        int[] captures = capture(normalized);
+        if (captures == null) {
+            return null;
+        }
+        if (variableNames.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> variables = new LinkedHashMap<>(variableNames.length * 2);
+        for (int i = 0; i < variableNames.length; i++) {
+            variables.put(variableNames[i], normalized.substring(captures[i * 2], captures[i * 2 + 1]));
+        }
+        return variables;
+    }
+
+    /**
+     * Match a normalized path and record the start and end offset of every variable value.
+     *
+     * @param normalized the request path, normalized with {@link #normalize(String)}
+     * @return the variable offsets, or null if the path does not match
+     */
+    int[] capture(String normalized) {
+        int[] captures = new int[variableNames.length * 2];
+        int captureIndex = 0;
+
+        int start = 0;
+        for (int i = 0; i < segments.length; i++) {
+            int slash = normalized.indexOf('/', start);
+            int end = slash == -1 ? normalized.length() : slash;
+            if (slash == -1 && i < segments.length - 1) {
+                return null;
+            }
+
+            Segment segment = segments[i];
+            if (!segment.matches(normalized, start, end)) {
+                return null;
+            }
+            if (segment.isVariable()) {
+                captures[captureIndex * 2] = start + segment.prefixLength();
+                captures[captureIndex * 2 + 1] = end - segment.suffixLength();
+                captureIndex++;
+            }
+            start = end + 1;
+        }
+
+        // Extra segments left over in the request path
+        if (start <= normalized.length()) {
+            return null;
+        }
+        return captures;
+    }
+
+    /**
+     * @return the original template string
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the compiled segments of this template
+     */
+    Segment[] getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the variable names in the order they appear in the path
+     */
+    public String[] getVariableNames() {
+        return variableNames;
+    }
+
+    /**
+     * @return true if this template contains at least one variable
+     */
+    public boolean hasVariables() {
+        return variableNames.length > 0;
+    }
+
+    /**
+     * Remove one leading slash and one trailing slash from a path.
+     */
+    static String normalize(String path) {
+        if (path == null) {
+            return "";
+        }
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.length();
+        if (end - start > 0 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return start == 0 && end == path.length() ? path : path.substring(start, end);
+    }
+
+    /**
+     * A single compiled path segment.
+     */
+    static final class Segment {
+
+        private final String literal;
+        private final String prefix;
+        private final String name;
+        private final String suffix;
+
+        private Segment(String literal, String prefix, String name, String suffix) {
+            this.literal = literal;
+            this.prefix = prefix;
+            this.name = name;
+            this.suffix = suffix;
+        }
+
+        static Segment parse(String text) {
+            int open = text.indexOf("${");
+            int close = open == -1 ? -1 : text.indexOf('}', open);
+            if (open == -1 || close == -1) {
+                return new Segment(text, null, null, null);
+            }
+            return new Segment(null, text.substring(0, open), text.substring(open + 2, close), text.substring(close + 1));
+        }
+
+        boolean isVariable() {
+            return name != null;
+        }
+
+        String getLiteral() {
+            return literal;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Check whether the region {@code [start, end)} of a path matches this segment.
+         */
+        boolean matches(String path, int start, int end) {
+            int length = end - start;
+            if (literal != null) {
+                return literal.length() == length && path.regionMatches(start, literal, 0, length);
+            }
+            return length >= prefix.length() + suffix.length()
+                    && path.regionMatches(start, prefix, 0, prefix.length())
+                    && path.regionMatches(end - suffix.length(), suffix, 0, suffix.length());
+        }
+
+        int prefixLength() {
+            return prefix.length();
+        }
+
+        int suffixLength() {
+            return suffix.length();
+        }
+
+        /**
+         * Extract the variable value from a region that {@link #matches} this segment.
+         */
+        String extract(String path, int start, int end) {
+            return path.substring(start + prefix.length(), end - suffix.length());
+        }
+
+        /**
+         * The key used to share trie nodes between templates with identical segments.
+         */
+        String key() {
+            return literal != null ? literal : prefix + "${" + name + "}" + suffix;
+        }
+
+        /**
+         * Number of literal characters in this segment, used to try more specific patterns first.
+         */
+        int specificity() {
+            return literal != null ? literal.length() : prefix.length() + suffix.length();
+        }
+    }
+}
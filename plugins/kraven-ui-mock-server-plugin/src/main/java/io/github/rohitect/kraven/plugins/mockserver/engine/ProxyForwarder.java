@@ -0,0 +1,213 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Forwards requests that no endpoint matches to an upstream server and relays its responses.
+ * <p>
+ * The upstream call is made with the asynchronous JDK HTTP client. While it is in flight, the
+ * exchange is dispatched without a worker thread, and the response is written on the exchange's
+ * IO thread once it arrives. With a {@link RecordingStore}, the request and response are recorded
+ * by the client's thread after the response has been handed to the IO thread, so capturing
+ * never delays the client.
+ */
+@Slf4j
+public final class ProxyForwarder {
+
+    /**
+     * Headers that only apply to a single connection and are not forwarded in either direction.
+     */
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "proxy-connection",
+            "te", "trailer", "transfer-encoding", "upgrade", "http2-settings");
+
+    /**
+     * Request headers the HTTP client sets itself.
+     */
+    private static final Set<String> CLIENT_HEADERS = Set.of("content-length", "expect", "host");
+
+    private final HttpClient client;
+    private final String upstream;
+    private final Duration timeout;
+    private final RecordingStore recordings;
+
+    private ProxyForwarder(HttpClient client, String upstream, Duration timeout, RecordingStore recordings) {
+        this.client = client;
+        this.upstream = upstream;
+        this.timeout = timeout;
+        this.recordings = recordings;
+    }
+
+    /**
+     * Create the forwarder of a server configuration.
+     *
+     * @param config the server configuration
+     * @param recordings the store to record proxied requests in, or null to proxy without recording
+     * @return the forwarder, or null if no valid upstream is configured
+     */
+    public static ProxyForwarder of(MockServerConfig config, RecordingStore recordings) {
+        if (!StringUtils.hasText(config.getProxyUrl())) {
+            return null;
+        }
+
+        String upstream = config.getProxyUrl().trim();
+        while (upstream.endsWith("/")) {
+            upstream = upstream.substring(0, upstream.length() - 1);
+        }
+        try {
+            URI uri = new URI(upstream);
+            if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+                log.warn("Ignoring proxy URL without an HTTP scheme: {}", config.getProxyUrl());
+                return null;
+            }
+        } catch (URISyntaxException e) {
+            log.warn("Ignoring invalid proxy URL {}: {}", config.getProxyUrl(), e.getMessage());
+            return null;
+        }
+
+        Duration timeout = Duration.ofMillis(config.getProxyTimeoutMs() > 0 ? config.getProxyTimeoutMs() : 30_000);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(timeout)
+                .build();
+        return new ProxyForwarder(client, upstream, timeout, recordings);
+    }
+
+    /**
+     * @return the URL requests are forwarded to
+     */
+    public String getUpstream() {
+        return upstream;
+    }
+
+    /**
+     * Forward a request to the upstream server and relay the response.
+     * Failed calls are answered with 502, and calls that time out with 504.
+     *
+     * @param exchange the HTTP server exchange
+     * @param body the request body
+     */
+    public void forward(HttpServerExchange exchange, byte[] body) {
+        HttpRequest request;
+        try {
+            request = buildRequest(exchange, body);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot forward {} {}: {}", exchange.getRequestMethod(), exchange.getRelativePath(), e.getMessage());
+            sendError(exchange, 400, "Request cannot be forwarded");
+            return;
+        }
+
+        String method = exchange.getRequestMethod().toString();
+        String path = exchange.getRelativePath();
+        Map<String, String> queryParameters = recordings != null ? firstValues(exchange.getQueryParameters()) : null;
+
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> client
+                .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, failure) -> {
+                    if (failure != null) {
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause()
+                                : failure;
+                        log.warn("Failed to forward {} {} to {}: {}", method, path, upstream, cause.toString());
+                        boolean timedOut = cause instanceof HttpTimeoutException;
+                        exchange.getIoThread().execute(() -> sendError(exchange, timedOut ? 504 : 502,
+                                timedOut ? "Upstream request timed out" : "Upstream request failed"));
+                        return;
+                    }
+
+                    exchange.getIoThread().execute(() -> relay(exchange, response));
+                    if (recordings != null) {
+                        recordings.record(method, path, queryParameters, body, response.statusCode(),
+                                firstValues(response.headers().map()), response.body());
+                    }
+                }));
+    }
+
+    private HttpRequest buildRequest(HttpServerExchange exchange, byte[] body) {
+        String target;
+        try {
+            target = upstream + new URI(null, null, exchange.getRelativePath(), null).getRawPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        if (StringUtils.hasLength(exchange.getQueryString())) {
+            target += "?" + exchange.getQueryString();
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target))
+                .timeout(timeout)
+                .method(exchange.getRequestMethod().toString(), body.length > 0
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.noBody());
+        for (HeaderValues header : exchange.getRequestHeaders()) {
+            String name = header.getHeaderName().toString();
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            // Recorded responses must be replayable as text, so they are requested uncompressed
+            if (HOP_BY_HOP_HEADERS.contains(lowerCaseName) || CLIENT_HEADERS.contains(lowerCaseName)
+                    || (recordings != null && "accept-encoding".equals(lowerCaseName))) {
+                continue;
+            }
+            for (String value : header) {
+                try {
+                    builder.header(name, value);
+                } catch (IllegalArgumentException e) {
+                    log.debug("Not forwarding header {}: {}", name, e.getMessage());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void relay(HttpServerExchange exchange, HttpResponse<byte[]> response) {
+        exchange.setStatusCode(response.statusCode());
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            String lowerCaseName = header.getKey().toLowerCase(Locale.ROOT);
+            if (lowerCaseName.startsWith(":") || "content-length".equals(lowerCaseName)
+                    || HOP_BY_HOP_HEADERS.contains(lowerCaseName)) {
+                continue;
+            }
+            exchange.getResponseHeaders().addAll(new HttpString(header.getKey()), header.getValue());
+        }
+        exchange.getResponseSender().send(ByteBuffer.wrap(response.body()));
+    }
+
+    private static void sendError(HttpServerExchange exchange, int status, String message) {
+        exchange.setStatusCode(status);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send("{\"error\":\"" + message + "\"}");
+    }
+
+    private static <C extends Iterable<String>> Map<String, String> firstValues(Map<String, C> values) {
+        Map<String, String> first = new TreeMap<>();
+        for (Map.Entry<String, C> entry : values.entrySet()) {
+            for (String value : entry.getValue()) {
+                first.put(entry.getKey(), value);
+                break;
+            }
+        }
+        return first;
+    }
+}
@@ -0,0 +1,367 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockMatcher;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request/response pairs captured while proxying unmatched requests to an upstream server,
+ * ready to be exported as mock endpoints.
+ * <p>
+ * Recordings are deduplicated by method, path, query parameters and request body: the first
+ * response seen for a request is kept and repeats of the request only count as hits. The store
+ * is bounded; once it is full, new requests are counted as dropped instead of evicting what was
+ * already captured. Recording only keeps the raw bytes, bodies are decoded when the store is exported.
+ */
+@Slf4j
+public final class RecordingStore {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Response headers that describe the recorded transfer rather than the response, and are set
+     * again by the mock server when the response is replayed.
+     */
+    private static final Set<String> EXCLUDED_HEADERS = Set.of(
+            "connection", "content-length", "date", "keep-alive", "trailer", "transfer-encoding", "upgrade");
+
+    private final int capacity;
+    private final Map<Key, Recording> recordings = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Create a recording store.
+     *
+     * @param capacity the maximum number of distinct requests to keep, 0 to disable recording
+     */
+    public RecordingStore(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+    }
+
+    /**
+     * Record a proxied request and the response of the upstream server.
+     *
+     * @param method the request method
+     * @param path the request path, relative to the base path of the mock server
+     * @param queryParameters the first value of each query parameter
+     * @param requestBody the request body
+     * @param status the response status code
+     * @param headers the first value of each response header
+     * @param responseBody the response body
+     */
+    public void record(String method, String path, Map<String, String> queryParameters, byte[] requestBody,
+                       int status, Map<String, String> headers, byte[] responseBody) {
+        Key key = new Key(method, path, queryParameters, requestBody);
+        Recording existing = recordings.get(key);
+        if (existing != null) {
+            existing.hits.increment();
+            return;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+
+        Recording recording = new Recording(sequence.incrementAndGet(), System.currentTimeMillis(), key,
+                status, headers, responseBody);
+        existing = recordings.putIfAbsent(key, recording);
+        if (existing != null) {
+            // The same request was recorded concurrently
+            size.decrementAndGet();
+            existing.hits.increment();
+        }
+    }
+
+    /**
+     * @return the recordings, oldest first
+     */
+    public List<Recording> list() {
+        List<Recording> list = new ArrayList<>(recordings.values());
+        list.sort(Comparator.comparingLong(Recording::getSequence));
+        return list;
+    }
+
+    /**
+     * Remove all recordings and reset the dropped counter.
+     */
+    public void clear() {
+        for (Key key : recordings.keySet()) {
+            if (recordings.remove(key) != null) {
+                size.decrementAndGet();
+            }
+        }
+        dropped.reset();
+    }
+
+    /**
+     * @return the number of recordings
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the maximum number of recordings
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of requests not recorded because the store was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Export the recordings as a mock configuration.
+     * A path recorded with a single request becomes one endpoint that answers every request to it.
+     * A path recorded with several requests becomes one endpoint per request, distinguished by
+     * query parameter and body matchers and ordered from the most to the least specific.
+     *
+     * @return the configuration
+     */
+    public MockConfiguration toConfiguration() {
+        Map<String, List<Recording>> routes = new LinkedHashMap<>();
+        for (Recording recording : list()) {
+            routes.computeIfAbsent(recording.getMethod() + " " + recording.getPath(), route -> new ArrayList<>())
+                    .add(recording);
+        }
+
+        List<MockEndpoint> endpoints = new ArrayList<>();
+        for (List<Recording> route : routes.values()) {
+            boolean distinguish = route.size() > 1;
+            if (distinguish) {
+                route.sort(Comparator.comparingInt(Recording::matcherCount).reversed());
+            }
+            for (Recording recording : route) {
+                endpoints.add(toEndpoint(recording, distinguish));
+            }
+        }
+
+        MockConfiguration configuration = new MockConfiguration();
+        configuration.setEndpoints(endpoints);
+        return configuration;
+    }
+
+    private static MockEndpoint toEndpoint(Recording recording, boolean distinguish) {
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setMethod(recording.getMethod());
+        endpoint.setPath(recording.getPath());
+
+        if (distinguish) {
+            List<MockMatcher> matchers = new ArrayList<>();
+            recording.key.queryParameters.forEach((name, value) -> matchers.add(matcher("query-param", name, value)));
+            String requestBody = recording.key.requestBody.length > 0 ? decode(recording.key.requestBody) : null;
+            if (requestBody != null) {
+                matchers.add(matcher("body", "", requestBody));
+            }
+            endpoint.setMatchers(matchers);
+        }
+
+        MockResponse response = new MockResponse();
+        response.setId("recorded-" + recording.getSequence());
+        response.setDefault(true);
+        response.setStatus(recording.getStatus());
+        Map<String, String> headers = new HashMap<>();
+        recording.headers.forEach((name, value) -> {
+            if (!EXCLUDED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                headers.put(name, value);
+            }
+        });
+        response.setHeaders(headers);
+        response.setBody(decodeResponseBody(recording, headers));
+        response.setDescription("Recorded from upstream");
+        endpoint.setResponses(new ArrayList<>(List.of(response)));
+        return endpoint;
+    }
+
+    private static MockMatcher matcher(String type, String name, String value) {
+        MockMatcher matcher = new MockMatcher();
+        matcher.setType(type);
+        matcher.setName(name);
+        matcher.setValue(value);
+        return matcher;
+    }
+
+    /**
+     * Decode a recorded response body: JSON bodies become JSON documents, so the exported
+     * configuration stays readable, and other text bodies become strings.
+     */
+    private static Object decodeResponseBody(Recording recording, Map<String, String> headers) {
+        byte[] body = recording.responseBody;
+        if (body.length == 0) {
+            return "";
+        }
+
+        String contentType = null;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if ("content-type".equalsIgnoreCase(header.getKey())) {
+                contentType = header.getValue().toLowerCase(Locale.ROOT);
+            }
+        }
+        if (contentType != null && contentType.contains("json")) {
+            try {
+                return OBJECT_MAPPER.readTree(body);
+            } catch (IOException e) {
+                log.debug("Recorded body of {} {} is not valid JSON: {}",
+                        recording.getMethod(), recording.getPath(), e.getMessage());
+            }
+        }
+
+        String text = decode(body);
+        if (text == null) {
+            log.warn("Recorded body of {} {} is not text and was not exported", recording.getMethod(), recording.getPath());
+            return "";
+        }
+        return text;
+    }
+
+    /**
+     * @return the bytes decoded as UTF-8, or null if they are not valid UTF-8
+     */
+    private static String decode(byte[] bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * What identifies a recorded request.
+     */
+    private static final class Key {
+
+        private final String method;
+        private final String path;
+        private final Map<String, String> queryParameters;
+        private final byte[] requestBody;
+        private final int hash;
+
+        Key(String method, String path, Map<String, String> queryParameters, byte[] requestBody) {
+            this.method = method;
+            this.path = path;
+            this.queryParameters = queryParameters != null ? queryParameters : Collections.emptyMap();
+            this.requestBody = requestBody != null ? requestBody : new byte[0];
+            this.hash = Objects.hash(method, path, this.queryParameters) * 31 + Arrays.hashCode(this.requestBody);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && method.equals(other.method) && path.equals(other.path)
+                    && queryParameters.equals(other.queryParameters) && Arrays.equals(requestBody, other.requestBody);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A recorded request and the response it got.
+     */
+    public static final class Recording {
+
+        private final long sequence;
+        private final long timestamp;
+        private final Key key;
+        private final int status;
+        private final Map<String, String> headers;
+        private final byte[] responseBody;
+        private final LongAdder hits = new LongAdder();
+
+        Recording(long sequence, long timestamp, Key key, int status, Map<String, String> headers, byte[] responseBody) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.key = key;
+            this.status = status;
+            this.headers = headers != null ? headers : Collections.emptyMap();
+            this.responseBody = responseBody != null ? responseBody : new byte[0];
+            hits.increment();
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getMethod() {
+            return key.method;
+        }
+
+        public String getPath() {
+            return key.path;
+        }
+
+        public Map<String, String> getQueryParameters() {
+            return key.queryParameters;
+        }
+
+        public int getRequestBodySize() {
+            return key.requestBody.length;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public int getResponseBodySize() {
+            return responseBody.length;
+        }
+
+        /**
+         * @return the number of times the request was seen
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        private int matcherCount() {
+            return key.queryParameters.size() + (key.requestBody.length > 0 ? 1 : 0);
+        }
+    }
+}
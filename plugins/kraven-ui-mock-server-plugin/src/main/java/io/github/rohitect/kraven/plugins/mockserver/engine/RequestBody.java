@@ -0,0 +1,139 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import io.undertow.util.AttachmentKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The body of a request, read once and shared by every body matcher that inspects it.
+ * The text and the parsed JSON document are each produced at most once per request, the first
+ * time a matcher asks for them, so an endpoint with several JSONPath matchers parses the body once.
+ */
+@Slf4j
+public final class RequestBody {
+
+    /**
+     * Attachment key under which the body is stored on the exchange once it has been read.
+     */
+    public static final AttachmentKey<RequestBody> ATTACHMENT_KEY = AttachmentKey.create(RequestBody.class);
+
+    /**
+     * JSONPath configuration used to compile and evaluate body matchers.
+     * Missing paths evaluate to null (or an empty list for indefinite paths) instead of throwing.
+     */
+    static final Configuration JSON_PATH_CONFIGURATION = Configuration.builder()
+            .jsonProvider(new JacksonJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .options(Option.SUPPRESS_EXCEPTIONS)
+            .build();
+
+    private static final Object INVALID = new Object();
+
+    private final byte[] bytes;
+    private String text;
+    private Object document;
+
+    /**
+     * Create a request body.
+     *
+     * @param bytes the raw body bytes
+     */
+    public RequestBody(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the body decoded as UTF-8
+     */
+    public String getText() {
+        if (text == null) {
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+
+    /**
+     * Evaluate a compiled JSONPath expression against the body.
+     * A result with several values, such as that of a wildcard path, is returned as a list.
+     *
+     * @param path the compiled expression
+     * @return the result, or null if the body is not JSON or the path is absent
+     */
+    public Object read(JsonPath path) {
+        Object json = getDocument();
+        if (json == null) {
+            return null;
+        }
+        try {
+            return path.read(json, JSON_PATH_CONFIGURATION);
+        } catch (RuntimeException e) {
+            log.debug("Failed to evaluate JSON path '{}': {}", path.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Serialize a JSON value read from the body back to its JSON text.
+     *
+     * @param value an object or array returned by {@link #read(JsonPath)}
+     * @return the JSON text
+     */
+    static String toJson(Object value) {
+        return value instanceof Map || value instanceof List
+                ? JSON_PATH_CONFIGURATION.jsonProvider().toJson(value)
+                : String.valueOf(value);
+    }
+
+    /**
+     * Decode the start of the body.
+     *
+     * @param maxBytes the maximum number of bytes to decode
+     * @return the start of the body as UTF-8
+     */
+    public String preview(int maxBytes) {
+        if (bytes.length <= maxBytes) {
+            return getText();
+        }
+        return new String(bytes, 0, Math.max(maxBytes, 0), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the raw body bytes, not to be modified
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the size of the body in bytes
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    private Object getDocument() {
+        if (document == null) {
+            if (bytes.length == 0) {
+                document = INVALID;
+            } else {
+                try {
+                    document = JSON_PATH_CONFIGURATION.jsonProvider()
+                            .parse(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8.name());
+                } catch (RuntimeException e) {
+                    log.debug("Request body is not valid JSON: {}", e.getMessage());
+                    document = INVALID;
+                }
+            }
+        }
+        return document == INVALID ? null : document;
+    }
+}
@@ -0,0 +1,163 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free ring buffer of the requests served by the mock server.
+ * Writers claim a sequence number with a single atomic increment and publish their entry into
+ * the slot for that sequence, so recording from many IO threads at once never blocks. Once the
+ * buffer is full, new entries overwrite the oldest ones.
+ * <p>
+ * Readers walk the slots by sequence number and skip any slot that has been overwritten by a
+ * newer entry. Sequence numbers start at 1 and are never reused, so clients can page and tail
+ * the journal by sequence.
+ */
+public final class RequestJournal {
+
+    private final int capacity;
+    private final AtomicReferenceArray<JournalEntry> slots;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private volatile long clearedBefore = 1;
+    private volatile Runnable appendListener;
+
+    /**
+     * Create a journal.
+     *
+     * @param capacity the maximum number of entries to keep, 0 or less to disable the journal
+     */
+    public RequestJournal(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    /**
+     * @return true if the journal keeps any entries
+     */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * @return the maximum number of entries kept
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Record an entry, assigning it the next sequence number.
+     *
+     * @param entry the entry to record
+     */
+    public void record(JournalEntry entry) {
+        if (capacity == 0) {
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        entry.sequence = sequence;
+        slots.set(index(sequence), entry);
+
+        Runnable listener = appendListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Get a page of entries, newest first.
+     *
+     * @param before only return entries with a lower sequence number, 0 or less for the newest entries
+     * @param limit the maximum number of entries to return
+     * @return the entries
+     */
+    public List<JournalEntry> page(long before, int limit) {
+        long latest = getLatestSequence();
+        long from = before > 0 ? Math.min(before - 1, latest) : latest;
+        long oldest = getOldestSequence();
+        if (limit <= 0 || from < oldest) {
+            return Collections.emptyList();
+        }
+
+        List<JournalEntry> entries = new ArrayList<>((int) Math.min(limit, from - oldest + 1));
+        for (long sequence = from; sequence >= oldest && entries.size() < limit; sequence--) {
+            JournalEntry entry = slots.get(index(sequence));
+            if (entry != null && entry.sequence == sequence) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the entries recorded after a sequence number, oldest first.
+     * Stops at the first sequence number whose entry is still being written, so a caller that
+     * continues from the last returned entry does not miss it.
+     *
+     * @param after only return entries with a higher sequence number
+     * @param limit the maximum number of entries to return
+     * @return the entries
+     */
+    public List<JournalEntry> since(long after, int limit) {
+        long latest = getLatestSequence();
+        long from = Math.max(after + 1, getOldestSequence());
+        if (limit <= 0 || from > latest) {
+            return Collections.emptyList();
+        }
+
+        List<JournalEntry> entries = new ArrayList<>((int) Math.min(limit, latest - from + 1));
+        for (long sequence = from; sequence <= latest && entries.size() < limit; sequence++) {
+            JournalEntry entry = slots.get(index(sequence));
+            if (entry == null || entry.sequence < sequence) {
+                // Claimed but not published yet
+                break;
+            }
+            if (entry.sequence == sequence) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return the sequence number of the most recently claimed entry, 0 if none has been recorded
+     */
+    public long getLatestSequence() {
+        return nextSequence.get() - 1;
+    }
+
+    /**
+     * @return the number of entries currently kept
+     */
+    public int size() {
+        return (int) Math.max(0, getLatestSequence() - getOldestSequence() + 1);
+    }
+
+    /**
+     * Discard all entries recorded so far. Sequence numbers keep increasing.
+     */
+    public void clear() {
+        clearedBefore = nextSequence.get();
+    }
+
+    /**
+     * Set a listener called on the recording thread after each entry is published.
+     * The listener must not block.
+     *
+     * @param appendListener the listener, or null to remove it
+     */
+    public void setAppendListener(Runnable appendListener) {
+        this.appendListener = appendListener;
+    }
+
+    private long getOldestSequence() {
+        return Math.max(clearedBefore, nextSequence.get() - capacity);
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks one of an endpoint's responses at random, in proportion to the response weights.
+ * The n-th selection is derived from the seed and n alone with the SplitMix64 mixing function,
+ * so concurrent requests only share an atomic counter and the sequence of selections is the same
+ * on every run with the same seed.
+ */
+public final class ResponseSelector {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final CompiledResponse[] responses;
+    private final double[] cumulativeWeights;
+    private final long seed;
+    private final AtomicLong counter = new AtomicLong();
+
+    private ResponseSelector(CompiledResponse[] responses, double[] cumulativeWeights, long seed) {
+        this.responses = responses;
+        this.cumulativeWeights = cumulativeWeights;
+        this.seed = seed;
+    }
+
+    /**
+     * Build the selector of a weighted endpoint.
+     *
+     * @param endpoint the endpoint configuration
+     * @param compiled the compiled form of each of the endpoint's responses
+     * @return the selector, or null if the endpoint is not weighted or none of its responses has a weight
+     */
+    public static ResponseSelector of(MockEndpoint endpoint, Map<MockResponse, CompiledResponse> compiled) {
+        if (!"weighted".equals(endpoint.getResponseType()) || endpoint.getResponses() == null) {
+            return null;
+        }
+
+        List<CompiledResponse> weighted = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (MockResponse response : endpoint.getResponses()) {
+            if (response.getWeight() > 0) {
+                weighted.add(compiled.get(response));
+                weights.add(response.getWeight());
+            }
+        }
+        if (weighted.isEmpty()) {
+            return null;
+        }
+
+        double[] cumulativeWeights = new double[weights.size()];
+        double total = 0;
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            total += weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+        long seed = endpoint.getSeed() != null ? endpoint.getSeed() : ThreadLocalRandom.current().nextLong();
+        return new ResponseSelector(weighted.toArray(new CompiledResponse[0]), cumulativeWeights, seed);
+    }
+
+    /**
+     * Select the response for the next request.
+     *
+     * @return the selected response
+     */
+    public CompiledResponse select() {
+        double target = nextDouble(counter.getAndIncrement()) * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+            if (target < cumulativeWeights[i]) {
+                return responses[i];
+            }
+        }
+        return responses[responses.length - 1];
+    }
+
+    /**
+     * @return a uniformly distributed value in [0, 1) for the n-th selection
+     */
+    double nextDouble(long n) {
+        long z = seed + (n + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * DOUBLE_UNIT;
+    }
+}
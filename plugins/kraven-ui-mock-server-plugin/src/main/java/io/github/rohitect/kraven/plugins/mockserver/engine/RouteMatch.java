@@ -0,0 +1,128 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.undertow.util.AttachmentKey;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of resolving a request against the {@link RoutingTrie}.
+ * A match holds every endpoint registered for the request method and path; the caller picks
+ * the first candidate whose matchers accept the request and records it with {@link #select}.
+ * Path variables are stored as offsets into the request path and only turned into strings
+ * when they are asked for.
+ */
+public final class RouteMatch {
+
+    /**
+     * Key under which the match is attached to the exchange so later stages can reuse it.
+     */
+    public static final AttachmentKey<RouteMatch> ATTACHMENT_KEY = AttachmentKey.create(RouteMatch.class);
+
+    private final List<CompiledEndpoint> candidates;
+    private final String path;
+    private final String[] variableNames;
+    private final int[] captures;
+    private CompiledEndpoint endpoint;
+    private Map<String, String> pathVariables;
+
+    RouteMatch(List<CompiledEndpoint> candidates, String path, String[] variableNames, int[] captures) {
+        this.candidates = candidates;
+        this.endpoint = candidates.isEmpty() ? null : candidates.get(0);
+        this.path = path;
+        this.variableNames = variableNames;
+        this.captures = captures;
+    }
+
+    /**
+     * Match a single endpoint against a path outside of the routing trie.
+     *
+     * @param endpoint the compiled endpoint
+     * @param path the request path, relative to the mock server base path
+     * @return the match, or null if the path does not match the endpoint path
+     */
+    public static RouteMatch of(CompiledEndpoint endpoint, String path) {
+        String normalized = PathTemplate.normalize(path);
+        PathTemplate template = endpoint.getTemplate();
+        int[] captures = template.capture(normalized);
+        if (captures == null) {
+            return null;
+        }
+        return new RouteMatch(List.of(endpoint), normalized, template.getVariableNames(), captures);
+    }
+
+    /**
+     * Match a path template on its own, to bind path variables for matchers checked without an endpoint.
+     *
+     * @param template the compiled path template
+     * @param path the request path, relative to the mock server base path
+     * @return the match, without candidates, or null if the path does not match the template
+     */
+    public static RouteMatch of(PathTemplate template, String path) {
+        String normalized = PathTemplate.normalize(path);
+        int[] captures = template.capture(normalized);
+        if (captures == null) {
+            return null;
+        }
+        return new RouteMatch(List.of(), normalized, template.getVariableNames(), captures);
+    }
+
+    /**
+     * @return the endpoints registered for the request method and path, in configuration order
+     */
+    public List<CompiledEndpoint> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Record the candidate chosen to serve the request.
+     *
+     * @param endpoint one of the {@link #getCandidates() candidates}
+     */
+    public void select(CompiledEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * @return the selected endpoint, the first candidate until another one is selected, or null
+     *         if the match has no candidates
+     */
+    public CompiledEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Get a single path variable without materialising the full variable map.
+     *
+     * @param name the variable name
+     * @return the variable value, or null if the endpoint path has no such variable
+     */
+    public String getPathVariable(String name) {
+        for (int i = 0; i < variableNames.length; i++) {
+            if (variableNames[i].equals(name)) {
+                return path.substring(captures[i * 2], captures[i * 2 + 1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all path variables bound by the match
+     */
+    public Map<String, String> getPathVariables() {
+        if (pathVariables == null) {
+            if (variableNames.length == 0) {
+                pathVariables = Collections.emptyMap();
+            } else {
+                Map<String, String> variables = new LinkedHashMap<>(variableNames.length * 2);
+                for (int i = 0; i < variableNames.length; i++) {
+                    variables.put(variableNames[i], path.substring(captures[i * 2], captures[i * 2 + 1]));
+                }
+                pathVariables = variables;
+            }
+        }
+        return pathVariables;
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, fully compiled snapshot of the endpoints served by the mock server.
+ * The server publishes a snapshot through an atomic reference and every request reads it
+ * exactly once, so reloads and runtime changes swap the whole table at once without locking
+ * the request path or restarting the listener. Changes never mutate a snapshot; they derive a
+ * new one with a higher version.
+ */
+public final class RoutingTable {
+
+    private static final RoutingTable EMPTY = new RoutingTable(0, Collections.emptyList());
+
+    private final long version;
+    private final List<CompiledEndpoint> endpoints;
+    private final RoutingTrie trie;
+
+    private RoutingTable(long version, List<CompiledEndpoint> endpoints) {
+        this.version = version;
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.trie = RoutingTrie.build(this.endpoints);
+    }
+
+    /**
+     * @return a table without any endpoints
+     */
+    public static RoutingTable empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compile a new table that replaces this one.
+     * Endpoints equal to one already in this table keep their compiled form, so a reload only
+     * compiles what actually changed.
+     *
+     * @param endpoints the endpoints of the new table, in configuration order
+     * @return the new table
+     */
+    public RoutingTable replace(List<MockEndpoint> endpoints) {
+        Map<MockEndpoint, CompiledEndpoint> existing = new HashMap<>(this.endpoints.size() * 2);
+        for (CompiledEndpoint endpoint : this.endpoints) {
+            existing.putIfAbsent(endpoint.getEndpoint(), endpoint);
+        }
+
+        List<CompiledEndpoint> compiled = new ArrayList<>(endpoints.size());
+        for (MockEndpoint endpoint : endpoints) {
+            CompiledEndpoint previous = existing.get(endpoint);
+            compiled.add(previous != null ? previous : CompiledEndpoint.of(endpoint));
+        }
+        return new RoutingTable(version + 1, compiled);
+    }
+
+    /**
+     * Derive a table with one more endpoint.
+     * The endpoint is added after the existing ones, so for requests it shares a method and
+     * path with it only serves what the existing endpoints' matchers reject.
+     *
+     * @param endpoint the endpoint to add
+     * @return the new table
+     */
+    public RoutingTable withEndpoint(MockEndpoint endpoint) {
+        List<CompiledEndpoint> compiled = new ArrayList<>(endpoints.size() + 1);
+        compiled.addAll(endpoints);
+        compiled.add(CompiledEndpoint.of(endpoint));
+        return new RoutingTable(version + 1, compiled);
+    }
+
+    /**
+     * Derive a table without the endpoints registered for a method and path.
+     *
+     * @param method the HTTP method
+     * @param path the endpoint path, as configured
+     * @return the new table, or this table if no endpoint was removed
+     */
+    public RoutingTable withoutEndpoint(String method, String path) {
+        List<CompiledEndpoint> compiled = new ArrayList<>(endpoints.size());
+        for (CompiledEndpoint endpoint : endpoints) {
+            if (!isEndpoint(endpoint.getEndpoint(), method, path)) {
+                compiled.add(endpoint);
+            }
+        }
+        return compiled.size() == endpoints.size() ? this : new RoutingTable(version + 1, compiled);
+    }
+
+    /**
+     * Resolve a request to its candidate endpoints.
+     *
+     * @param method the HTTP method
+     * @param path the request path, relative to the mock server base path
+     * @return the match, or null if no endpoint accepts this method and path
+     */
+    public RouteMatch lookup(String method, String path) {
+        return trie.lookup(method, path);
+    }
+
+    /**
+     * Check whether any endpoint is registered for a path, regardless of method.
+     *
+     * @param path the request path, relative to the mock server base path
+     * @return true if at least one endpoint matches the path
+     */
+    public boolean hasPath(String path) {
+        return trie.hasPath(path);
+    }
+
+    /**
+     * @return the version of this snapshot, incremented by every change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the compiled endpoints, in configuration order
+     */
+    public List<CompiledEndpoint> getCompiledEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return the endpoint configurations, in configuration order
+     */
+    public List<MockEndpoint> getEndpoints() {
+        List<MockEndpoint> result = new ArrayList<>(endpoints.size());
+        for (CompiledEndpoint endpoint : endpoints) {
+            result.add(endpoint.getEndpoint());
+        }
+        return result;
+    }
+
+    private static boolean isEndpoint(MockEndpoint endpoint, String method, String path) {
+        String endpointMethod = endpoint.getMethod() == null ? "GET" : endpoint.getMethod();
+        return endpointMethod.equalsIgnoreCase(method)
+                && PathTemplate.normalize(endpoint.getPath()).equals(PathTemplate.normalize(path));
+    }
+}
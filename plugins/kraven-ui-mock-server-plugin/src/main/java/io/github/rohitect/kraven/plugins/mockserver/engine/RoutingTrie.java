@@ -0,0 +1,171 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment trie used to resolve mock endpoints.
+ * The trie is built once from the configuration; a lookup walks the request path a single time,
+ * using a hash lookup for literal segments and trying variable segments (most specific first)
+ * only when needed, so the cost does not grow with the number of configured endpoints.
+ */
+public final class RoutingTrie {
+
+    private static final int[] NO_CAPTURES = new int[0];
+
+    private final Node root;
+    private final int maxVariables;
+
+    private RoutingTrie(Node root, int maxVariables) {
+        this.root = root;
+        this.maxVariables = maxVariables;
+    }
+
+    /**
+     * Build a trie for the given endpoints.
+     * Several endpoints may share the same method and path; they are kept as candidates in
+     * configuration order and told apart by their matchers when a request comes in.
+     *
+     * @param endpoints the compiled endpoints to register
+     * @return the compiled trie
+     */
+    public static RoutingTrie build(List<CompiledEndpoint> endpoints) {
+        Node root = new Node(null);
+        int maxVariables = 0;
+
+        for (CompiledEndpoint endpoint : endpoints) {
+            PathTemplate template = endpoint.getTemplate();
+            Node node = root;
+            for (PathTemplate.Segment segment : template.getSegments()) {
+                node = node.child(segment);
+            }
+            node.variableNames = template.getVariableNames();
+            node.endpoints.computeIfAbsent(methodKey(endpoint.getEndpoint().getMethod()), key -> new ArrayList<>())
+                    .add(endpoint);
+            maxVariables = Math.max(maxVariables, template.getVariableNames().length);
+        }
+
+        root.freeze();
+        return new RoutingTrie(root, maxVariables);
+    }
+
+    /**
+     * Resolve a request to an endpoint.
+     *
+     * @param method the HTTP method
+     * @param path the request path, relative to the mock server base path
+     * @return the match holding every candidate endpoint, or null if no endpoint accepts this method and path
+     */
+    public RouteMatch lookup(String method, String path) {
+        String normalized = PathTemplate.normalize(path);
+        String methodKey = methodKey(method);
+        int[] captures = maxVariables == 0 ? NO_CAPTURES : new int[maxVariables * 2];
+
+        Node node = find(root, normalized, 0, methodKey, captures, 0);
+        if (node == null) {
+            return null;
+        }
+        return new RouteMatch(node.endpoints.get(methodKey), normalized, node.variableNames, captures);
+    }
+
+    /**
+     * Check whether any endpoint is registered for a path, regardless of method.
+     * Used to tell "method not allowed" apart from "not found".
+     *
+     * @param path the request path, relative to the mock server base path
+     * @return true if at least one endpoint matches the path
+     */
+    public boolean hasPath(String path) {
+        String normalized = PathTemplate.normalize(path);
+        int[] captures = maxVariables == 0 ? NO_CAPTURES : new int[maxVariables * 2];
+        return find(root, normalized, 0, null, captures, 0) != null;
+    }
+
+    private static Node find(Node node, String path, int start, String methodKey, int[] captures, int captureIndex) {
+        int slash = path.indexOf('/', start);
+        int end = slash == -1 ? path.length() : slash;
+
+        if (!node.literalChildren.isEmpty()) {
+            Node child = node.literalChildren.get(path.substring(start, end));
+            if (child != null) {
+                Node found = slash == -1
+                        ? accept(child, methodKey)
+                        : find(child, path, end + 1, methodKey, captures, captureIndex);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+
+        for (Node child : node.patternChildren) {
+            PathTemplate.Segment segment = child.segment;
+            if (!segment.matches(path, start, end)) {
+                continue;
+            }
+            captures[captureIndex * 2] = start + segment.prefixLength();
+            captures[captureIndex * 2 + 1] = end - segment.suffixLength();
+            Node found = slash == -1
+                    ? accept(child, methodKey)
+                    : find(child, path, end + 1, methodKey, captures, captureIndex + 1);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    private static Node accept(Node node, String methodKey) {
+        if (node.endpoints.isEmpty()) {
+            return null;
+        }
+        return methodKey == null || node.endpoints.containsKey(methodKey) ? node : null;
+    }
+
+    private static String methodKey(String method) {
+        return method == null ? "GET" : method.toUpperCase();
+    }
+
+    /**
+     * A trie node. Mutable while the trie is being built and treated as read-only afterwards.
+     */
+    private static final class Node {
+
+        private final PathTemplate.Segment segment;
+        private Map<String, Node> literalChildren = new HashMap<>();
+        private Node[] patternChildren = new Node[0];
+        private final Map<String, Node> patternChildrenByKey = new LinkedHashMap<>();
+        private final Map<String, List<CompiledEndpoint>> endpoints = new HashMap<>();
+        private String[] variableNames = new String[0];
+
+        Node(PathTemplate.Segment segment) {
+            this.segment = segment;
+        }
+
+        Node child(PathTemplate.Segment segment) {
+            if (!segment.isVariable()) {
+                return literalChildren.computeIfAbsent(segment.getLiteral(), key -> new Node(segment));
+            }
+            return patternChildrenByKey.computeIfAbsent(segment.key(), key -> new Node(segment));
+        }
+
+        void freeze() {
+            List<Node> patterns = new ArrayList<>(patternChildrenByKey.values());
+            patterns.sort(Comparator.comparingInt((Node node) -> node.segment.specificity()).reversed());
+            patternChildren = patterns.toArray(new Node[0]);
+            if (literalChildren.isEmpty()) {
+                literalChildren = Map.of();
+            }
+            endpoints.replaceAll((method, candidates) -> Collections.unmodifiableList(new ArrayList<>(candidates)));
+            literalChildren.values().forEach(Node::freeze);
+            for (Node child : patternChildren) {
+                child.freeze();
+            }
+        }
+    }
+}
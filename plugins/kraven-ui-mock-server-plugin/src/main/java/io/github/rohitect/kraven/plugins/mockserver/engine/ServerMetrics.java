@@ -0,0 +1,250 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput counters and latency histograms of the mock server, per endpoint and per response.
+ * For every served request two latencies are recorded: the total latency seen by the client and
+ * the server time, which is the total minus the delay the endpoint was configured to add. A load
+ * test can compare the server time against its own latency budget to show that the mock was not
+ * the bottleneck.
+ * <p>
+ * Recording only touches striped counters and lock-free histograms. Readers get cumulative
+ * snapshots since the last reset, or interval snapshots covering the time since the previous
+ * interval snapshot.
+ */
+public final class ServerMetrics {
+
+    private volatile State state = new State();
+
+    /**
+     * Record a served request.
+     *
+     * @param endpoint the METHOD:path key of the matched endpoint, null if no endpoint matched
+     * @param responseId the id of the response sent, null if no configured response was sent
+     * @param status the response status code
+     * @param delayMs the delay the endpoint was configured to add
+     * @param latencyNanos the time from receiving the request to completing the response
+     */
+    public void record(String endpoint, String responseId, int status, long delayMs, long latencyNanos) {
+        State current = state;
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        long serverMicros = latencyMicros - TimeUnit.MILLISECONDS.toMicros(delayMs);
+
+        current.total.record(status, latencyMicros, serverMicros);
+        if (endpoint == null) {
+            current.unmatched.increment();
+            return;
+        }
+
+        EndpointStats endpointStats = current.endpoints.computeIfAbsent(endpoint, key -> new EndpointStats());
+        endpointStats.stats.record(status, latencyMicros, serverMicros);
+        if (responseId != null) {
+            endpointStats.responses.computeIfAbsent(responseId, key -> new Stats())
+                    .record(status, latencyMicros, serverMicros);
+        }
+    }
+
+    /**
+     * Get the metrics recorded since the last reset.
+     *
+     * @return the metrics, ready to be serialized
+     */
+    public Map<String, Object> snapshot() {
+        State current = state;
+        return current.toMap(current.startedAt, System.currentTimeMillis(), current.capture(), Captured.EMPTY);
+    }
+
+    /**
+     * Get the metrics recorded since the previous interval snapshot, or since the last reset for
+     * the first one.
+     *
+     * @return the metrics of the interval, ready to be serialized
+     */
+    public Map<String, Object> intervalSnapshot() {
+        State current = state;
+        synchronized (current) {
+            long now = System.currentTimeMillis();
+            Captured captured = current.capture();
+            Map<String, Object> interval = current.toMap(current.intervalStart, now, captured, current.lastInterval);
+            current.intervalStart = now;
+            current.lastInterval = captured;
+            return interval;
+        }
+    }
+
+    /**
+     * Discard all recorded metrics.
+     */
+    public void reset() {
+        state = new State();
+    }
+
+    /**
+     * Everything recorded since the last reset.
+     */
+    private static final class State {
+
+        private final long startedAt = System.currentTimeMillis();
+        private final Stats total = new Stats();
+        private final LongAdder unmatched = new LongAdder();
+        private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+        private long intervalStart = startedAt;
+        private Captured lastInterval = Captured.EMPTY;
+
+        Captured capture() {
+            Map<String, StatsSnapshot> captured = new LinkedHashMap<>();
+            endpoints.forEach((endpoint, endpointStats) -> {
+                captured.put(endpoint, endpointStats.stats.snapshot());
+                endpointStats.responses.forEach((responseId, stats) ->
+                        captured.put(endpoint + "#" + responseId, stats.snapshot()));
+            });
+            return new Captured(total.snapshot(), unmatched.sum(), captured);
+        }
+
+        Map<String, Object> toMap(long from, long to, Captured now, Captured earlier) {
+            long durationMs = Math.max(to - from, 1);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("from", from);
+            result.put("to", to);
+            result.put("durationMs", durationMs);
+            result.putAll(now.total.minus(earlier.total).toMap(durationMs));
+            result.put("unmatched", now.unmatched - earlier.unmatched);
+
+            Map<String, Object> endpointMaps = new TreeMap<>();
+            endpoints.forEach((endpoint, endpointStats) -> {
+                Map<String, Object> endpointMap = diff(now, earlier, endpoint).toMap(durationMs);
+                Map<String, Object> responseMaps = new TreeMap<>();
+                endpointStats.responses.keySet().forEach(responseId ->
+                        responseMaps.put(responseId, diff(now, earlier, endpoint + "#" + responseId).toMap(durationMs)));
+                endpointMap.put("responses", responseMaps);
+                endpointMaps.put(endpoint, endpointMap);
+            });
+            result.put("endpoints", endpointMaps);
+            return result;
+        }
+
+        private static StatsSnapshot diff(Captured now, Captured earlier, String key) {
+            StatsSnapshot current = now.stats.getOrDefault(key, StatsSnapshot.EMPTY);
+            return current.minus(earlier.stats.getOrDefault(key, StatsSnapshot.EMPTY));
+        }
+    }
+
+    /**
+     * Snapshots of all stats taken at one point in time.
+     */
+    private static final class Captured {
+
+        private static final Captured EMPTY = new Captured(StatsSnapshot.EMPTY, 0, Map.of());
+
+        private final StatsSnapshot total;
+        private final long unmatched;
+        private final Map<String, StatsSnapshot> stats;
+
+        Captured(StatsSnapshot total, long unmatched, Map<String, StatsSnapshot> stats) {
+            this.total = total;
+            this.unmatched = unmatched;
+            this.stats = stats;
+        }
+    }
+
+    /**
+     * Stats of an endpoint and of each of its responses.
+     */
+    private static final class EndpointStats {
+
+        private final Stats stats = new Stats();
+        private final Map<String, Stats> responses = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Request count, status classes and latencies of one endpoint or response.
+     */
+    private static final class Stats {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder[] statusClasses = new LongAdder[5];
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram serverTime = new LatencyHistogram();
+
+        Stats() {
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        void record(int status, long latencyMicros, long serverMicros) {
+            requests.increment();
+            int statusClass = status / 100 - 1;
+            if (statusClass >= 0 && statusClass < statusClasses.length) {
+                statusClasses[statusClass].increment();
+            }
+            latency.record(latencyMicros);
+            serverTime.record(serverMicros);
+        }
+
+        StatsSnapshot snapshot() {
+            long[] statuses = new long[statusClasses.length];
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = statusClasses[i].sum();
+            }
+            return new StatsSnapshot(requests.sum(), statuses, latency.snapshot(), serverTime.snapshot());
+        }
+    }
+
+    /**
+     * Immutable copy of a {@link Stats}.
+     */
+    private static final class StatsSnapshot {
+
+        private static final StatsSnapshot EMPTY =
+                new StatsSnapshot(0, new long[5], HistogramSnapshot.EMPTY, HistogramSnapshot.EMPTY);
+
+        private final long requests;
+        private final long[] statuses;
+        private final HistogramSnapshot latency;
+        private final HistogramSnapshot serverTime;
+
+        StatsSnapshot(long requests, long[] statuses, HistogramSnapshot latency, HistogramSnapshot serverTime) {
+            this.requests = requests;
+            this.statuses = statuses;
+            this.latency = latency;
+            this.serverTime = serverTime;
+        }
+
+        StatsSnapshot minus(StatsSnapshot earlier) {
+            if (earlier == EMPTY) {
+                return this;
+            }
+            long[] interval = new long[statuses.length];
+            for (int i = 0; i < interval.length; i++) {
+                interval[i] = statuses[i] - earlier.statuses[i];
+            }
+            return new StatsSnapshot(requests - earlier.requests, interval,
+                    latency.minus(earlier.latency), serverTime.minus(earlier.serverTime));
+        }
+
+        Map<String, Object> toMap(long durationMs) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", requests);
+            map.put("requestsPerSecond", Math.round(requests * 100000.0 / durationMs) / 100.0);
+
+            Map<String, Long> statusMap = new LinkedHashMap<>();
+            for (int i = 0; i < statuses.length; i++) {
+                if (statuses[i] > 0) {
+                    statusMap.put((i + 1) + "xx", statuses[i]);
+                }
+            }
+            map.put("statuses", statusMap);
+            map.put("latency", latency.toMap());
+            map.put("serverTime", serverTime.toMap());
+            return map;
+        }
+    }
+}
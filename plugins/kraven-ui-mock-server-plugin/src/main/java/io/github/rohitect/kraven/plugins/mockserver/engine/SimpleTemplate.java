@@ -0,0 +1,163 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A simple {@code ${variable}} template parsed once into literal and variable segments.
+ * Variables may be dotted paths such as {@code ${request.pathVariables.id}}; each distinct
+ * path is split when the template is parsed and resolved at most once per render, and the
+ * output builder is sized from the literal text up front.
+ */
+public final class SimpleTemplate {
+
+    private final String template;
+    private final String[] literals;
+    private final int[] slots;
+    private final Variable[] variables;
+    private final int literalLength;
+    private final Set<String> referencedKeys;
+
+    private SimpleTemplate(String template, String[] literals, int[] slots, Variable[] variables) {
+        this.template = template;
+        this.literals = literals;
+        this.slots = slots;
+        this.variables = variables;
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (Variable variable : variables) {
+            keys.add(variable.path[0]);
+        }
+        this.referencedKeys = Collections.unmodifiableSet(keys);
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parse a simple template.
+     *
+     * @param template the template string
+     * @return the parsed template
+     */
+    public static SimpleTemplate parse(String template) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        Map<String, Integer> variableIndex = new LinkedHashMap<>();
+
+        StringBuilder literal = new StringBuilder();
+        int start = 0;
+        while (true) {
+            int open = template.indexOf("${", start);
+            int close = open == -1 ? -1 : template.indexOf('}', open + 2);
+            if (open == -1 || close == -1) {
+                literal.append(template, start, template.length());
+                break;
+            }
+            if (close == open + 2) {
+                // "${}" is not a variable
+                literal.append(template, start, close + 1);
+                start = close + 1;
+                continue;
+            }
+
+            literal.append(template, start, open);
+            literals.add(literal.toString());
+            literal.setLength(0);
+
+            String name = template.substring(open + 2, close);
+            slots.add(variableIndex.computeIfAbsent(name, key -> variableIndex.size()));
+            start = close + 1;
+        }
+        literals.add(literal.toString());
+
+        Variable[] variables = new Variable[variableIndex.size()];
+        variableIndex.forEach((name, index) -> variables[index] = new Variable(name));
+
+        return new SimpleTemplate(template,
+                literals.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray(),
+                variables);
+    }
+
+    /**
+     * Render the template. Variables that cannot be resolved are left in place.
+     *
+     * @param context the context for template rendering
+     * @return the rendered template
+     */
+    public String render(Map<String, Object> context) {
+        if (slots.length == 0 || context == null || context.isEmpty()) {
+            return template;
+        }
+
+        String[] values = new String[variables.length];
+        int valueLength = 0;
+        for (int i = 0; i < variables.length; i++) {
+            Object value = variables[i].resolve(context);
+            values[i] = value != null ? value.toString() : variables[i].placeholder;
+            valueLength += values[i].length();
+        }
+
+        StringBuilder result = new StringBuilder(literalLength + valueLength);
+        for (int i = 0; i < slots.length; i++) {
+            result.append(literals[i]).append(values[slots[i]]);
+        }
+        result.append(literals[slots.length]);
+        return result.toString();
+    }
+
+    /**
+     * @return the root context keys the template's variables start with
+     */
+    public Set<String> getReferencedKeys() {
+        return referencedKeys;
+    }
+
+    /**
+     * @return the original template string
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * A distinct variable path of the template.
+     */
+    private static final class Variable {
+
+        private final String name;
+        private final String[] path;
+        private final String placeholder;
+
+        Variable(String name) {
+            this.name = name;
+            this.path = name.split("\\.");
+            this.placeholder = "${" + name + "}";
+        }
+
+        /**
+         * Resolve the variable, preferring a context key that matches the full name.
+         */
+        Object resolve(Map<String, Object> context) {
+            Object value = context.get(name);
+            if (value != null || path.length == 1) {
+                return value;
+            }
+
+            value = context.get(path[0]);
+            for (int i = 1; i < path.length && value != null; i++) {
+                value = value instanceof Map ? ((Map<?, ?>) value).get(path[i]) : null;
+            }
+            return value;
+        }
+    }
+}
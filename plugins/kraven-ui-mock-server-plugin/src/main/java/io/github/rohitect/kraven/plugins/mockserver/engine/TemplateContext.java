@@ -0,0 +1,260 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderValues;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lazy template context over an {@link HttpServerExchange}.
+ * Exposes the same keys as the eagerly built context did ({@code request}, {@code timestamp},
+ * {@code random} and {@code uuid}), but computes each value only when a template first asks
+ * for it and keeps it for the rest of the render. Request headers and query parameters are
+ * read straight from the exchange instead of being copied into new maps.
+ * <p>
+ * When the root keys a template references are known, iterating the context only visits
+ * those keys; otherwise iteration materializes every value, so templates that walk the
+ * context still see all of it.
+ */
+public final class TemplateContext extends AbstractMap<String, Object> {
+
+    private static final String[] KEYS = {"request", "timestamp", "random", "uuid"};
+    private static final String[] REQUEST_KEYS = {"method", "path", "uri", "url", "headers", "queryParams", "pathVariables"};
+
+    private final HttpServerExchange exchange;
+    private final String[] visibleKeys;
+    private final Object[] values = new Object[KEYS.length];
+
+    /**
+     * Create a context for an exchange.
+     *
+     * @param exchange the HTTP server exchange
+     * @param referencedKeys the root keys the template references, or null if unknown
+     */
+    public TemplateContext(HttpServerExchange exchange, Set<String> referencedKeys) {
+        this.exchange = exchange;
+        if (referencedKeys == null) {
+            this.visibleKeys = KEYS;
+        } else {
+            List<String> keys = new ArrayList<>(KEYS.length);
+            for (String key : KEYS) {
+                if (referencedKeys.contains(key)) {
+                    keys.add(key);
+                }
+            }
+            this.visibleKeys = keys.toArray(new String[0]);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(KEYS, key);
+        if (index < 0) {
+            return null;
+        }
+        if (values[index] == null) {
+            values[index] = compute(index);
+        }
+        return values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(KEYS, key) >= 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new LazyEntrySet(visibleKeys, this);
+    }
+
+    private Object compute(int index) {
+        switch (index) {
+            case 0:
+                return new RequestView(exchange);
+            case 1:
+                return System.currentTimeMillis();
+            case 2:
+                return ThreadLocalRandom.current().nextDouble();
+            default:
+                return UUID.randomUUID().toString();
+        }
+    }
+
+    private static int indexOf(String[] keys, Object key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lazy view of the request part of the context.
+     */
+    private static final class RequestView extends AbstractMap<String, Object> {
+
+        private final HttpServerExchange exchange;
+        private final Object[] values = new Object[REQUEST_KEYS.length];
+
+        RequestView(HttpServerExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = indexOf(REQUEST_KEYS, key);
+            if (index < 0) {
+                return null;
+            }
+            if (values[index] == null) {
+                values[index] = compute(index);
+            }
+            return values[index];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(REQUEST_KEYS, key) >= 0;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new LazyEntrySet(REQUEST_KEYS, this);
+        }
+
+        private Object compute(int index) {
+            switch (index) {
+                case 0:
+                    return exchange.getRequestMethod().toString();
+                case 1:
+                    return exchange.getRequestPath();
+                case 2:
+                    return exchange.getRequestURI();
+                case 3:
+                    return exchange.getRequestURL();
+                case 4:
+                    return new HeadersView(exchange);
+                case 5:
+                    return new QueryParamsView(exchange);
+                default:
+                    RouteMatch match = exchange.getAttachment(RouteMatch.ATTACHMENT_KEY);
+                    return match != null ? match.getPathVariables() : Collections.emptyMap();
+            }
+        }
+    }
+
+    /**
+     * Request headers by name, mapped to their first value. Lookups are case-insensitive.
+     */
+    private static final class HeadersView extends AbstractMap<String, String> {
+
+        private final HttpServerExchange exchange;
+
+        HeadersView(HttpServerExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String ? exchange.getRequestHeaders().getFirst((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && exchange.getRequestHeaders().contains((String) key);
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            Map<String, String> headers = new HashMap<>();
+            for (HeaderValues header : exchange.getRequestHeaders()) {
+                headers.put(header.getHeaderName().toString(), header.getFirst());
+            }
+            return headers.entrySet();
+        }
+    }
+
+    /**
+     * Query parameters by name, mapped to the list of their values.
+     */
+    private static final class QueryParamsView extends AbstractMap<String, Object> {
+
+        private final HttpServerExchange exchange;
+
+        QueryParamsView(HttpServerExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Deque<String> values = exchange.getQueryParameters().get(key);
+            return values != null ? new ArrayList<>(values) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return exchange.getQueryParameters().containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> params = new HashMap<>();
+            exchange.getQueryParameters().forEach((name, values) -> params.put(name, new ArrayList<>(values)));
+            return params.entrySet();
+        }
+    }
+
+    /**
+     * Entry set over a fixed key array that resolves each value through the owning map.
+     */
+    private static final class LazyEntrySet extends AbstractSet<Entry<String, Object>> {
+
+        private final String[] keys;
+        private final Map<String, Object> owner;
+
+        LazyEntrySet(String[] keys, Map<String, Object> owner) {
+            this.keys = keys;
+            this.owner = owner;
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new Iterator<>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < keys.length;
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    if (index >= keys.length) {
+                        throw new NoSuchElementException();
+                    }
+                    String key = keys[index++];
+                    return new SimpleImmutableEntry<>(key, owner.get(key));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockThrottle;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable, pre-compiled form of a {@link MockThrottle}.
+ * A throttle describes a token bucket: tokens are bytes, the bucket refills at the configured
+ * throughput and holds at most the burst size. With a slow start, the refill rate ramps up
+ * linearly from the initial throughput, which resembles a connection whose congestion window is
+ * still growing. Every throttled response gets its own {@link Bucket}.
+ */
+@Slf4j
+public final class Throttle {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double bytesPerSecond;
+    private final double initialBytesPerSecond;
+    private final double slowStartSeconds;
+    private final int chunkSize;
+    private final double burstBytes;
+    private final boolean chunked;
+
+    private Throttle(double bytesPerSecond, double initialBytesPerSecond, double slowStartSeconds, int chunkSize,
+                     double burstBytes, boolean chunked) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.initialBytesPerSecond = initialBytesPerSecond;
+        this.slowStartSeconds = slowStartSeconds;
+        this.chunkSize = chunkSize;
+        this.burstBytes = burstBytes;
+        this.chunked = chunked;
+    }
+
+    /**
+     * Compile a throttle.
+     *
+     * @param throttle the throttle configuration, may be null
+     * @return the compiled throttle, or null if there is none or it is invalid
+     */
+    public static Throttle of(MockThrottle throttle) {
+        if (throttle == null) {
+            return null;
+        }
+        if (throttle.getBytesPerSecond() <= 0 || throttle.getChunkSize() <= 0) {
+            log.warn("Invalid throttle, bytesPerSecond and chunkSize must be positive: {}", throttle);
+            return null;
+        }
+
+        double rate = throttle.getBytesPerSecond();
+        double slowStartSeconds = Math.max(throttle.getSlowStartMs(), 0) / 1000.0;
+        double initialRate = throttle.getInitialBytesPerSecond() > 0
+                ? Math.min(throttle.getInitialBytesPerSecond(), rate)
+                : rate / 10;
+        // The bucket must hold at least one chunk, or a chunk could never be sent
+        double burst = Math.max(throttle.getBurstBytes(), throttle.getChunkSize());
+        return new Throttle(rate, slowStartSeconds > 0 ? initialRate : rate, slowStartSeconds,
+                throttle.getChunkSize(), burst, throttle.isChunked());
+    }
+
+    /**
+     * Create a full bucket for one response.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the bucket
+     */
+    public Bucket newBucket(long nowNanos) {
+        return new Bucket(nowNanos);
+    }
+
+    /**
+     * @return the number of bytes written at a time
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return true if the body is sent with chunked transfer encoding
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * Get the refill rate at a point of the response.
+     *
+     * @param elapsedSeconds the time since the bucket was created
+     * @return the rate in bytes per second
+     */
+    double rateAt(double elapsedSeconds) {
+        if (elapsedSeconds >= slowStartSeconds) {
+            return bytesPerSecond;
+        }
+        return initialBytesPerSecond + (bytesPerSecond - initialBytesPerSecond) * elapsedSeconds / slowStartSeconds;
+    }
+
+    /**
+     * Get the number of bytes the bucket refills with from its creation up to a point of the response,
+     * ignoring its capacity.
+     */
+    private double refilledBy(double elapsedSeconds) {
+        if (elapsedSeconds >= slowStartSeconds) {
+            return (initialBytesPerSecond + bytesPerSecond) / 2 * slowStartSeconds
+                    + bytesPerSecond * (elapsedSeconds - slowStartSeconds);
+        }
+        return initialBytesPerSecond * elapsedSeconds
+                + (bytesPerSecond - initialBytesPerSecond) * elapsedSeconds * elapsedSeconds / (2 * slowStartSeconds);
+    }
+
+    /**
+     * Token bucket of a single response. Not thread-safe; it is only used by the IO thread
+     * writing the response.
+     */
+    public final class Bucket {
+
+        private final long startNanos;
+        private double tokens;
+        private double refilled;
+
+        private Bucket(long startNanos) {
+            this.startNanos = startNanos;
+            this.tokens = burstBytes;
+        }
+
+        /**
+         * Take tokens for a write if the bucket holds enough of them.
+         *
+         * @param bytes the size of the write
+         * @param nowNanos the current {@link System#nanoTime()}
+         * @return 0 if the tokens were taken, otherwise the nanoseconds to wait before trying again
+         */
+        public long tryAcquire(int bytes, long nowNanos) {
+            double elapsedSeconds = Math.max(nowNanos - startNanos, 0) / NANOS_PER_SECOND;
+            double total = refilledBy(elapsedSeconds);
+            tokens = Math.min(tokens + total - refilled, burstBytes);
+            refilled = total;
+
+            double needed = Math.min(bytes, burstBytes);
+            if (tokens >= needed) {
+                tokens -= needed;
+                return 0;
+            }
+            // The rate only grows, so waiting at the current rate never undershoots
+            return Math.max((long) Math.ceil((needed - tokens) / rateAt(elapsedSeconds) * NANOS_PER_SECOND), 1);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a response body in chunks paced by a {@link Throttle}.
+ * Each chunk is handed to the asynchronous response sender; once it has been written, the next
+ * chunk is sent straight away if the token bucket allows it, or from a timer of the exchange's
+ * IO thread otherwise. A throttled response therefore never occupies a thread while it waits.
+ */
+@Slf4j
+public final class ThrottledSender implements IoCallback {
+
+    private final HttpServerExchange exchange;
+    private final ByteBuffer body;
+    private final int chunkSize;
+    private final Throttle.Bucket bucket;
+
+    private ThrottledSender(HttpServerExchange exchange, ByteBuffer body, Throttle throttle) {
+        this.exchange = exchange;
+        this.body = body;
+        this.chunkSize = throttle.getChunkSize();
+        this.bucket = throttle.newBucket(System.nanoTime());
+    }
+
+    /**
+     * Send a body through a throttle and end the exchange once it has been written.
+     * May be called from any thread, such as the worker that rendered a template; the chunks are
+     * always written from the IO thread of the exchange, which also runs the timers between them.
+     *
+     * @param exchange the HTTP server exchange, with status and headers already set
+     * @param body the body to send
+     * @param throttle the throttle to pace the body with
+     */
+    public static void send(HttpServerExchange exchange, ByteBuffer body, Throttle throttle) {
+        if (!throttle.isChunked()) {
+            exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, body.remaining());
+        }
+        ThrottledSender sender = new ThrottledSender(exchange, body, throttle);
+        exchange.dispatch(exchange.getIoThread(), sender::writeNext);
+    }
+
+    @Override
+    public void onComplete(HttpServerExchange exchange, Sender sender) {
+        writeNext();
+    }
+
+    @Override
+    public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+        log.debug("Failed to send throttled response: {}", exception.getMessage());
+        IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+    }
+
+    private void writeNext() {
+        if (!body.hasRemaining()) {
+            exchange.endExchange();
+            return;
+        }
+
+        int size = Math.min(chunkSize, body.remaining());
+        long waitNanos = bucket.tryAcquire(size, System.nanoTime());
+        if (waitNanos > 0) {
+            // IO thread timers have millisecond resolution
+            long waitMs = Math.max(TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999), 1);
+            exchange.getIoThread().executeAfter(this::writeNext, waitMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        ByteBuffer chunk = body.duplicate();
+        chunk.limit(chunk.position() + size);
+        body.position(body.position() + size);
+        exchange.getResponseSender().send(chunk, this);
+    }
+}
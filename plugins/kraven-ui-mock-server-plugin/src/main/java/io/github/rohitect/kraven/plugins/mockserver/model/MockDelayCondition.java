@@ -13,7 +13,7 @@ public class MockDelayCondition {
     
     /**
      * The type of condition.
-     * Possible values: "header", "query-param", "path-variable", "method", "path"
+     * Possible values: "header", "query-param", "path-variable", "body", "method", "path"
      */
     private String type;
     
@@ -22,6 +22,7 @@ public class MockDelayCondition {
      * For headers, this is the header name.
      * For query parameters, this is the parameter name.
      * For path variables, this is the variable name.
+     * For body, this is the JSON path expression, or empty to match the whole body text.
      * Not used for method or path conditions.
      */
     private String name;
@@ -0,0 +1,82 @@
+package io.github.rohitect.kraven.plugins.mockserver.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Configuration for a statistical delay distribution.
+ * A new delay is drawn from the distribution for every request, which gives mocked dependencies
+ * a realistic spread and tail instead of a flat delay. All values are in milliseconds.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MockDelayDistribution {
+
+    /**
+     * The type of distribution.
+     * Possible values: "normal", "log-normal", "pareto", "percentiles"
+     */
+    private String type;
+
+    /**
+     * The mean delay of a normal distribution.
+     */
+    private double mean;
+
+    /**
+     * The standard deviation of a normal distribution.
+     */
+    private double stdDev;
+
+    /**
+     * The median delay of a log-normal distribution.
+     */
+    private double median;
+
+    /**
+     * The shape (standard deviation of the logarithm) of a log-normal distribution.
+     * If not set, it is derived from the median and p99.
+     */
+    private double sigma;
+
+    /**
+     * The scale, which is also the smallest delay, of a Pareto distribution.
+     */
+    private double scale;
+
+    /**
+     * The shape of a Pareto distribution. Smaller values give a longer tail.
+     */
+    private double shape;
+
+    /**
+     * The 50th percentile delay of a percentile-defined distribution.
+     */
+    private double p50;
+
+    /**
+     * The 90th percentile delay of a percentile-defined distribution.
+     */
+    private double p90;
+
+    /**
+     * The 99th percentile delay of a percentile-defined distribution, or of a log-normal
+     * distribution without a sigma.
+     */
+    private double p99;
+
+    /**
+     * The 99.9th percentile delay of a percentile-defined distribution.
+     */
+    private double p999;
+
+    /**
+     * The smallest delay to apply. Drawn delays below it are raised to it.
+     */
+    private double min;
+
+    /**
+     * The largest delay to apply, 0 for no limit. Drawn delays above it are lowered to it.
+     */
+    private double max;
+}
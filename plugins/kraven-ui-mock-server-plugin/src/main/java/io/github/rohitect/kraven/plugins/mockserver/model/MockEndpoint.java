@@ -31,7 +31,7 @@ public class MockEndpoint {
 
     /**
      * The type of response selection.
-     * Possible values: "manual", "sequence"
+     * Possible values: "manual", "sequence", "weighted"
      */
     private String responseType = "manual";
 
@@ -45,6 +45,45 @@ public class MockEndpoint {
      */
     private List<MockMatcher> matchers = new ArrayList<>();
 
+    /**
+     * Bandwidth throttling of the bodies of all responses that do not have a throttle of their own.
+     */
+    private MockThrottle throttle;
+
+    /**
+     * The seed for weighted response selection.
+     * With a seed, every run picks the same sequence of responses; without one, a random seed is used.
+     */
+    private Long seed;
+
+    /**
+     * The maximum number of requests served at the same time, 0 for no limit.
+     * Requests above the limit wait in the queue.
+     */
+    private int maxConcurrency = 0;
+
+    /**
+     * The maximum number of requests waiting for a slot when the endpoint is at capacity.
+     * Requests that do not fit are rejected with the reject status.
+     */
+    private int queueDepth = 0;
+
+    /**
+     * The maximum time in milliseconds a request waits in the queue before it is rejected, 0 for no limit.
+     */
+    private long queueTimeoutMs = 0;
+
+    /**
+     * The status code of rejected requests, usually 503 or 429.
+     */
+    private int rejectStatus = 503;
+
+    /**
+     * Delays added to responses depending on the number of requests being served, interpolated
+     * linearly between the points. This models latency that climbs as the endpoint approaches capacity.
+     */
+    private List<MockLatencyPoint> latencyCurve;
+
     /**
      * Get the default response for this endpoint.
      *
@@ -0,0 +1,22 @@
+package io.github.rohitect.kraven.plugins.mockserver.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * A point of an endpoint's latency-vs-concurrency curve.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MockLatencyPoint {
+
+    /**
+     * The number of requests the endpoint is serving, including the new one.
+     */
+    private int concurrency;
+
+    /**
+     * The delay in milliseconds added to responses at this concurrency.
+     */
+    private int delayMs;
+}
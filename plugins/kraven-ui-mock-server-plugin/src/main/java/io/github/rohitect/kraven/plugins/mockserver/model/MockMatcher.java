@@ -1,7 +1,11 @@
 package io.github.rohitect.kraven.plugins.mockserver.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.regex.Pattern;
 
@@ -23,7 +27,8 @@ public class MockMatcher {
      * For headers, this is the header name.
      * For query parameters, this is the parameter name.
      * For path variables, this is the variable name.
-     * For body, this is the JSON path expression.
+     * For body, this is the JSON path expression, such as {@code $.user.id}; if it is empty,
+     * the whole body text is matched.
      */
     private String name;
 
@@ -56,6 +61,14 @@ public class MockMatcher {
      */
     private boolean required = true;
 
+    /**
+     * The regex last compiled by {@link #matches(String)}, reused while the pattern is unchanged.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Pattern compiledPattern;
+
     /**
      * Check if the given value matches this matcher.
      *
@@ -93,11 +106,20 @@ public class MockMatcher {
             case "endsWith":
                 return matchValue != null && valueToMatch.endsWith(matchValue);
             case "regex":
-                return matchPattern != null && Pattern.compile(matchPattern).matcher(valueToMatch).matches();
+                return matchPattern != null && compilePattern(matchPattern).matcher(valueToMatch).matches();
             case "exists":
                 return true; // If we got here, the value exists
             default:
                 return false;
         }
     }
+
+    private Pattern compilePattern(String matchPattern) {
+        Pattern compiled = compiledPattern;
+        if (compiled == null || !compiled.pattern().equals(matchPattern)) {
+            compiled = Pattern.compile(matchPattern);
+            compiledPattern = compiled;
+        }
+        return compiled;
+    }
 }
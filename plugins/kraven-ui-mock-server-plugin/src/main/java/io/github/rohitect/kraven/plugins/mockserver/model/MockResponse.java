@@ -50,6 +50,18 @@ public class MockResponse {
     @JsonDeserialize(using = BodyTemplateDeserializer.class)
     private String bodyTemplate;
 
+    /**
+     * The path of a file to serve as the body, streamed without loading it into memory.
+     * Relative paths are resolved against the directory of the configuration volume file.
+     * Takes precedence over body and bodyTemplate.
+     */
+    private String bodyFile;
+
+    /**
+     * Whether to keep the body file memory-mapped across requests, which suits hot files.
+     */
+    private boolean cacheBodyFile = false;
+
     /**
      * The template engine to use for the body template.
      * Possible values: "handlebars", "simple"
@@ -79,12 +91,36 @@ public class MockResponse {
      */
     private boolean delayRange = false;
 
+    /**
+     * A statistical distribution to draw the delay from for every request.
+     * Takes precedence over delayRange and delay.
+     */
+    private MockDelayDistribution delayDistribution;
+
     /**
      * Conditions for applying the delay.
      * If empty or null, the delay is always applied.
      */
     private List<MockDelayCondition> delayConditions;
 
+    /**
+     * Bandwidth throttling of the body.
+     * Takes precedence over the throttle of the endpoint.
+     */
+    private MockThrottle throttle;
+
+    /**
+     * The relative weight with which this response is picked for a request when the endpoint's
+     * response type is "weighted". Responses without a weight are never picked.
+     */
+    private double weight = 0;
+
+    /**
+     * A connection-level fault to inject instead of sending a well-formed response.
+     * Possible values: "connection-reset", "empty-reply", "truncated-body"
+     */
+    private String fault;
+
     /**
      * A description of this response.
      */
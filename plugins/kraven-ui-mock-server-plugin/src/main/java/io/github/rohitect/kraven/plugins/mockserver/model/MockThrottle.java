@@ -0,0 +1,48 @@
+package io.github.rohitect.kraven.plugins.mockserver.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Configuration for bandwidth throttling of a response body.
+ * The body is written in chunks paced by a token bucket, which simulates a constrained link
+ * between the mocked dependency and the client. Each response gets its own bucket, so the limit
+ * applies per connection.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MockThrottle {
+
+    /**
+     * The sustained throughput in bytes per second.
+     */
+    private long bytesPerSecond;
+
+    /**
+     * The number of bytes written at a time.
+     */
+    private int chunkSize = 1024;
+
+    /**
+     * The capacity of the token bucket in bytes, which is also the burst sent straight away.
+     * If not set, it is one chunk.
+     */
+    private long burstBytes;
+
+    /**
+     * The time in milliseconds over which the throughput ramps up linearly from the initial
+     * throughput to bytesPerSecond, 0 for no slow start.
+     */
+    private long slowStartMs;
+
+    /**
+     * The throughput in bytes per second at the start of a slow start.
+     * If not set, it is a tenth of bytesPerSecond.
+     */
+    private long initialBytesPerSecond;
+
+    /**
+     * Whether to send the body with chunked transfer encoding instead of a Content-Length header.
+     */
+    private boolean chunked;
+}
@@ -0,0 +1,416 @@
+package io.github.rohitect.kraven.plugins.mockserver.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ConfigurationSnapshot;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Versioned, in-memory copy of the mock configuration.
+ * The configuration file is parsed once per change and every reader shares the parsed result.
+ * When watching is enabled, a {@link WatchService} on the file's directory triggers a reload
+ * once the file has not changed for {@link MockServerConfig#getReloadDebounceMs()}; if the
+ * directory cannot be watched, the file is polled every {@link MockServerConfig#getReloadIntervalMs()}.
+ */
+@Slf4j
+public class MockConfigurationStore implements AutoCloseable {
+
+    private final MockServerConfig config;
+    private final Consumer<MockConfiguration> postProcessor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Consumer<MockConfiguration>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Snapshot snapshot;
+    private WatchService watchService;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> pendingReload;
+
+    /**
+     * Create a new store.
+     *
+     * @param config the server configuration
+     * @param postProcessor applied to every freshly parsed configuration, may be null
+     */
+    public MockConfigurationStore(MockServerConfig config, Consumer<MockConfiguration> postProcessor) {
+        this.config = config;
+        this.postProcessor = postProcessor;
+    }
+
+    /**
+     * Get the current configuration, loading it on first use.
+     * Callers must treat the returned configuration as read-only.
+     *
+     * @return the current configuration
+     */
+    public MockConfiguration get() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    publish(read(), false);
+                }
+                current = snapshot;
+            }
+        }
+        return current.configuration;
+    }
+
+    /**
+     * @return the version of the current configuration, incremented by every reload that changed it
+     */
+    public long getVersion() {
+        get();
+        return snapshot.version;
+    }
+
+    /**
+     * Re-read the configuration and notify the listeners, even if the file did not change.
+     *
+     * @return the reloaded configuration
+     */
+    public synchronized MockConfiguration reload() {
+        byte[] content = read();
+        if (content == null && snapshot != null) {
+            return snapshot.configuration;
+        }
+        publish(content, true);
+        return snapshot.configuration;
+    }
+
+    /**
+     * Register a listener for configuration changes.
+     * The listener is called with the current configuration before this method returns. Calls
+     * are serialized, so a listener never sees an older configuration after a newer one.
+     *
+     * @param listener the listener to add
+     */
+    public synchronized void addListener(Consumer<MockConfiguration> listener) {
+        listener.accept(get());
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(Consumer<MockConfiguration> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start watching the configuration file for changes. Does nothing if already watching or if
+     * the configuration is not loaded from the file system.
+     */
+    public synchronized void startWatching() {
+        if (scheduler != null || !StringUtils.hasText(config.getConfigVolumePath())) {
+            return;
+        }
+
+        Path file = Paths.get(config.getConfigVolumePath()).toAbsolutePath();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mock-server-config-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+
+            Thread watcher = new Thread(() -> watch(watchService, file.getFileName()), "mock-server-config-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            log.info("Watching configuration file {} for changes", file);
+        } catch (Exception e) {
+            log.warn("Cannot watch configuration file {} ({}), polling every {}ms instead",
+                    file, e.getMessage(), config.getReloadIntervalMs());
+            closeWatchService();
+            scheduler.scheduleWithFixedDelay(this::reloadIfChanged,
+                    config.getReloadIntervalMs(), config.getReloadIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop watching the configuration file.
+     */
+    public synchronized void stopWatching() {
+        closeWatchService();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            pendingReload = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stopWatching();
+    }
+
+    private void watch(WatchService service, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    scheduleReload();
+                }
+                if (!key.reset()) {
+                    log.warn("Configuration directory is no longer accessible, stopped watching {}", fileName);
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.debug("Configuration watcher stopped");
+        }
+    }
+
+    /**
+     * Reload once the file has been quiet for the debounce period, so a burst of events from a
+     * single save results in a single parse.
+     */
+    private synchronized void scheduleReload() {
+        if (scheduler == null) {
+            return;
+        }
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = scheduler.schedule(this::reloadIfChanged, config.getReloadDebounceMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void reloadIfChanged() {
+        byte[] content = read();
+        if (content == null || (snapshot != null && Arrays.equals(content, snapshot.content))) {
+            return;
+        }
+        log.info("Configuration file has been modified, reloading...");
+        publish(content, true);
+    }
+
+    /**
+     * Parse the content into a new snapshot and, if requested, hand it to the listeners.
+     * A configuration that fails to parse keeps the previous one in place.
+     */
+    private void publish(byte[] content, boolean notify) {
+        MockConfiguration configuration;
+        if (content == null) {
+            log.warn("No configuration resource found, using empty configuration");
+            configuration = new MockConfiguration();
+        } else {
+            try {
+                configuration = load(content);
+            } catch (Exception e) {
+                log.error("Failed to parse configuration", e);
+                if (snapshot != null) {
+                    return;
+                }
+                configuration = new MockConfiguration();
+            }
+        }
+
+        long version = snapshot == null ? 1 : snapshot.version + 1;
+        snapshot = new Snapshot(version, configuration, content);
+        log.info("Configuration version {} loaded with {} endpoints", version, configuration.getEndpoints().size());
+
+        if (notify) {
+            for (Consumer<MockConfiguration> listener : listeners) {
+                try {
+                    listener.accept(configuration);
+                } catch (Exception e) {
+                    log.error("Configuration listener failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the content, or restore it from a snapshot of the same content if there is one.
+     * A parsed configuration is written to a new snapshot and its static bodies are then served
+     * from that snapshot, so they are encoded and compressed once.
+     */
+    private MockConfiguration load(byte[] content) throws IOException {
+        Path snapshotFile = getSnapshotFile();
+        byte[] hash = snapshotFile != null ? ConfigurationSnapshot.hash(content) : null;
+        if (snapshotFile != null) {
+            MockConfiguration restored = restore(snapshotFile, hash);
+            if (restored != null) {
+                log.info("Configuration restored from snapshot {}", snapshotFile);
+                return restored;
+            }
+        }
+
+        MockConfiguration configuration = objectMapper.readValue(content, MockConfiguration.class);
+        if (postProcessor != null) {
+            postProcessor.accept(configuration);
+        }
+        resolveBodyFiles(configuration);
+
+        if (snapshotFile != null) {
+            try {
+                ConfigurationSnapshot.write(snapshotFile, hash, configuration);
+                log.info("Configuration snapshot written to {}", snapshotFile);
+                ConfigurationSnapshot.readBodies(snapshotFile, hash, configuration);
+            } catch (IOException e) {
+                log.warn("Failed to write configuration snapshot {}: {}", snapshotFile, e.getMessage());
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * Restore a configuration from its snapshot.
+     * Property placeholders in paths are resolved again, since the properties may have changed
+     * without the configuration changing.
+     */
+    private MockConfiguration restore(Path snapshotFile, byte[] hash) {
+        MockConfiguration configuration = ConfigurationSnapshot.read(snapshotFile, hash);
+        if (configuration != null && postProcessor != null) {
+            for (MockEndpoint endpoint : configuration.getEndpoints()) {
+                if (endpoint.getOriginalPath() != null) {
+                    endpoint.setPath(endpoint.getOriginalPath());
+                }
+            }
+            postProcessor.accept(configuration);
+        }
+        return configuration;
+    }
+
+    /**
+     * @return the snapshot file of the configuration source, or null if snapshots are disabled
+     */
+    private Path getSnapshotFile() {
+        if (!StringUtils.hasText(config.getSnapshotDirectory())) {
+            return null;
+        }
+        String source = StringUtils.hasText(config.getConfigVolumePath()) && Files.exists(Paths.get(config.getConfigVolumePath()))
+                ? Paths.get(config.getConfigVolumePath()).toAbsolutePath().toString()
+                : String.valueOf(config.getConfigPath());
+        byte[] sourceHash = ConfigurationSnapshot.hash(source.getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder("mock-config-");
+        for (int i = 0; i < 8; i++) {
+            name.append(String.format("%02x", sourceHash[i]));
+        }
+        return Paths.get(config.getSnapshotDirectory()).resolve(name.append(".snapshot").toString());
+    }
+
+    /**
+     * Resolve relative body file paths against the directory of the configuration volume file,
+     * so that fixtures can sit next to the configuration that refers to them.
+     */
+    private void resolveBodyFiles(MockConfiguration configuration) {
+        if (!StringUtils.hasText(config.getConfigVolumePath())) {
+            return;
+        }
+        Path directory = Paths.get(config.getConfigVolumePath()).toAbsolutePath().getParent();
+        for (MockEndpoint endpoint : configuration.getEndpoints()) {
+            if (endpoint.getResponses() == null) {
+                continue;
+            }
+            for (MockResponse response : endpoint.getResponses()) {
+                if (StringUtils.hasText(response.getBodyFile()) && !Paths.get(response.getBodyFile()).isAbsolute()) {
+                    response.setBodyFile(directory.resolve(response.getBodyFile()).normalize().toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the raw configuration, from the volume path first and the classpath second.
+     *
+     * @return the configuration bytes, or null if no configuration resource exists
+     */
+    private byte[] read() {
+        try {
+            if (StringUtils.hasText(config.getConfigVolumePath())) {
+                Path path = Paths.get(config.getConfigVolumePath());
+                if (Files.exists(path)) {
+                    log.debug("Loading configuration from volume path: {}", config.getConfigVolumePath());
+                    return Files.readAllBytes(path);
+                }
+                log.warn("Configuration volume path does not exist: {}", config.getConfigVolumePath());
+            }
+
+            if (StringUtils.hasText(config.getConfigPath())) {
+                String path = config.getConfigPath();
+                if (path.startsWith("classpath:")) {
+                    path = path.substring("classpath:".length());
+                }
+
+                ClassPathResource classpathResource = new ClassPathResource(path);
+                if (classpathResource.exists()) {
+                    log.debug("Loading configuration from classpath: {}", path);
+                    try (InputStream is = classpathResource.getInputStream()) {
+                        return is.readAllBytes();
+                    }
+                }
+                log.warn("Configuration classpath resource does not exist: {}", path);
+            }
+        } catch (IOException e) {
+            log.error("Failed to read configuration", e);
+        }
+        return null;
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Failed to close configuration watcher: {}", e.getMessage());
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * A parsed configuration together with the bytes it was parsed from.
+     */
+    private static final class Snapshot {
+
+        private final long version;
+        private final MockConfiguration configuration;
+        private final byte[] content;
+
+        Snapshot(long version, MockConfiguration configuration, byte[] content) {
+            this.version = version;
+            this.configuration = configuration;
+            this.content = content;
+        }
+    }
+}
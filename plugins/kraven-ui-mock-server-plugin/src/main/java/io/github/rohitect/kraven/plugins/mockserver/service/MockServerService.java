@@ -2,41 +2,33 @@ package io.github.rohitect.kraven.plugins.mockserver.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jayway.jsonpath.JsonPath;
 import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.github.rohitect.kraven.plugins.mockserver.engine.CompiledMatcher;
+import io.github.rohitect.kraven.plugins.mockserver.engine.PathTemplate;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RequestBody;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RouteMatch;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
-import io.github.rohitect.kraven.plugins.mockserver.model.MockMatcher;
 import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
 import io.undertow.server.HttpServerExchange;
-import io.undertow.util.HeaderMap;
-import io.undertow.util.HeaderValues;
 import io.undertow.util.Headers;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.env.Environment;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for the Mock Server plugin.
  */
 @Service
 @Slf4j
-public class MockServerService {
+public class MockServerService implements DisposableBean {
 
     @Autowired
     private MockServerConfig config;
@@ -50,8 +42,11 @@ public class MockServerService {
     @Autowired
     private TemplateService templateService;
 
+    private static final int MAX_CACHED_PATH_TEMPLATES = 4096;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Pattern pathVariablePattern = Pattern.compile("\\$\\{([^}]+)\\}");
+    private final Map<String, PathTemplate> pathTemplates = new ConcurrentHashMap<>();
+    private volatile MockConfigurationStore configurationStore;
 
     /**
      * Render a template with the given context.
@@ -66,6 +61,18 @@ public class MockServerService {
         return templateService.renderTemplate(engine, templateString, context);
     }
 
+    /**
+     * Get the root context keys a template references.
+     *
+     * @param engine the template engine to use
+     * @param templateString the template string
+     * @return the referenced root keys, or null if they cannot be determined
+     * @throws IOException if the template cannot be compiled
+     */
+    public Set<String> getReferencedTemplateKeys(String engine, String templateString) throws IOException {
+        return templateService.getReferencedKeys(engine, templateString);
+    }
+
     /**
      * Get all endpoints from the configuration.
      *
@@ -75,7 +82,7 @@ public class MockServerService {
         List<Map<String, Object>> result = new ArrayList<>();
 
         try {
-            MockConfiguration configuration = loadConfiguration();
+            MockConfiguration configuration = getConfiguration();
 
             for (MockEndpoint endpoint : configuration.getEndpoints()) {
                 Map<String, Object> endpointMap = new HashMap<>();
@@ -120,7 +127,7 @@ public class MockServerService {
         Map<String, Object> result = new HashMap<>();
 
         try {
-            MockConfiguration configuration = loadConfiguration();
+            MockConfiguration configuration = getConfiguration();
 
             for (MockEndpoint endpoint : configuration.getEndpoints()) {
                 // Check if the path contains ${} variables and try to match
@@ -135,6 +142,13 @@ public class MockServerService {
                     }
 
                     result.put("responseType", endpoint.getResponseType());
+                    result.put("throttle", endpoint.getThrottle());
+                    result.put("seed", endpoint.getSeed());
+                    result.put("maxConcurrency", endpoint.getMaxConcurrency());
+                    result.put("queueDepth", endpoint.getQueueDepth());
+                    result.put("queueTimeoutMs", endpoint.getQueueTimeoutMs());
+                    result.put("rejectStatus", endpoint.getRejectStatus());
+                    result.put("latencyCurve", endpoint.getLatencyCurve());
 
                     List<Map<String, Object>> responses = new ArrayList<>();
                     for (MockResponse response : endpoint.getResponses()) {
@@ -147,7 +161,12 @@ public class MockServerService {
                         responseMap.put("body", response.getBody());
                         responseMap.put("bodyTemplate", response.getBodyTemplate());
                         responseMap.put("bodyTemplateEngine", response.getBodyTemplateEngine());
+                        responseMap.put("bodyFile", response.getBodyFile());
                         responseMap.put("delay", response.getDelay());
+                        responseMap.put("delayDistribution", response.getDelayDistribution());
+                        responseMap.put("throttle", response.getThrottle());
+                        responseMap.put("weight", response.getWeight());
+                        responseMap.put("fault", response.getFault());
                         responseMap.put("tags", response.getTags());
                         responseMap.put("category", response.getCategory());
                         responses.add(responseMap);
@@ -177,7 +196,7 @@ public class MockServerService {
         Map<String, Object> result = new HashMap<>();
 
         try {
-            MockConfiguration configuration = loadConfiguration();
+            MockConfiguration configuration = getConfiguration();
 
             for (MockEndpoint endpoint : configuration.getEndpoints()) {
                 if (endpoint.getMethod().equalsIgnoreCase(method) &&
@@ -192,7 +211,12 @@ public class MockServerService {
                             result.put("body", response.getBody());
                             result.put("bodyTemplate", response.getBodyTemplate());
                             result.put("bodyTemplateEngine", response.getBodyTemplateEngine());
+                            result.put("bodyFile", response.getBodyFile());
                             result.put("delay", response.getDelay());
+                            result.put("delayDistribution", response.getDelayDistribution());
+                            result.put("throttle", response.getThrottle());
+                            result.put("weight", response.getWeight());
+                            result.put("fault", response.getFault());
                             result.put("tags", response.getTags());
                             result.put("category", response.getCategory());
                             break;
@@ -222,36 +246,7 @@ public class MockServerService {
             return templatePath.equals(actualPath);
         }
 
-        // Handle leading and trailing slashes consistently
-        String normalizedTemplatePath = normalizePathSlashes(templatePath);
-        String normalizedActualPath = normalizePathSlashes(actualPath);
-
-        // Convert template path to regex pattern
-        String[] templateSegments = normalizedTemplatePath.split("/");
-        String[] actualSegments = normalizedActualPath.split("/");
-
-        // If segment count doesn't match, paths don't match
-        if (templateSegments.length != actualSegments.length) {
-            return false;
-        }
-
-        // Check each segment
-        for (int i = 0; i < templateSegments.length; i++) {
-            String templateSegment = templateSegments[i];
-            String actualSegment = actualSegments[i];
-
-            // If this segment contains a variable, it matches any value
-            if (templateSegment.contains("${") && templateSegment.contains("}")) {
-                // It's a variable segment, so it matches anything
-                continue;
-            } else if (!templateSegment.equals(actualSegment)) {
-                // Not a variable and doesn't match exactly
-                return false;
-            }
-        }
-
-        // All segments matched
-        return true;
+        return compilePathTemplate(templatePath).match(actualPath) != null;
     }
 
     /**
@@ -262,61 +257,40 @@ public class MockServerService {
      * @return a map of variable names to values
      */
     public Map<String, String> extractPathVariables(String templatePath, String actualPath) {
-        Map<String, String> variables = new HashMap<>();
-
         // If the template doesn't contain variables, return empty map
         if (!templatePath.contains("${")) {
-            return variables;
+            return new HashMap<>();
         }
 
-        // Handle leading and trailing slashes consistently
-        String normalizedTemplatePath = normalizePathSlashes(templatePath);
-        String normalizedActualPath = normalizePathSlashes(actualPath);
-
-        // Split paths into segments
-        String[] templateSegments = normalizedTemplatePath.split("/");
-        String[] actualSegments = normalizedActualPath.split("/");
-
-        // If segment count doesn't match, return empty map
-        if (templateSegments.length != actualSegments.length) {
-            return variables;
-        }
+        Map<String, String> variables = compilePathTemplate(templatePath).match(actualPath);
+        return variables != null ? new HashMap<>(variables) : new HashMap<>();
+    }
 
-        // Extract variables from each segment
-        for (int i = 0; i < templateSegments.length; i++) {
-            String templateSegment = templateSegments[i];
-            String actualSegment = actualSegments[i];
-
-            // If this segment contains a variable, extract its value
-            if (templateSegment.contains("${") && templateSegment.contains("}")) {
-                Matcher matcher = pathVariablePattern.matcher(templateSegment);
-                if (matcher.find()) {
-                    String variableName = matcher.group(1);
-
-                    // Handle segments that are just a variable
-                    if (matcher.start() == 0 && matcher.end() == templateSegment.length()) {
-                        variables.put(variableName, actualSegment);
-                    } else {
-                        // Handle segments with text and variables
-                        String prefix = templateSegment.substring(0, matcher.start());
-                        String suffix = templateSegment.substring(matcher.end());
-
-                        if (actualSegment.startsWith(prefix) && actualSegment.endsWith(suffix)) {
-                            String value = actualSegment.substring(
-                                    prefix.length(),
-                                    actualSegment.length() - suffix.length());
-                            variables.put(variableName, value);
-                        }
-                    }
-                }
+    /**
+     * Get the compiled form of a path template, compiling it on first use.
+     * Templates passed in ad hoc through the API are compiled without being cached once the
+     * cache is full, so arbitrary input cannot grow it without bound.
+     *
+     * @param templatePath the path with potential ${} variables
+     * @return the compiled template
+     */
+    private PathTemplate compilePathTemplate(String templatePath) {
+        PathTemplate template = pathTemplates.get(templatePath);
+        if (template == null) {
+            template = PathTemplate.compile(templatePath);
+            if (pathTemplates.size() < MAX_CACHED_PATH_TEMPLATES) {
+                pathTemplates.putIfAbsent(templatePath, template);
             }
         }
-
-        return variables;
+        return template;
     }
 
     /**
      * Check if a request matches the matchers defined for an endpoint.
+     * Requests routed by the mock server reuse the endpoint compiled when the configuration was
+     * loaded; for other callers only the matchers are compiled, and path variables are bound with
+     * the cached path template. Body matchers see the
+     * {@link RequestBody} attached to the exchange, and treat the body as absent if it has not been read.
      *
      * @param exchange the HTTP server exchange
      * @param endpoint the endpoint to check
@@ -328,175 +302,70 @@ public class MockServerService {
             return true;
         }
 
-        // Check each matcher
-        for (MockMatcher matcher : endpoint.getMatchers()) {
-            boolean matches = false;
-
-            switch (matcher.getType()) {
-                case "header":
-                    matches = matchesHeader(exchange, matcher);
-                    break;
-                case "query-param":
-                    matches = matchesQueryParam(exchange, matcher);
-                    break;
-                case "path-variable":
-                    matches = matchesPathVariable(exchange, endpoint.getPath(), matcher);
-                    break;
-                case "body":
-                    matches = matchesBody(exchange, matcher);
-                    break;
-                default:
-                    log.warn("Unknown matcher type: {}", matcher.getType());
-                    matches = false;
-            }
-
-            // If a required matcher doesn't match, the request doesn't match
-            if (matcher.isRequired() && !matches) {
-                return false;
-            }
+        RouteMatch match = exchange.getAttachment(RouteMatch.ATTACHMENT_KEY);
+        if (match != null && match.getEndpoint().getEndpoint() == endpoint) {
+            return match.getEndpoint().matches(exchange, match);
         }
 
-        // All matchers passed
-        return true;
+        RouteMatch pathMatch = RouteMatch.of(compilePathTemplate(endpoint.getPath()), exchange.getRelativePath());
+        return CompiledMatcher.matchesAll(CompiledMatcher.ofMatchers(endpoint.getMatchers()), exchange, pathMatch);
     }
 
     /**
-     * Check if a request header matches a matcher.
-     *
-     * @param exchange the HTTP server exchange
-     * @param matcher the matcher to check
-     * @return true if the header matches, false otherwise
-     */
-    private boolean matchesHeader(HttpServerExchange exchange, MockMatcher matcher) {
-        HeaderMap headers = exchange.getRequestHeaders();
-        HeaderValues headerValues = headers.get(matcher.getName());
-
-        if (headerValues == null || headerValues.isEmpty()) {
-            return "exists".equals(matcher.getOperator()) && !matcher.isRequired();
-        }
-
-        // Use the first header value
-        String headerValue = headerValues.getFirst();
-        return matcher.matches(headerValue);
-    }
-
-    /**
-     * Check if a query parameter matches a matcher.
-     *
-     * @param exchange the HTTP server exchange
-     * @param matcher the matcher to check
-     * @return true if the query parameter matches, false otherwise
-     */
-    private boolean matchesQueryParam(HttpServerExchange exchange, MockMatcher matcher) {
-        Map<String, Deque<String>> queryParameters = exchange.getQueryParameters();
-        Deque<String> values = queryParameters.get(matcher.getName());
-
-        if (values == null || values.isEmpty()) {
-            return "exists".equals(matcher.getOperator()) && !matcher.isRequired();
-        }
-
-        // Use the first query parameter value
-        String value = values.getFirst();
-        return matcher.matches(value);
-    }
-
-    /**
-     * Check if a path variable matches a matcher.
+     * Get a path variable for the current request.
+     * Uses the variables bound by the routing trie when the request was routed by the mock
+     * server, and falls back to matching the template otherwise.
      *
      * @param exchange the HTTP server exchange
      * @param templatePath the path with potential ${} variables
-     * @param matcher the matcher to check
-     * @return true if the path variable matches, false otherwise
+     * @param name the variable name
+     * @return the variable value, or null if it is not present
      */
-    private boolean matchesPathVariable(HttpServerExchange exchange, String templatePath, MockMatcher matcher) {
-        String actualPath = exchange.getRequestPath();
-        Map<String, String> variables = extractPathVariables(templatePath, actualPath);
-
-        String value = variables.get(matcher.getName());
-        if (value == null) {
-            return "exists".equals(matcher.getOperator()) && !matcher.isRequired();
+    public String getPathVariable(HttpServerExchange exchange, String templatePath, String name) {
+        RouteMatch match = exchange.getAttachment(RouteMatch.ATTACHMENT_KEY);
+        if (match != null) {
+            return match.getPathVariable(name);
         }
-
-        return matcher.matches(value);
+        return extractPathVariables(templatePath, exchange.getRelativePath()).get(name);
     }
 
     /**
-     * Check if a request body matches a matcher.
+     * Get the current mock configuration.
+     * The configuration is parsed once per change of the configuration file and shared by
+     * every caller, so it must be treated as read-only.
      *
-     * @param exchange the HTTP server exchange
-     * @param matcher the matcher to check
-     * @return true if the body matches, false otherwise
+     * @return the current configuration
      */
-    private boolean matchesBody(HttpServerExchange exchange, MockMatcher matcher) {
-        // TODO: Implement body matching with JsonPath
-        // This requires reading the request body, which is more complex in Undertow
-        // For now, we'll just return true
-        return true;
+    public MockConfiguration getConfiguration() {
+        return getConfigurationStore().get();
     }
 
     /**
-     * Normalize path slashes to ensure consistent matching
-     */
-    private String normalizePathSlashes(String path) {
-        // Remove leading slash if present
-        if (path.startsWith("/")) {
-            path = path.substring(1);
-        }
-
-        // Remove trailing slash if present
-        if (path.endsWith("/") && path.length() > 1) {
-            path = path.substring(0, path.length() - 1);
-        }
-
-        return path;
-    }
-
-    /**
-     * Load the mock configuration from the configured path.
+     * Get the store holding the versioned configuration, creating it on first use.
+     *
+     * @return the configuration store
      */
-    private MockConfiguration loadConfiguration() throws IOException {
-        Resource configResource = null;
-
-        // Try to load from volume path first
-        if (StringUtils.hasText(config.getConfigVolumePath())) {
-            Path path = Paths.get(config.getConfigVolumePath());
-            if (Files.exists(path)) {
-                configResource = new FileSystemResource(path);
-                log.debug("Loading configuration from volume path: {}", config.getConfigVolumePath());
-            } else {
-                log.warn("Configuration volume path does not exist: {}", config.getConfigVolumePath());
-            }
-        }
-
-        // Fall back to classpath resource
-        if (configResource == null && StringUtils.hasText(config.getConfigPath())) {
-            String path = config.getConfigPath();
-            if (path.startsWith("classpath:")) {
-                path = path.substring("classpath:".length());
-            }
-
-            ClassPathResource classpathResource = new ClassPathResource(path);
-            if (classpathResource.exists()) {
-                configResource = classpathResource;
-                log.debug("Loading configuration from classpath: {}", path);
-            } else {
-                log.warn("Configuration classpath resource does not exist: {}", path);
+    public MockConfigurationStore getConfigurationStore() {
+        MockConfigurationStore store = configurationStore;
+        if (store == null) {
+            synchronized (this) {
+                store = configurationStore;
+                if (store == null) {
+                    store = new MockConfigurationStore(config, this::processConfigurationPaths);
+                    if (config.isAutoReload()) {
+                        store.startWatching();
+                    }
+                    configurationStore = store;
+                }
             }
         }
+        return store;
+    }
 
-        // Load the configuration
-        if (configResource != null) {
-            try (InputStream is = configResource.getInputStream()) {
-                MockConfiguration configuration = objectMapper.readValue(is, MockConfiguration.class);
-
-                // Process the configuration to resolve Spring Boot properties in paths
-                processConfigurationPaths(configuration);
-
-                return configuration;
-            }
-        } else {
-            log.warn("No configuration resource found, using empty configuration");
-            return new MockConfiguration();
+    @Override
+    public void destroy() {
+        if (configurationStore != null) {
+            configurationStore.close();
         }
     }
 
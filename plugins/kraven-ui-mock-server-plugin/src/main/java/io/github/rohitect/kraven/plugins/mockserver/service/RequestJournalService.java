@@ -0,0 +1,200 @@
+package io.github.rohitect.kraven.plugins.mockserver.service;
+
+import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.github.rohitect.kraven.plugins.mockserver.engine.JournalEntry;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RequestJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service holding the request journal of the mock server and streaming it to SSE subscribers.
+ * Recording threads only flag that new entries exist. Each subscriber has its own send loop that
+ * sends the entries after the last one it received, a bounded batch per run, so a slow subscriber
+ * never holds up the mock server or the other subscribers. The bounded journal is the queue of
+ * every subscriber: one that falls further behind than the journal holds skips the dropped entries.
+ */
+@Service
+@Slf4j
+public class RequestJournalService implements DisposableBean {
+
+    private static final long EMITTER_TIMEOUT_MS = 300000L;
+    private static final int MAX_ENTRIES_PER_SEND = 256;
+
+    @Autowired
+    private MockServerConfig config;
+
+    private volatile RequestJournal journal;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    // A send loop only holds a thread while its subscriber has entries to send
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "mock-server-journal-stream-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Get the request journal, creating it on first use.
+     *
+     * @return the request journal
+     */
+    public RequestJournal getJournal() {
+        RequestJournal current = journal;
+        if (current == null) {
+            synchronized (this) {
+                current = journal;
+                if (current == null) {
+                    current = new RequestJournal(config.getMaxHistoryEntries());
+                    current.setAppendListener(this::scheduleDrain);
+                    journal = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Stream journal entries to a new subscriber.
+     *
+     * @param after send entries with a higher sequence number, or null to only send new entries
+     * @return the SSE emitter
+     */
+    public SseEmitter subscribe(Long after) {
+        RequestJournal current = getJournal();
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter, after != null ? after : current.getLatestSequence());
+        subscribers.add(subscriber);
+
+        emitter.onCompletion(() -> {
+            log.debug("Journal SSE emitter completed");
+            subscribers.remove(subscriber);
+        });
+        emitter.onTimeout(() -> {
+            log.debug("Journal SSE emitter timed out");
+            subscribers.remove(subscriber);
+        });
+        emitter.onError(e -> {
+            log.debug("Journal SSE emitter error: {}", e.getMessage());
+            subscribers.remove(subscriber);
+        });
+
+        // Send any backlog the subscriber asked for
+        subscriber.scheduleDrain();
+        return emitter;
+    }
+
+    /**
+     * @return the number of connected stream subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private void scheduleDrain() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.scheduleDrain();
+        }
+    }
+
+    /**
+     * A stream subscriber, its send loop and the sequence number of the last entry it received.
+     * At most one send loop runs per subscriber.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        // Only accessed by the send loop
+        private long lastSequence;
+        private boolean draining;
+        private boolean pending;
+
+        Subscriber(SseEmitter emitter, long lastSequence) {
+            this.emitter = emitter;
+            this.lastSequence = lastSequence;
+        }
+
+        /**
+         * Start the send loop, or have the running one look for entries again when it is done.
+         */
+        void scheduleDrain() {
+            synchronized (this) {
+                if (draining) {
+                    pending = true;
+                    return;
+                }
+                draining = true;
+            }
+            execute();
+        }
+
+        /**
+         * Send one batch of entries, then run again on the executor while entries remain, so
+         * busy subscribers take turns for threads instead of keeping one.
+         */
+        private void drain() {
+            List<JournalEntry> entries = getJournal().since(lastSequence, MAX_ENTRIES_PER_SEND);
+            try {
+                for (JournalEntry entry : entries) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(entry.getSequence()))
+                            .name("request")
+                            .data(entry));
+                    lastSequence = entry.getSequence();
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Error sending journal entry to SSE emitter: {}", e.getMessage());
+                drop(e);
+                return;
+            }
+
+            synchronized (this) {
+                if (entries.size() < MAX_ENTRIES_PER_SEND && !pending) {
+                    draining = false;
+                    return;
+                }
+                pending = false;
+            }
+            execute();
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // The executor is shut down with the application
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        private void drop(Exception cause) {
+            subscribers.remove(this);
+            try {
+                emitter.completeWithError(cause);
+            } catch (IllegalStateException e) {
+                // Already completed
+            }
+        }
+    }
+}
@@ -1,28 +1,39 @@
 package io.github.rohitect.kraven.plugins.mockserver.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.jknack.handlebars.Handlebars;
+import com.github.jknack.handlebars.TagType;
 import com.github.jknack.handlebars.Template;
 import com.github.jknack.handlebars.helper.ConditionalHelpers;
 import com.github.jknack.handlebars.helper.StringHelpers;
+import io.github.rohitect.kraven.plugins.mockserver.engine.SimpleTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for template rendering.
+ * Templates are compiled once and cached by their source text, so endpoints rendering the
+ * same template on every request do not parse it again.
  */
 @Service
 @Slf4j
 public class TemplateService {
 
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+
     private final Handlebars handlebars;
-    private final Pattern simpleTemplatePattern = Pattern.compile("\\$\\{([^}]+)\\}");
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Template> handlebarsTemplates = new ConcurrentHashMap<>();
+    private final Map<String, SimpleTemplate> simpleTemplates = new ConcurrentHashMap<>();
 
     /**
      * Create a new TemplateService.
@@ -48,7 +59,7 @@ public class TemplateService {
                 return "null";
             }
             try {
-                return new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(context);
+                return objectMapper.writeValueAsString(context);
             } catch (Exception e) {
                 return context.toString();
             }
@@ -102,6 +113,67 @@ public class TemplateService {
         }
     }
 
+    /**
+     * Get the root context keys a template references, as recorded when it was compiled.
+     * Used to build only the parts of the template context a template can actually read.
+     *
+     * @param engine the template engine to use
+     * @param templateString the template string
+     * @return the referenced root keys, or null if they cannot be determined
+     * @throws IOException if the template cannot be compiled
+     */
+    public Set<String> getReferencedKeys(String engine, String templateString) throws IOException {
+        if (!StringUtils.hasText(templateString)) {
+            return Set.of();
+        }
+
+        if ("simple".equalsIgnoreCase(engine)) {
+            return simpleTemplate(templateString).getReferencedKeys();
+        }
+        if (!"handlebars".equalsIgnoreCase(engine)) {
+            return null;
+        }
+
+        Template template = handlebarsTemplate(templateString);
+        Set<String> keys = new HashSet<>();
+        for (String name : template.collect(TagType.values())) {
+            if (!addRootKey(keys, name)) {
+                return null;
+            }
+        }
+        for (String name : template.collectReferenceParameters()) {
+            if (!addRootKey(keys, name)) {
+                return null;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Add the root key of a Handlebars reference.
+     *
+     * @return false if the reference can reach the whole context, such as {@code this} or {@code ../}
+     */
+    private static boolean addRootKey(Set<String> keys, String name) {
+        if (name.isEmpty() || name.charAt(0) == '"' || name.charAt(0) == '\'' || Character.isDigit(name.charAt(0))) {
+            // Literal parameter, not a context reference
+            return true;
+        }
+        if (name.startsWith("this") || name.startsWith("..") || name.startsWith("@") || name.startsWith("[")) {
+            return false;
+        }
+        int end = name.length();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '.' || c == '/' || c == '[') {
+                end = i;
+                break;
+            }
+        }
+        keys.add(name.substring(0, end));
+        return true;
+    }
+
     /**
      * Render a Handlebars template with the given context.
      *
@@ -111,34 +183,53 @@ public class TemplateService {
      * @throws IOException if an error occurs during rendering
      */
     private String renderHandlebarsTemplate(String templateString, Map<String, Object> context) throws IOException {
-        Template template = handlebars.compileInline(templateString);
-        return template.apply(context);
+        return handlebarsTemplate(templateString).apply(context);
     }
 
     /**
      * Render a simple template with the given context.
-     * Simple templates use ${variable} syntax.
+     * Simple templates use ${variable} syntax, where the variable may be a dotted path into
+     * nested maps such as ${request.pathVariables.id}.
      *
      * @param templateString the template string
      * @param context the context for template rendering
      * @return the rendered template
      */
     private String renderSimpleTemplate(String templateString, Map<String, Object> context) {
-        if (context == null || context.isEmpty()) {
-            return templateString;
+        return simpleTemplate(templateString).render(context);
+    }
+
+    private Template handlebarsTemplate(String templateString) throws IOException {
+        Template template = handlebarsTemplates.get(templateString);
+        if (template == null) {
+            template = handlebars.compileInline(templateString);
+            cache(handlebarsTemplates, templateString, template);
         }
-        
-        StringBuffer result = new StringBuffer();
-        Matcher matcher = simpleTemplatePattern.matcher(templateString);
-        
-        while (matcher.find()) {
-            String variable = matcher.group(1);
-            Object value = context.get(variable);
-            String replacement = value != null ? value.toString() : matcher.group(0);
-            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        return template;
+    }
+
+    private SimpleTemplate simpleTemplate(String templateString) {
+        SimpleTemplate template = simpleTemplates.get(templateString);
+        if (template == null) {
+            template = SimpleTemplate.parse(templateString);
+            cache(simpleTemplates, templateString, template);
+        }
+        return template;
+    }
+
+    /**
+     * Add a compiled template to a cache, evicting an older entry once the cache is full.
+     * Eviction is approximate: it removes whichever entry the map iterates first, which keeps
+     * lookups lock-free while bounding the memory held by templates sent through the API.
+     */
+    private static <T> void cache(Map<String, T> cache, String templateString, T template) {
+        if (cache.putIfAbsent(templateString, template) == null && cache.size() > MAX_CACHED_TEMPLATES) {
+            Iterator<String> keys = cache.keySet().iterator();
+            while (keys.hasNext() && cache.size() > MAX_CACHED_TEMPLATES) {
+                if (!keys.next().equals(templateString)) {
+                    keys.remove();
+                }
+            }
         }
-        
-        matcher.appendTail(result);
-        return result.toString();
     }
 }
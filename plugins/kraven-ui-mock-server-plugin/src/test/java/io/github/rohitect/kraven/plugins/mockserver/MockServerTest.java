@@ -0,0 +1,603 @@
+package io.github.rohitect.kraven.plugins.mockserver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.github.rohitect.kraven.plugins.mockserver.engine.ConcurrencyLimiter;
+import io.github.rohitect.kraven.plugins.mockserver.engine.JournalEntry;
+import io.github.rohitect.kraven.plugins.mockserver.engine.RecordingStore;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockThrottle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MockServer class.
+ */
+class MockServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path configFile;
+    private MockServer mockServer;
+    private HttpClient httpClient;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        configFile = tempDir.resolve("mock-config.json");
+        Files.writeString(configFile, "{\n" +
+                "  \"endpoints\": [\n" +
+                "    {\n" +
+                "      \"path\": \"/api/slow\",\n" +
+                "      \"method\": \"GET\",\n" +
+                "      \"responses\": [\n" +
+                "        { \"id\": \"slow\", \"isDefault\": true, \"status\": 200, \"delay\": 1000, \"body\": { \"result\": \"done\" } }\n" +
+                "      ]\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"path\": \"/api/fast\",\n" +
+                "      \"method\": \"GET\",\n" +
+                "      \"responses\": [\n" +
+                "        { \"id\": \"fast\", \"isDefault\": true, \"status\": 200, \"body\": { \"result\": \"done\" } }\n" +
+                "      ]\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"path\": \"/api/orders\",\n" +
+                "      \"method\": \"POST\",\n" +
+                "      \"matchers\": [ { \"type\": \"body\", \"name\": \"$.type\", \"value\": \"express\" } ],\n" +
+                "      \"responses\": [\n" +
+                "        { \"id\": \"express\", \"isDefault\": true, \"status\": 200, \"body\": \"express\" }\n" +
+                "      ]\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"path\": \"/api/orders\",\n" +
+                "      \"method\": \"POST\",\n" +
+                "      \"responses\": [\n" +
+                "        { \"id\": \"standard\", \"isDefault\": true, \"status\": 200, \"body\": \"standard\" }\n" +
+                "      ]\n" +
+                "    }\n" +
+                "  ]\n" +
+                "}");
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        MockServerConfig config = new MockServerConfig();
+        config.setPort(port);
+        config.setHost("localhost");
+        config.setConfigVolumePath(configFile.toString());
+        config.setAutoReload(false);
+        config.setMaxRequestBodySize(1024);
+
+        mockServer = new MockServer(config);
+        mockServer.start();
+
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    void testDelayedRequestsDoNotBlockIoThreads() throws Exception {
+        // Far more concurrent delayed requests than there are IO threads
+        int concurrentRequests = 200;
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrentRequests; i++) {
+            futures.add(httpClient.sendAsync(request("/api/slow"), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            HttpResponse<String> response = future.get(30, TimeUnit.SECONDS);
+            assertEquals(200, response.statusCode());
+            assertEquals("{\"result\":\"done\"}", response.body());
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Sleeping on the IO threads would serialise the requests per thread and take well over a minute
+        assertTrue(elapsedMs >= 1000, "Responses were sent before the delay elapsed: " + elapsedMs + "ms");
+        assertTrue(elapsedMs < 10000, "Delayed requests were not served concurrently: " + elapsedMs + "ms");
+    }
+
+    @Test
+    void testFastRequestsAreNotStalledByDelayedRequests() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> slowFutures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            slowFutures.add(httpClient.sendAsync(request("/api/slow"), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<String> fastResponse = httpClient.send(request("/api/fast"), HttpResponse.BodyHandlers.ofString());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(200, fastResponse.statusCode());
+        assertTrue(elapsedMs < 1000, "Fast request waited behind delayed requests: " + elapsedMs + "ms");
+
+        for (CompletableFuture<HttpResponse<String>> future : slowFutures) {
+            assertEquals(200, future.get(30, TimeUnit.SECONDS).statusCode());
+        }
+    }
+
+    @Test
+    void testEndpointsCanBeAddedAndRemovedAtRuntime() throws Exception {
+        assertEquals(404, httpClient.send(request("/api/added"), HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        MockResponse response = new MockResponse();
+        response.setId("added");
+        response.setDefault(true);
+        response.setStatus(201);
+        response.setBody("added");
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setMethod("GET");
+        endpoint.setPath("/api/added");
+        endpoint.setResponses(List.of(response));
+        mockServer.addEndpoint(endpoint);
+
+        HttpResponse<String> added = httpClient.send(request("/api/added"), HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, added.statusCode());
+        assertEquals("added", added.body());
+
+        assertTrue(mockServer.removeEndpoint("GET", "/api/added"));
+        assertFalse(mockServer.removeEndpoint("GET", "/api/added"));
+        assertEquals(404, httpClient.send(request("/api/added"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(200, httpClient.send(request("/api/fast"), HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void testReloadSwapsRoutesWithoutRestartingTheServer() throws Exception {
+        // A delayed request started before the reload still completes afterwards
+        CompletableFuture<HttpResponse<String>> inFlight =
+                httpClient.sendAsync(request("/api/slow"), HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(300);
+
+        Files.writeString(configFile, "{ \"endpoints\": [ { \"path\": \"/api/reloaded\", \"method\": \"GET\", " +
+                "\"responses\": [ { \"id\": \"ok\", \"isDefault\": true, \"status\": 200, \"body\": \"reloaded\" } ] } ] }");
+        mockServer.reloadConfiguration();
+
+        assertEquals("reloaded", httpClient.send(request("/api/reloaded"), HttpResponse.BodyHandlers.ofString()).body());
+        assertEquals(404, httpClient.send(request("/api/fast"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(200, inFlight.get(30, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    void testBodyMatchersSelectTheEndpoint() throws Exception {
+        HttpResponse<String> express = httpClient.send(post("/api/orders", "{\"type\":\"express\"}"),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("express", express.body());
+
+        HttpResponse<String> standard = httpClient.send(post("/api/orders", "{\"type\":\"standard\"}"),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("standard", standard.body());
+
+        HttpResponse<String> tooLarge = httpClient.send(post("/api/orders", "x".repeat(2048)),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(413, tooLarge.statusCode());
+    }
+
+    @Test
+    void testServedRequestsAreJournaled() throws Exception {
+        httpClient.send(request("/api/fast?page=2"), HttpResponse.BodyHandlers.ofString());
+        httpClient.send(post("/api/orders", "{\"type\":\"express\"}"), HttpResponse.BodyHandlers.ofString());
+        httpClient.send(request("/api/missing"), HttpResponse.BodyHandlers.ofString());
+
+        // Requests are journaled when the exchange completes, which can be just after the client has the response
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mockServer.getRequestJournal().size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<JournalEntry> entries = mockServer.getRequestJournal().page(0, 10);
+        assertEquals(3, entries.size());
+
+        JournalEntry missing = entries.get(0);
+        assertEquals("/api/missing", missing.getPath());
+        assertEquals(404, missing.getStatus());
+        assertNull(missing.getEndpoint());
+
+        JournalEntry order = entries.get(1);
+        assertEquals("POST:/api/orders", order.getEndpoint());
+        assertEquals("express", order.getResponseId());
+        assertEquals("{\"type\":\"express\"}", order.getRequestBody());
+        assertEquals("express", order.getResponseBody());
+
+        JournalEntry fast = entries.get(2);
+        assertEquals("GET", fast.getMethod());
+        assertEquals("page=2", fast.getQuery());
+        assertEquals(200, fast.getStatus());
+        assertEquals("{\"result\":\"done\"}", fast.getResponseBody());
+        assertTrue(fast.getLatencyMs() >= 0);
+    }
+
+    @Test
+    void testThrottledResponsesArePaced() throws Exception {
+        MockThrottle throttle = new MockThrottle();
+        throttle.setBytesPerSecond(8192);
+        throttle.setChunkSize(1024);
+
+        MockResponse response = new MockResponse();
+        response.setId("large");
+        response.setDefault(true);
+        response.setBody("x".repeat(4096));
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setMethod("GET");
+        endpoint.setPath("/api/large");
+        endpoint.setResponses(List.of(response));
+        endpoint.setThrottle(throttle);
+        mockServer.addEndpoint(endpoint);
+
+        // The first chunk is sent straight away, the other three at 8 KB/s
+        long start = System.nanoTime();
+        HttpResponse<String> large = httpClient.send(request("/api/large"), HttpResponse.BodyHandlers.ofString());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(200, large.statusCode());
+        assertEquals("4096", large.headers().firstValue("Content-Length").orElse(null));
+        assertEquals(4096, large.body().length());
+        assertTrue(elapsedMs >= 300, "Response was not throttled: " + elapsedMs + "ms");
+
+        // A response throttle applies after the delay and can trickle the body in chunked encoding
+        MockThrottle trickle = new MockThrottle();
+        trickle.setBytesPerSecond(4096);
+        trickle.setChunkSize(512);
+        trickle.setChunked(true);
+        response.setDelay(100);
+        response.setThrottle(trickle);
+        mockServer.removeEndpoint("GET", "/api/large");
+        mockServer.addEndpoint(endpoint);
+
+        start = System.nanoTime();
+        HttpResponse<String> trickled = httpClient.send(request("/api/large"), HttpResponse.BodyHandlers.ofString());
+        elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(4096, trickled.body().length());
+        assertTrue(trickled.headers().firstValue("Content-Length").isEmpty());
+        assertTrue(elapsedMs >= 900, "Response was not throttled: " + elapsedMs + "ms");
+    }
+
+    @Test
+    void testConnectionFaults() throws Exception {
+        for (String fault : List.of("connection-reset", "empty-reply", "truncated-body")) {
+            MockResponse response = new MockResponse();
+            response.setId(fault);
+            response.setDefault(true);
+            response.setBody("x".repeat(4096));
+            response.setFault(fault);
+            MockEndpoint endpoint = new MockEndpoint();
+            endpoint.setMethod("GET");
+            endpoint.setPath("/api/" + fault);
+            endpoint.setResponses(List.of(response));
+            mockServer.addEndpoint(endpoint);
+
+            assertThrows(IOException.class,
+                    () -> httpClient.send(request("/api/" + fault), HttpResponse.BodyHandlers.ofString()), fault);
+        }
+
+        // The server keeps serving other connections, and faulted requests are journaled too
+        assertEquals(200, httpClient.send(request("/api/fast"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mockServer.getRequestJournal().size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(mockServer.getRequestJournal().page(0, 10).stream()
+                .anyMatch(entry -> "truncated-body".equals(entry.getResponseId())));
+    }
+
+    @Test
+    void testConcurrencyLimitQueuesAndRejectsRequests() throws Exception {
+        MockEndpoint endpoint = endpoint("/api/limited", 500);
+        endpoint.setMaxConcurrency(2);
+        endpoint.setQueueDepth(2);
+        mockServer.addEndpoint(endpoint);
+
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(httpClient.sendAsync(request("/api/limited"), HttpResponse.BodyHandlers.ofString()));
+        }
+        int served = 0;
+        int rejected = 0;
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            int status = future.get(30, TimeUnit.SECONDS).statusCode();
+            if (status == 200) {
+                served++;
+            } else if (status == 503) {
+                rejected++;
+            }
+        }
+        assertEquals(4, served);
+        assertEquals(2, rejected);
+    }
+
+    @Test
+    void testQueuedRequestsTimeOut() throws Exception {
+        MockEndpoint endpoint = endpoint("/api/saturated", 1000);
+        endpoint.setMaxConcurrency(1);
+        endpoint.setQueueDepth(10);
+        endpoint.setQueueTimeoutMs(200);
+        endpoint.setRejectStatus(429);
+        mockServer.addEndpoint(endpoint);
+
+        ConcurrencyLimiter limiter = mockServer.getRoutingTable().lookup("GET", "/api/saturated").getEndpoint().getLimiter();
+
+        CompletableFuture<HttpResponse<String>> first =
+                httpClient.sendAsync(request("/api/saturated"), HttpResponse.BodyHandlers.ofString());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (limiter.getInFlight() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, limiter.getInFlight());
+
+        long start = System.nanoTime();
+        HttpResponse<String> queued = httpClient.send(request("/api/saturated"), HttpResponse.BodyHandlers.ofString());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(429, queued.statusCode());
+        assertTrue(elapsedMs >= 150, "Queued request was rejected before its timeout: " + elapsedMs + "ms");
+        assertEquals(0, limiter.getQueued());
+        assertEquals(200, first.get(30, TimeUnit.SECONDS).statusCode());
+
+        // The slot is free again once the first request has completed
+        assertEquals(200, httpClient.send(request("/api/saturated"), HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void testBodyFilesAreServedWithRanges() throws Exception {
+        byte[] content = new byte[3 * 1024 * 1024];
+        new Random(1).nextBytes(content);
+        Files.write(tempDir.resolve("download.bin"), content);
+        Files.writeString(configFile, "{ \"endpoints\": [ " +
+                "{ \"path\": \"/api/download\", \"method\": \"GET\", \"responses\": [ { \"id\": \"file\", " +
+                "\"isDefault\": true, \"bodyFile\": \"download.bin\" } ] }, " +
+                "{ \"path\": \"/api/cached\", \"method\": \"GET\", \"responses\": [ { \"id\": \"file\", " +
+                "\"isDefault\": true, \"bodyFile\": \"download.bin\", \"cacheBodyFile\": true } ] } ] }");
+        mockServer.reloadConfiguration();
+
+        for (String path : List.of("/api/download", "/api/cached")) {
+            HttpResponse<byte[]> full = httpClient.send(request(path), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, full.statusCode());
+            assertEquals("bytes", full.headers().firstValue("Accept-Ranges").orElse(null));
+            assertArrayEquals(content, full.body());
+
+            HttpResponse<byte[]> range = httpClient.send(ranged(path, "bytes=100-199"), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(206, range.statusCode());
+            assertEquals("bytes 100-199/" + content.length, range.headers().firstValue("Content-Range").orElse(null));
+            assertArrayEquals(Arrays.copyOfRange(content, 100, 200), range.body());
+
+            HttpResponse<byte[]> suffix = httpClient.send(ranged(path, "bytes=-10"), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(206, suffix.statusCode());
+            assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length), suffix.body());
+
+            HttpResponse<byte[]> unsatisfiable = httpClient.send(ranged(path, "bytes=" + content.length + "-"),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(416, unsatisfiable.statusCode());
+        }
+    }
+
+    @Test
+    void testResponsesAreCompressedForClientsThatAcceptIt() throws Exception {
+        int compressedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            compressedPort = socket.getLocalPort();
+        }
+        String body = "{\"items\":[" + "{\"id\":1},".repeat(100) + "{}]}";
+        Files.writeString(configFile, "{ \"endpoints\": [ " +
+                "{ \"path\": \"/api/items\", \"method\": \"GET\", \"responses\": [ { \"id\": \"items\", " +
+                "\"isDefault\": true, \"body\": " + body + " } ] }, " +
+                "{ \"path\": \"/api/rendered\", \"method\": \"GET\", \"responses\": [ { \"id\": \"rendered\", " +
+                "\"isDefault\": true, \"bodyTemplate\": \"" + "{{request.method}} ".repeat(100) + "\" } ] } ] }");
+
+        MockServerConfig config = new MockServerConfig();
+        config.setPort(compressedPort);
+        config.setHost("localhost");
+        config.setConfigVolumePath(configFile.toString());
+        config.setAutoReload(false);
+        config.setCompressionEnabled(true);
+        MockServer compressedServer = new MockServer(config);
+        compressedServer.start();
+        try {
+            URI items = URI.create("http://localhost:" + compressedPort + "/api/items");
+            HttpResponse<byte[]> gzip = httpClient.send(HttpRequest.newBuilder(items).header("Accept-Encoding", "gzip").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(null));
+            assertEquals("Accept-Encoding", gzip.headers().firstValue("Vary").orElse(null));
+            assertEquals(body, new String(new GZIPInputStream(new ByteArrayInputStream(gzip.body())).readAllBytes(),
+                    StandardCharsets.UTF_8));
+
+            HttpResponse<String> identity = httpClient.send(HttpRequest.newBuilder(items).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertTrue(identity.headers().firstValue("Content-Encoding").isEmpty());
+            assertEquals(body, identity.body());
+
+            URI rendered = URI.create("http://localhost:" + compressedPort + "/api/rendered");
+            HttpResponse<byte[]> deflate = httpClient.send(HttpRequest.newBuilder(rendered).header("Accept-Encoding", "deflate").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("deflate", deflate.headers().firstValue("Content-Encoding").orElse(null));
+            // Without a service the template is sent as is, but still compressed per request
+            assertEquals("{{request.method}} ".repeat(100), new String(new InflaterInputStream(new ByteArrayInputStream(deflate.body())).readAllBytes(),
+                    StandardCharsets.UTF_8));
+        } finally {
+            compressedServer.stop();
+        }
+    }
+
+    @Test
+    void testTunedRuntimeServesHttp2AndDispatchesTemplates() throws Exception {
+        int tunedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            tunedPort = socket.getLocalPort();
+        }
+        Files.writeString(configFile, "{ \"endpoints\": [ " +
+                "{ \"path\": \"/api/rendered\", \"method\": \"GET\", \"responses\": [ { \"id\": \"rendered\", " +
+                "\"isDefault\": true, \"bodyTemplate\": \"{{request.method}}\" } ] } ] }");
+
+        MockServerConfig config = new MockServerConfig();
+        config.setPort(tunedPort);
+        config.setHost("localhost");
+        config.setConfigVolumePath(configFile.toString());
+        config.setAutoReload(false);
+        config.setIoThreads(2);
+        config.setWorkerThreads(4);
+        config.setBufferSize(8192);
+        config.setBacklog(128);
+        config.setHttp2Enabled(true);
+        config.setKeepAlive(false);
+        config.setTemplateDispatch("virtual");
+        MockServer tunedServer = new MockServer(config);
+        tunedServer.start();
+        try {
+            URI rendered = URI.create("http://localhost:" + tunedPort + "/api/rendered");
+            HttpClient http2Client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+            HttpResponse<String> http2 = http2Client.send(HttpRequest.newBuilder(rendered).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, http2.statusCode());
+            assertEquals(HttpClient.Version.HTTP_2, http2.version());
+            assertEquals("{{request.method}}", http2.body());
+
+            HttpResponse<String> http1 = httpClient.send(HttpRequest.newBuilder(rendered)
+                    .version(HttpClient.Version.HTTP_1_1).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, http1.statusCode());
+            assertEquals("close", http1.headers().firstValue("Connection").orElse(null));
+        } finally {
+            tunedServer.stop();
+        }
+    }
+
+    @Test
+    void testUnmatchedRequestsAreProxiedRecordedAndReplayed() throws Exception {
+        int proxyPort;
+        int replayPort;
+        try (ServerSocket first = new ServerSocket(0); ServerSocket second = new ServerSocket(0)) {
+            proxyPort = first.getLocalPort();
+            replayPort = second.getLocalPort();
+        }
+        Path proxyConfigFile = tempDir.resolve("proxy-config.json");
+        Files.writeString(proxyConfigFile, "{ \"endpoints\": [ { \"path\": \"/local\", \"method\": \"GET\", " +
+                "\"responses\": [ { \"id\": \"local\", \"isDefault\": true, \"body\": \"local\" } ] } ] }");
+
+        // The server of the other tests is the upstream
+        MockServerConfig config = new MockServerConfig();
+        config.setPort(proxyPort);
+        config.setHost("localhost");
+        config.setConfigVolumePath(proxyConfigFile.toString());
+        config.setAutoReload(false);
+        config.setProxyUrl("http://localhost:" + port + "/");
+        MockServer proxyServer = new MockServer(config);
+        proxyServer.start();
+        MockConfiguration recorded;
+        try {
+            String base = "http://localhost:" + proxyPort;
+            assertEquals("local", send(HttpRequest.newBuilder(URI.create(base + "/local")).build()).body());
+            for (int i = 0; i < 2; i++) {
+                HttpResponse<String> fast = send(HttpRequest.newBuilder(URI.create(base + "/api/fast")).build());
+                assertEquals(200, fast.statusCode());
+                assertEquals("{\"result\":\"done\"}", fast.body());
+            }
+            assertEquals("express", send(HttpRequest.newBuilder(URI.create(base + "/api/orders"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"express\"}")).build()).body());
+            assertEquals("standard", send(HttpRequest.newBuilder(URI.create(base + "/api/orders"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"bulk\"}")).build()).body());
+            assertEquals(404, send(HttpRequest.newBuilder(URI.create(base + "/api/missing")).build()).statusCode());
+
+            // Responses are recorded after they are sent
+            RecordingStore recordings = proxyServer.getRecordings();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (recordings.size() < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(4, recordings.size());
+            assertEquals(2, recordings.list().get(0).getHits());
+            recorded = recordings.toConfiguration();
+        } finally {
+            proxyServer.stop();
+        }
+
+        Path replayConfigFile = tempDir.resolve("replay-config.json");
+        new ObjectMapper().writeValue(replayConfigFile.toFile(), recorded);
+        MockServerConfig replayConfig = new MockServerConfig();
+        replayConfig.setPort(replayPort);
+        replayConfig.setHost("localhost");
+        replayConfig.setConfigVolumePath(replayConfigFile.toString());
+        replayConfig.setAutoReload(false);
+        MockServer replayServer = new MockServer(replayConfig);
+        replayServer.start();
+        try {
+            String base = "http://localhost:" + replayPort;
+            assertEquals("{\"result\":\"done\"}", send(HttpRequest.newBuilder(URI.create(base + "/api/fast")).build()).body());
+            assertEquals("express", send(HttpRequest.newBuilder(URI.create(base + "/api/orders"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"express\"}")).build()).body());
+            assertEquals("standard", send(HttpRequest.newBuilder(URI.create(base + "/api/orders"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"bulk\"}")).build()).body());
+            assertEquals(404, send(HttpRequest.newBuilder(URI.create(base + "/api/missing")).build()).statusCode());
+        } finally {
+            replayServer.stop();
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest ranged(String path, String range) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Range", range)
+                .GET()
+                .build();
+    }
+
+    private static MockEndpoint endpoint(String path, int delay) {
+        MockResponse response = new MockResponse();
+        response.setId("ok");
+        response.setDefault(true);
+        response.setDelay(delay);
+        response.setBody("ok");
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setMethod("GET");
+        endpoint.setPath(path);
+        endpoint.setResponses(List.of(response));
+        return endpoint;
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the CompiledResponse class.
+ */
+class CompiledResponseTest {
+
+    @Test
+    void testStaticResponseBodyIsEncodedOnce() {
+        MockResponse response = new MockResponse();
+        response.setBody(Map.of("name", "Zoë"));
+        CompiledResponse compiled = CompiledResponse.of(response);
+
+        assertFalse(compiled.isTemplated());
+        ByteBuffer first = compiled.getBody();
+        ByteBuffer second = compiled.getBody();
+        assertTrue(first.isDirect());
+        byte[] bytes = new byte[first.remaining()];
+        first.get(bytes);
+        assertEquals("{\"name\":\"Zoë\"}", new String(bytes, StandardCharsets.UTF_8));
+
+        // Consuming one view does not affect the others
+        assertEquals(0, first.remaining());
+        assertEquals(bytes.length, second.remaining());
+    }
+
+    @Test
+    void testTemplatedResponseHasNoStaticBody() {
+        MockResponse response = new MockResponse();
+        response.setBodyTemplate("{\"id\":\"${request.path}\"}");
+        CompiledResponse compiled = CompiledResponse.of(response);
+
+        assertTrue(compiled.isTemplated());
+        assertNull(compiled.getBody());
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Compressor and ContentEncoding classes.
+ */
+class CompressorTest {
+
+    private static final String BODY = "{\"items\":[" + "{\"id\":1,\"name\":\"item\"},".repeat(100) + "{}]}";
+
+    @Test
+    void testCompressedBodiesRoundTrip() throws IOException {
+        byte[] input = BODY.getBytes(StandardCharsets.UTF_8);
+        // Compress repeatedly so that pooled deflaters are reused
+        for (int i = 0; i < 3; i++) {
+            byte[] gzip = Compressor.compress(input, ContentEncoding.GZIP);
+            assertTrue(gzip.length < input.length);
+            assertArrayEquals(input, readAll(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+
+            byte[] deflate = Compressor.compress(input, ContentEncoding.DEFLATE);
+            assertTrue(deflate.length < input.length);
+            assertArrayEquals(input, readAll(new InflaterInputStream(new ByteArrayInputStream(deflate))));
+        }
+    }
+
+    @Test
+    void testStaticBodiesArePrecompressedOnce() throws IOException {
+        MockResponse response = new MockResponse();
+        response.setBody(BODY);
+        CompiledResponse compiled = CompiledResponse.of(response);
+
+        assertTrue(compiled.isCompressible());
+        ByteBuffer gzip = compiled.getBody(ContentEncoding.GZIP);
+        assertNotNull(gzip);
+        byte[] bytes = new byte[gzip.remaining()];
+        gzip.get(bytes);
+        assertEquals(BODY, new String(readAll(new GZIPInputStream(new ByteArrayInputStream(bytes))), StandardCharsets.UTF_8));
+        // Every call shares the same pre-compressed content
+        assertEquals(compiled.getBody(ContentEncoding.GZIP), compiled.getBody(ContentEncoding.GZIP));
+
+        MockResponse small = new MockResponse();
+        small.setBody("ok");
+        assertNull(CompiledResponse.of(small).getBody(ContentEncoding.GZIP));
+        assertFalse(CompiledResponse.of(small).isCompressible());
+
+        MockResponse encoded = new MockResponse();
+        encoded.setBody(BODY);
+        encoded.setHeaders(Map.of("content-encoding", "identity"));
+        assertNull(CompiledResponse.of(encoded).getBody(ContentEncoding.GZIP));
+    }
+
+    @Test
+    void testNegotiation() {
+        assertNull(ContentEncoding.negotiate(null));
+        assertNull(ContentEncoding.negotiate("identity"));
+        assertNull(ContentEncoding.negotiate("br"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate, br"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+        assertNull(ContentEncoding.negotiate("*;q=0"));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
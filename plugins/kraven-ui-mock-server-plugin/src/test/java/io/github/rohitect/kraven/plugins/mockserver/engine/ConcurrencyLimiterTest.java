@@ -0,0 +1,50 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockLatencyPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ConcurrencyLimiter class.
+ */
+class ConcurrencyLimiterTest {
+
+    @Test
+    void testOnlyEndpointsWithACapacityModelHaveALimiter() {
+        MockEndpoint endpoint = new MockEndpoint();
+        assertNull(ConcurrencyLimiter.of(endpoint));
+
+        endpoint.setMaxConcurrency(10);
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of(endpoint);
+        assertNotNull(limiter);
+        assertEquals(0, limiter.getCurveDelay(5));
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    void testLatencyCurveIsInterpolated() {
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setLatencyCurve(List.of(point(50, 500), point(10, 20), point(30, 100)));
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.of(endpoint);
+
+        assertEquals(20, limiter.getCurveDelay(1));
+        assertEquals(20, limiter.getCurveDelay(10));
+        assertEquals(60, limiter.getCurveDelay(20));
+        assertEquals(100, limiter.getCurveDelay(30));
+        assertEquals(300, limiter.getCurveDelay(40));
+        assertEquals(500, limiter.getCurveDelay(50));
+        assertEquals(500, limiter.getCurveDelay(500));
+    }
+
+    private static MockLatencyPoint point(int concurrency, int delayMs) {
+        MockLatencyPoint point = new MockLatencyPoint();
+        point.setConcurrency(concurrency);
+        point.setDelayMs(delayMs);
+        return point;
+    }
+}
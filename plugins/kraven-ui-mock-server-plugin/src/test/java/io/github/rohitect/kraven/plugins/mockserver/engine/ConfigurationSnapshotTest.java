@@ -0,0 +1,106 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ConfigurationSnapshot class.
+ */
+class ConfigurationSnapshotTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSnapshotRestoresTheConfigurationWithEncodedBodies() throws Exception {
+        String items = "{\"items\":[" + "{\"id\":1},".repeat(100) + "{}]}";
+        byte[] content = ("{ \"endpoints\": [ " +
+                "{ \"path\": \"/api/items\", \"method\": \"GET\", " +
+                "\"matchers\": [ { \"type\": \"query-param\", \"name\": \"page\", \"value\": \"1\" } ], " +
+                "\"responses\": [ { \"id\": \"items\", \"isDefault\": true, \"delay\": 5, \"body\": " + items + " }, " +
+                "{ \"id\": \"text\", \"status\": 202, \"headers\": { \"Content-Type\": \"text/plain\" }, \"body\": \"accepted\" } ] }, " +
+                "{ \"path\": \"/api/rendered\", \"method\": \"POST\", \"responses\": [ " +
+                "{ \"id\": \"rendered\", \"isDefault\": true, \"bodyTemplate\": \"{{request.method}}\" } ] } ] }")
+                .getBytes(StandardCharsets.UTF_8);
+        MockConfiguration parsed = OBJECT_MAPPER.readValue(content, MockConfiguration.class);
+        byte[] hash = ConfigurationSnapshot.hash(content);
+        Path file = tempDir.resolve("snapshots/config.snapshot");
+
+        ConfigurationSnapshot.write(file, hash, parsed);
+        MockConfiguration restored = ConfigurationSnapshot.read(file, hash);
+
+        assertNotNull(restored);
+        assertEquals(2, restored.getEndpoints().size());
+        MockEndpoint endpoint = restored.getEndpoints().get(0);
+        assertEquals("/api/items", endpoint.getPath());
+        assertEquals("page", endpoint.getMatchers().get(0).getName());
+        MockResponse itemsResponse = endpoint.getResponses().get(0);
+        assertEquals(5, itemsResponse.getDelay());
+        assertEquals(OBJECT_MAPPER.readTree(items), OBJECT_MAPPER.readTree(OBJECT_MAPPER.writeValueAsString(itemsResponse.getBody())));
+
+        CompiledResponse compiled = CompiledResponse.of(itemsResponse);
+        assertEquals(items, text(compiled.getBody()));
+        assertNotNull(compiled.getBody(ContentEncoding.GZIP));
+        assertTrue(compiled.getBody(ContentEncoding.GZIP).remaining() < items.length());
+
+        MockResponse textResponse = endpoint.getResponses().get(1);
+        assertEquals(202, textResponse.getStatus());
+        assertEquals("text/plain", textResponse.getHeaders().get("Content-Type"));
+        assertEquals("\"accepted\"", OBJECT_MAPPER.writeValueAsString(textResponse.getBody()));
+        assertEquals("accepted", text(CompiledResponse.of(textResponse).getBody()));
+
+        MockResponse rendered = restored.getEndpoints().get(1).getResponses().get(0);
+        assertNull(rendered.getBody());
+        assertTrue(CompiledResponse.of(rendered).isTemplated());
+    }
+
+    @Test
+    void testBodiesOfLoadedConfigurationAreServedFromSnapshot() throws Exception {
+        byte[] content = ("{ \"endpoints\": [ { \"path\": \"/api/items\", \"method\": \"GET\", \"responses\": [ " +
+                "{ \"id\": \"items\", \"isDefault\": true, \"body\": { \"id\": 1 } }, " +
+                "{ \"id\": \"rendered\", \"bodyTemplate\": \"{{request.method}}\" } ] } ] }")
+                .getBytes(StandardCharsets.UTF_8);
+        MockConfiguration parsed = OBJECT_MAPPER.readValue(content, MockConfiguration.class);
+        byte[] hash = ConfigurationSnapshot.hash(content);
+        Path file = tempDir.resolve("config.snapshot");
+        ConfigurationSnapshot.write(file, hash, parsed);
+
+        assertFalse(ConfigurationSnapshot.readBodies(file, ConfigurationSnapshot.hash(new byte[0]), parsed));
+        assertTrue(ConfigurationSnapshot.readBodies(file, hash, parsed));
+        MockResponse items = parsed.getEndpoints().get(0).getResponses().get(0);
+        assertInstanceOf(EncodedBody.class, items.getBody());
+        assertEquals("{\"id\":1}", text(CompiledResponse.of(items).getBody()));
+        assertNull(parsed.getEndpoints().get(0).getResponses().get(1).getBody());
+    }
+
+    @Test
+    void testSnapshotOfOtherContentIsIgnored() throws Exception {
+        byte[] content = "{ \"endpoints\": [] }".getBytes(StandardCharsets.UTF_8);
+        Path file = tempDir.resolve("config.snapshot");
+        ConfigurationSnapshot.write(file, ConfigurationSnapshot.hash(content), new MockConfiguration());
+
+        assertNotNull(ConfigurationSnapshot.read(file, ConfigurationSnapshot.hash(content)));
+        assertNull(ConfigurationSnapshot.read(file, ConfigurationSnapshot.hash("{}".getBytes(StandardCharsets.UTF_8))));
+        assertNull(ConfigurationSnapshot.read(tempDir.resolve("missing.snapshot"), ConfigurationSnapshot.hash(content)));
+
+        Files.write(file, new byte[64]);
+        assertNull(ConfigurationSnapshot.read(file, ConfigurationSnapshot.hash(content)));
+    }
+
+    private static String text(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockDelayDistribution;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the DelayDistribution class.
+ */
+class DelayDistributionTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void testNormal() {
+        MockDelayDistribution config = distribution("normal");
+        config.setMean(100);
+        config.setStdDev(10);
+        int[] delays = sample(config);
+
+        assertEquals(100, percentile(delays, 50), 1);
+        assertEquals(100 + 23.3, percentile(delays, 99), 1.5);
+    }
+
+    @Test
+    void testLogNormalFromMedianAndP99() {
+        MockDelayDistribution config = distribution("log-normal");
+        config.setMedian(50);
+        config.setP99(400);
+        int[] delays = sample(config);
+
+        assertEquals(50, percentile(delays, 50), 2);
+        assertEquals(400, percentile(delays, 99), 25);
+    }
+
+    @Test
+    void testParetoHasALongTail() {
+        MockDelayDistribution config = distribution("pareto");
+        config.setScale(10);
+        config.setShape(1.5);
+        int[] delays = sample(config);
+
+        assertEquals(10, delays[0]);
+        // Quantile q of a Pareto distribution is scale / (1 - q)^(1 / shape)
+        assertEquals(10 / Math.pow(0.5, 1 / 1.5), percentile(delays, 50), 1);
+        assertEquals(10 / Math.pow(0.01, 1 / 1.5), percentile(delays, 99), 10);
+    }
+
+    @Test
+    void testPercentiles() {
+        MockDelayDistribution config = distribution("percentiles");
+        config.setP50(20);
+        config.setP90(50);
+        config.setP99(200);
+        config.setP999(1000);
+        int[] delays = sample(config);
+
+        assertEquals(20, percentile(delays, 50), 1);
+        assertEquals(50, percentile(delays, 90), 2);
+        assertEquals(200, percentile(delays, 99), 10);
+        assertEquals(1000, percentile(delays, 99.9), 60);
+    }
+
+    @Test
+    void testMinAndMaxClampDelays() {
+        MockDelayDistribution config = distribution("normal");
+        config.setMean(100);
+        config.setStdDev(100);
+        config.setMin(50);
+        config.setMax(150);
+        int[] delays = sample(config);
+
+        assertEquals(50, delays[0]);
+        assertEquals(150, delays[delays.length - 1]);
+    }
+
+    @Test
+    void testInvalidDistributions() {
+        assertNull(DelayDistribution.of(null));
+        assertNull(DelayDistribution.of(distribution("unknown")));
+        assertNull(DelayDistribution.of(distribution("log-normal")));
+        assertNull(DelayDistribution.of(distribution("pareto")));
+        assertNull(DelayDistribution.of(distribution("percentiles")));
+    }
+
+    private static MockDelayDistribution distribution(String type) {
+        MockDelayDistribution distribution = new MockDelayDistribution();
+        distribution.setType(type);
+        return distribution;
+    }
+
+    private static int[] sample(MockDelayDistribution config) {
+        DelayDistribution distribution = DelayDistribution.of(config);
+        assertNotNull(distribution);
+        Random random = new Random(42);
+        int[] delays = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            delays[i] = distribution.sample(random);
+        }
+        Arrays.sort(delays);
+        return delays;
+    }
+
+    private static double percentile(int[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(percentile / 100 * sorted.length) - 1];
+    }
+}
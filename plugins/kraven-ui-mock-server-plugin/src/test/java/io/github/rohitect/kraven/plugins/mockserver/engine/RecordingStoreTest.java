@@ -0,0 +1,104 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockMatcher;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RecordingStore class.
+ */
+class RecordingStoreTest {
+
+    private static final Map<String, String> JSON = Map.of("Content-Type", "application/json", "Content-Length", "11");
+
+    @Test
+    void testRepeatedRequestsAreDeduplicated() {
+        RecordingStore store = new RecordingStore(10);
+        store.record("GET", "/api/users", Map.of("page", "1"), new byte[0], 200, JSON, bytes("{\"id\":1}"));
+        store.record("GET", "/api/users", Map.of("page", "1"), new byte[0], 500, JSON, bytes("{\"id\":2}"));
+        store.record("GET", "/api/users", Map.of("page", "2"), new byte[0], 200, JSON, bytes("{\"id\":3}"));
+
+        List<RecordingStore.Recording> recordings = store.list();
+        assertEquals(2, store.size());
+        assertEquals(2, recordings.get(0).getHits());
+        // The first response seen for a request is kept
+        assertEquals(200, recordings.get(0).getStatus());
+        assertEquals(1, recordings.get(1).getHits());
+    }
+
+    @Test
+    void testFullStoreDropsNewRequests() {
+        RecordingStore store = new RecordingStore(2);
+        for (int i = 0; i < 5; i++) {
+            store.record("GET", "/api/items/" + i, Map.of(), new byte[0], 200, JSON, bytes("{}"));
+        }
+        store.record("GET", "/api/items/0", Map.of(), new byte[0], 200, JSON, bytes("{}"));
+
+        assertEquals(2, store.size());
+        assertEquals(3, store.getDropped());
+        assertEquals(2, store.list().get(0).getHits());
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getDropped());
+        store.record("GET", "/api/items/9", Map.of(), new byte[0], 200, JSON, bytes("{}"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testExportDistinguishesVariantsOfAPath() {
+        RecordingStore store = new RecordingStore(10);
+        store.record("POST", "/api/orders", Map.of(), new byte[0], 200, Map.of(), bytes("empty"));
+        store.record("POST", "/api/orders", Map.of("dryRun", "true"), bytes("{\"type\":\"express\"}"), 201, JSON,
+                bytes("{\"id\":\"o-1\"}"));
+        store.record("GET", "/api/status", Map.of("verbose", "1"), new byte[0], 200,
+                Map.of("Content-Type", "text/plain", "Date", "Mon, 01 Jan 2024 00:00:00 GMT"), bytes("up"));
+        store.record("GET", "/api/image", Map.of(), new byte[0], 200, Map.of(), new byte[]{(byte) 0xff, (byte) 0xd8});
+
+        MockConfiguration configuration = store.toConfiguration();
+        List<MockEndpoint> endpoints = configuration.getEndpoints();
+        assertEquals(4, endpoints.size());
+
+        // The most specific variant comes first, so the catch-all variant does not shadow it
+        MockEndpoint express = endpoints.get(0);
+        assertEquals("/api/orders", express.getPath());
+        assertEquals(2, express.getMatchers().size());
+        MockMatcher query = express.getMatchers().get(0);
+        assertEquals("query-param", query.getType());
+        assertEquals("dryRun", query.getName());
+        assertEquals("true", query.getValue());
+        MockMatcher body = express.getMatchers().get(1);
+        assertEquals("body", body.getType());
+        assertEquals("{\"type\":\"express\"}", body.getValue());
+        MockResponse created = express.getResponses().get(0);
+        assertEquals(201, created.getStatus());
+        assertTrue(created.isDefault());
+        assertEquals("o-1", ((JsonNode) created.getBody()).get("id").asText());
+        assertFalse(created.getHeaders().containsKey("Content-Length"));
+
+        MockEndpoint standard = endpoints.get(1);
+        assertTrue(standard.getMatchers().isEmpty());
+        assertEquals("empty", standard.getResponses().get(0).getBody());
+
+        // A path recorded once answers every request to it
+        MockEndpoint status = endpoints.get(2);
+        assertTrue(status.getMatchers().isEmpty());
+        assertEquals("up", status.getResponses().get(0).getBody());
+        assertEquals(Map.of("Content-Type", "text/plain"), status.getResponses().get(0).getHeaders());
+
+        assertEquals("", endpoints.get(3).getResponses().get(0).getBody());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RequestJournal class.
+ */
+class RequestJournalTest {
+
+    @Test
+    void testOldestEntriesAreOverwritten() {
+        RequestJournal journal = new RequestJournal(3);
+        for (int i = 1; i <= 5; i++) {
+            journal.record(entry("/api/" + i));
+        }
+
+        assertEquals(5, journal.getLatestSequence());
+        assertEquals(3, journal.size());
+        assertEquals(List.of(5L, 4L, 3L), sequences(journal.page(0, 10)));
+        assertEquals(List.of(4L, 3L), sequences(journal.page(5, 10)));
+        assertEquals(List.of(3L, 4L, 5L), sequences(journal.since(0, 10)));
+        assertEquals(List.of(5L), sequences(journal.since(4, 10)));
+        assertEquals("/api/5", journal.page(0, 1).get(0).getPath());
+    }
+
+    @Test
+    void testClearKeepsSequenceNumbers() {
+        RequestJournal journal = new RequestJournal(10);
+        journal.record(entry("/a"));
+        journal.record(entry("/b"));
+        journal.clear();
+
+        assertTrue(journal.page(0, 10).isEmpty());
+        assertEquals(0, journal.size());
+
+        journal.record(entry("/c"));
+        assertEquals(List.of(3L), sequences(journal.page(0, 10)));
+    }
+
+    @Test
+    void testDisabledJournalKeepsNothing() {
+        RequestJournal journal = new RequestJournal(0);
+        journal.record(entry("/a"));
+        assertFalse(journal.isEnabled());
+        assertTrue(journal.page(0, 10).isEmpty());
+        assertTrue(journal.since(0, 10).isEmpty());
+    }
+
+    @Test
+    void testConcurrentWritersGetDistinctSequences() throws Exception {
+        RequestJournal journal = new RequestJournal(4000);
+        int threads = 8;
+        int perThread = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    journal.record(entry("/api"));
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        List<JournalEntry> entries = journal.since(0, Integer.MAX_VALUE);
+        assertEquals(threads * perThread, entries.size());
+        Set<Long> seen = new HashSet<>(sequences(entries));
+        assertEquals(threads * perThread, seen.size());
+    }
+
+    @Test
+    void testBodiesAreTruncated() {
+        RequestBody requestBody = new RequestBody("0123456789".getBytes());
+        JournalEntry entry = new JournalEntry(0, "POST", "/api", null, "POST:/api", "ok", 200, 0, 1.5,
+                requestBody, "abcdefghij", 4);
+        assertEquals("0123", entry.getRequestBody());
+        assertEquals(10, entry.getRequestBodySize());
+        assertEquals("abcd", entry.getResponseBody());
+        assertEquals(10, entry.getResponseBodySize());
+    }
+
+    @Test
+    void testBodyPreviewIsCopied() {
+        ByteBuffer body = ByteBuffer.wrap("abcdefghij".getBytes());
+        JournalEntry.BodyPreview preview = JournalEntry.BodyPreview.copy(body, 4);
+        body.put(0, (byte) 'z');
+
+        JournalEntry entry = new JournalEntry(0, "GET", "/file", null, "GET:/file", "ok", 200, 0, 1.5,
+                null, preview, 4);
+        assertEquals("abcd", entry.getResponseBody());
+        assertEquals(10, entry.getResponseBodySize());
+        assertEquals(0, body.position());
+    }
+
+    private static JournalEntry entry(String path) {
+        return new JournalEntry(System.currentTimeMillis(), "GET", path, "", "GET:" + path, "ok", 200, 0, 0.1,
+                null, null, 1024);
+    }
+
+    private static List<Long> sequences(List<JournalEntry> entries) {
+        List<Long> sequences = new ArrayList<>();
+        for (JournalEntry entry : entries) {
+            sequences.add(entry.getSequence());
+        }
+        return sequences;
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ResponseSelector class.
+ */
+class ResponseSelectorTest {
+
+    @Test
+    void testSelectionFollowsWeights() {
+        CompiledEndpoint endpoint = CompiledEndpoint.of(endpoint(42L));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            counts.merge(endpoint.selectResponse().getResponse().getId(), 1, Integer::sum);
+        }
+        assertEquals(95_000, counts.get("ok"), 500);
+        assertEquals(5_000, counts.get("unavailable"), 500);
+        assertNull(counts.get("unweighted"));
+    }
+
+    @Test
+    void testSelectionIsReproducibleFromSeed() {
+        assertEquals(selections(endpoint(7L)), selections(endpoint(7L)));
+        assertNotEquals(selections(endpoint(7L)), selections(endpoint(8L)));
+    }
+
+    @Test
+    void testOnlyWeightedEndpointsHaveASelector() {
+        MockEndpoint manual = endpoint(1L);
+        manual.setResponseType("manual");
+        assertNull(ResponseSelector.of(manual, Map.of()));
+        assertEquals("unweighted", CompiledEndpoint.of(manual).selectResponse().getResponse().getId());
+
+        MockEndpoint unweighted = endpoint(1L);
+        unweighted.getResponses().forEach(response -> response.setWeight(0));
+        assertNull(ResponseSelector.of(unweighted, Map.of()));
+    }
+
+    private static List<String> selections(MockEndpoint config) {
+        CompiledEndpoint endpoint = CompiledEndpoint.of(config);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(endpoint.selectResponse().getResponse().getId());
+        }
+        return ids;
+    }
+
+    private static MockEndpoint endpoint(Long seed) {
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setMethod("GET");
+        endpoint.setPath("/api/flaky");
+        endpoint.setResponseType("weighted");
+        endpoint.setSeed(seed);
+        endpoint.setResponses(new ArrayList<>(List.of(
+                response("unweighted", 0, true),
+                response("ok", 95, false),
+                response("unavailable", 5, false))));
+        return endpoint;
+    }
+
+    private static MockResponse response(String id, double weight, boolean isDefault) {
+        MockResponse response = new MockResponse();
+        response.setId(id);
+        response.setWeight(weight);
+        response.setDefault(isDefault);
+        return response;
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RoutingTable class.
+ */
+class RoutingTableTest {
+
+    @Test
+    void testReplacingRoutingTableKeepsUnchangedEndpointsCompiled() {
+        MockEndpoint users = endpoint("GET", "/api/users");
+        MockEndpoint orders = endpoint("GET", "/api/orders");
+        RoutingTable table = RoutingTable.empty().replace(List.of(users, orders));
+
+        MockEndpoint changedOrders = endpoint("GET", "/api/orders/${id}");
+        RoutingTable reloaded = table.replace(List.of(endpoint("GET", "/api/users"), changedOrders));
+
+        assertEquals(table.getVersion() + 1, reloaded.getVersion());
+        assertSame(table.getCompiledEndpoints().get(0), reloaded.getCompiledEndpoints().get(0));
+        assertSame(changedOrders, reloaded.getCompiledEndpoints().get(1).getEndpoint());
+        assertNull(reloaded.lookup("GET", "/api/orders"));
+        assertEquals("7", reloaded.lookup("GET", "/api/orders/7").getPathVariable("id"));
+    }
+
+    private MockEndpoint endpoint(String method, String path) {
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setMethod(method);
+        endpoint.setPath(path);
+        return endpoint;
+    }
+}
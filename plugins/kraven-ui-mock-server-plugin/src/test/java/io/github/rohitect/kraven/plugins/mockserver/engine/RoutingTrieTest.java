@@ -0,0 +1,179 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockMatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RoutingTrie, PathTemplate and CompiledMatcher classes.
+ */
+class RoutingTrieTest {
+
+    private RoutingTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        List<CompiledEndpoint> endpoints = new ArrayList<>();
+        endpoints.add(endpoint("GET", "/api/users"));
+        endpoints.add(endpoint("POST", "/api/users"));
+        endpoints.add(endpoint("GET", "/api/users/me"));
+        endpoints.add(endpoint("GET", "/api/users/${userId}"));
+        endpoints.add(endpoint("GET", "/api/users/${userId}/orders/${orderId}"));
+        endpoints.add(endpoint("GET", "/files/order-${id}.json"));
+        endpoints.add(endpoint("GET", "/files/${name}"));
+        trie = RoutingTrie.build(endpoints);
+    }
+
+    @Test
+    void testLiteralPath() {
+        RouteMatch match = trie.lookup("GET", "/api/users");
+        assertNotNull(match);
+        assertEquals("/api/users", match.getEndpoint().getEndpoint().getPath());
+        assertTrue(match.getPathVariables().isEmpty());
+
+        assertEquals("POST", trie.lookup("post", "/api/users").getEndpoint().getEndpoint().getMethod());
+    }
+
+    @Test
+    void testLiteralSegmentTakesPrecedenceOverVariable() {
+        assertEquals("/api/users/me", trie.lookup("GET", "/api/users/me").getEndpoint().getEndpoint().getPath());
+        assertEquals("/api/users/${userId}", trie.lookup("GET", "/api/users/42").getEndpoint().getEndpoint().getPath());
+    }
+
+    @Test
+    void testPathVariables() {
+        RouteMatch match = trie.lookup("GET", "/api/users/42/orders/a-7");
+        assertNotNull(match);
+        assertEquals("42", match.getPathVariable("userId"));
+        assertEquals("a-7", match.getPathVariable("orderId"));
+        assertNull(match.getPathVariable("missing"));
+        assertEquals(Map.of("userId", "42", "orderId", "a-7"), match.getPathVariables());
+    }
+
+    @Test
+    void testPrefixAndSuffixSegments() {
+        RouteMatch match = trie.lookup("GET", "/files/order-123.json");
+        assertEquals("/files/order-${id}.json", match.getEndpoint().getEndpoint().getPath());
+        assertEquals("123", match.getPathVariable("id"));
+
+        // Falls back to the less specific pattern when the prefix does not match
+        match = trie.lookup("GET", "/files/invoice.pdf");
+        assertEquals("/files/${name}", match.getEndpoint().getEndpoint().getPath());
+        assertEquals("invoice.pdf", match.getPathVariable("name"));
+    }
+
+    @Test
+    void testTrailingSlashIsIgnored() {
+        assertNotNull(trie.lookup("GET", "/api/users/"));
+        assertEquals("7", trie.lookup("GET", "/api/users/7/").getPathVariable("userId"));
+    }
+
+    @Test
+    void testUnknownPathsAndMethods() {
+        assertNull(trie.lookup("GET", "/api/unknown"));
+        assertNull(trie.lookup("GET", "/api/users/42/orders"));
+        assertFalse(trie.hasPath("/api/unknown"));
+
+        assertNull(trie.lookup("DELETE", "/api/users"));
+        assertTrue(trie.hasPath("/api/users"));
+    }
+
+    @Test
+    void testPathTemplateMatch() {
+        PathTemplate template = PathTemplate.compile("/api/items/item-${id}");
+        assertEquals(Map.of("id", "9"), template.match("/api/items/item-9"));
+        assertNull(template.match("/api/items/other-9"));
+        assertNull(template.match("/api/items"));
+        assertNull(template.match("/api/items/item-9/extra"));
+    }
+
+    @Test
+    void testEndpointsSharingMethodAndPathAreKeptAsCandidates() {
+        MockEndpoint admin = new MockEndpoint();
+        admin.setMethod("GET");
+        admin.setPath("/api/reports/${id}");
+        admin.setMatchers(List.of(matcher("path-variable", "id", "regex", "a-\\d+")));
+        MockEndpoint fallback = new MockEndpoint();
+        fallback.setMethod("GET");
+        fallback.setPath("/api/reports/${id}");
+
+        RoutingTrie reports = RoutingTrie.build(List.of(CompiledEndpoint.of(admin), CompiledEndpoint.of(fallback)));
+        RouteMatch match = reports.lookup("GET", "/api/reports/a-1");
+        assertEquals(2, match.getCandidates().size());
+        assertSame(admin, match.getCandidates().get(0).getEndpoint());
+        assertTrue(match.getCandidates().get(0).matches(null, match));
+
+        match = reports.lookup("GET", "/api/reports/b-1");
+        assertFalse(match.getCandidates().get(0).matches(null, match));
+        assertTrue(match.getCandidates().get(1).matches(null, match));
+    }
+
+    @Test
+    void testCompiledMatcherValues() {
+        MockMatcher matcher = matcher("header", "X-Env", "equals", "Prod");
+        matcher.setCaseSensitive(false);
+        assertTrue(CompiledMatcher.of(matcher).matchesValue("prod"));
+        assertTrue(matcher.matches("PROD"));
+
+        matcher = matcher("header", "X-Env", "regex", "PR.*");
+        matcher.setCaseSensitive(false);
+        assertTrue(CompiledMatcher.of(matcher).matchesValue("production"));
+
+        matcher = matcher("header", "X-Env", "endsWith", "od");
+        assertTrue(matcher.matches("prod"));
+        assertFalse(matcher.matches("d"));
+        assertFalse(matcher.matches(null));
+
+        matcher = matcher("header", "X-Env", "exists", null);
+        matcher.setRequired(false);
+        assertTrue(matcher.matches(null));
+    }
+
+    @Test
+    void testBodyMatchers() {
+        RequestBody body = new RequestBody(
+                "{\"type\":\"express\",\"total\":42,\"items\":[{\"sku\":\"A1\"},{\"sku\":\"B2\"}]}"
+                        .getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(CompiledMatcher.of(matcher("body", "$.type", "equals", "express")).matchesBody(body));
+        assertTrue(CompiledMatcher.of(matcher("body", "$.total", "equals", "42")).matchesBody(body));
+        assertTrue(CompiledMatcher.of(matcher("body", "$.items[*].sku", "equals", "B2")).matchesBody(body));
+        assertFalse(CompiledMatcher.of(matcher("body", "$.items[*].sku", "equals", "C3")).matchesBody(body));
+        assertTrue(CompiledMatcher.of(matcher("body", "$.items[0]", "equals", "{\"sku\":\"A1\"}")).matchesBody(body));
+        assertFalse(CompiledMatcher.of(matcher("body", "$.missing", "exists", null)).matchesBody(body));
+        assertTrue(CompiledMatcher.of(matcher("body", "", "contains", "express")).matchesBody(body));
+
+        // Invalid JSON and invalid expressions never match
+        RequestBody text = new RequestBody("not json".getBytes(StandardCharsets.UTF_8));
+        assertFalse(CompiledMatcher.of(matcher("body", "$.type", "exists", null)).matchesBody(text));
+        assertFalse(CompiledMatcher.of(matcher("body", "$[", "exists", null)).matchesBody(body));
+    }
+
+    private CompiledEndpoint endpoint(String method, String path) {
+        MockEndpoint endpoint = new MockEndpoint();
+        endpoint.setMethod(method);
+        endpoint.setPath(path);
+        return CompiledEndpoint.of(endpoint);
+    }
+
+    private MockMatcher matcher(String type, String name, String operator, String value) {
+        MockMatcher matcher = new MockMatcher();
+        matcher.setType(type);
+        matcher.setName(name);
+        matcher.setOperator(operator);
+        if ("regex".equals(operator)) {
+            matcher.setPattern(value);
+        } else {
+            matcher.setValue(value);
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ServerMetrics and LatencyHistogram classes.
+ */
+class ServerMetricsTest {
+
+    @Test
+    void testHistogramPercentilesAreWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(50_000.5, snapshot.getMeanMicros(), 0.001);
+        assertEquals(100_000, snapshot.getMaxMicros());
+        assertEquals(50_000, snapshot.getValueAtPercentile(50), 50_000 * 0.016);
+        assertEquals(99_000, snapshot.getValueAtPercentile(99), 99_000 * 0.016);
+        assertTrue(snapshot.getValueAtPercentile(50) >= 50_000, "Percentiles must not understate latency");
+    }
+
+    @Test
+    void testHistogramBucketsCoverTheirRange() {
+        for (long value : new long[]{0, 1, 127, 128, 129, 255, 256, 1_000, 65_535, 1_000_000, LatencyHistogram.MAX_VALUE_MICROS}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueAt(index - 1) < value);
+        }
+    }
+
+    @Test
+    void testIntervalSnapshotsOnlyCoverNewRequests() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.record("GET:/api", "ok", 200, 100, TimeUnit.MILLISECONDS.toNanos(102));
+        metrics.record("GET:/api", "error", 500, 0, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.record(null, null, 404, 0, TimeUnit.MILLISECONDS.toNanos(1));
+
+        Map<String, Object> first = metrics.intervalSnapshot();
+        assertEquals(3L, first.get("requests"));
+        assertEquals(1L, first.get("unmatched"));
+        Map<String, Object> endpoint = endpoint(first, "GET:/api");
+        assertEquals(2L, endpoint.get("requests"));
+        assertEquals(Map.of("2xx", 1L, "5xx", 1L), endpoint.get("statuses"));
+
+        // Server time excludes the configured delay
+        Map<String, Object> ok = response(endpoint, "ok");
+        assertEquals(102.0, (double) map(ok, "latency").get("maxMs"), 2.0);
+        assertEquals(2.0, (double) map(ok, "serverTime").get("maxMs"), 0.1);
+
+        metrics.record("GET:/api", "ok", 200, 0, TimeUnit.MILLISECONDS.toNanos(5));
+        Map<String, Object> second = metrics.intervalSnapshot();
+        assertEquals(1L, second.get("requests"));
+        assertEquals(1L, endpoint(second, "GET:/api").get("requests"));
+        assertEquals(0L, response(endpoint(second, "GET:/api"), "error").get("requests"));
+
+        // Cumulative snapshots still see everything
+        assertEquals(4L, metrics.snapshot().get("requests"));
+
+        metrics.reset();
+        assertEquals(0L, metrics.snapshot().get("requests"));
+    }
+
+    private static Map<String, Object> endpoint(Map<String, Object> snapshot, String key) {
+        return map(map(snapshot, "endpoints"), key);
+    }
+
+    private static Map<String, Object> response(Map<String, Object> endpoint, String id) {
+        return map(map(endpoint, "responses"), id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Map<String, Object> map, String key) {
+        return (Map<String, Object>) map.get(key);
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SimpleTemplate class.
+ */
+class SimpleTemplateTest {
+
+    private final Map<String, Object> context = Map.of(
+            "timestamp", 42L,
+            "request", Map.of(
+                    "path", "/api/users/7",
+                    "pathVariables", Map.of("id", "7")));
+
+    @Test
+    void testTopLevelAndDottedVariables() {
+        SimpleTemplate template = SimpleTemplate.parse(
+                "{\"id\":\"${request.pathVariables.id}\",\"path\":\"${request.path}\",\"at\":${timestamp}}");
+        assertEquals("{\"id\":\"7\",\"path\":\"/api/users/7\",\"at\":42}", template.render(context));
+    }
+
+    @Test
+    void testUnresolvedVariablesAreKept() {
+        SimpleTemplate template = SimpleTemplate.parse("${missing} ${request.missing.id} ${request.path.length} ${}");
+        assertEquals("${missing} ${request.missing.id} ${request.path.length} ${}", template.render(context));
+    }
+
+    @Test
+    void testRepeatedVariablesAndLiterals() {
+        SimpleTemplate template = SimpleTemplate.parse("${timestamp}-${timestamp}");
+        assertEquals("42-42", template.render(context));
+
+        assertEquals("no variables", SimpleTemplate.parse("no variables").render(context));
+        assertEquals("${timestamp}", SimpleTemplate.parse("${timestamp}").render(Map.of()));
+    }
+
+    @Test
+    void testReferencedKeys() {
+        SimpleTemplate template = SimpleTemplate.parse("${request.path} ${request.headers.accept} ${uuid} ${}");
+        assertEquals(Set.of("request", "uuid"), template.getReferencedKeys());
+        assertTrue(SimpleTemplate.parse("{\"static\":true}").getReferencedKeys().isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.rohitect.kraven.plugins.mockserver.engine;
+
+import io.github.rohitect.kraven.plugins.mockserver.model.MockThrottle;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Throttle class.
+ */
+class ThrottleTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testBucketStartsWithBurstAndRefillsAtRate() {
+        MockThrottle config = throttle(1000, 100);
+        config.setBurstBytes(300);
+        Throttle.Bucket bucket = Throttle.of(config).newBucket(0);
+
+        assertEquals(0, bucket.tryAcquire(100, 0));
+        assertEquals(0, bucket.tryAcquire(100, 0));
+        assertEquals(0, bucket.tryAcquire(100, 0));
+        assertEquals(SECOND / 10, bucket.tryAcquire(100, 0), 1000);
+
+        assertEquals(0, bucket.tryAcquire(100, SECOND / 10));
+        assertTrue(bucket.tryAcquire(100, SECOND / 10) > 0);
+
+        // The bucket never holds more than the burst
+        long later = 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(100, later));
+        }
+        assertTrue(bucket.tryAcquire(100, later) > 0);
+    }
+
+    @Test
+    void testSustainedThroughput() {
+        Throttle.Bucket bucket = Throttle.of(throttle(256 * 1024, 4096)).newBucket(0);
+
+        // Send 1 MB, waiting as long as the bucket asks each time
+        long now = 0;
+        long sent = 0;
+        while (sent < 1024 * 1024) {
+            long wait = bucket.tryAcquire(4096, now);
+            if (wait > 0) {
+                now += wait;
+            } else {
+                sent += 4096;
+            }
+        }
+        // One chunk goes out with the initial burst
+        assertEquals(4.0 - 4096.0 / (256 * 1024), (double) now / SECOND, 0.001);
+    }
+
+    @Test
+    void testSlowStartRampsUpThroughput() {
+        MockThrottle config = throttle(1000, 100);
+        config.setSlowStartMs(1000);
+        config.setInitialBytesPerSecond(200);
+        config.setBurstBytes(10_000);
+        Throttle throttle = Throttle.of(config);
+
+        assertEquals(200, throttle.rateAt(0), 0.001);
+        assertEquals(600, throttle.rateAt(0.5), 0.001);
+        assertEquals(1000, throttle.rateAt(1), 0.001);
+        assertEquals(1000, throttle.rateAt(5), 0.001);
+
+        // Over the first second the bucket refills by the mean of the initial and full rate
+        Throttle.Bucket bucket = throttle.newBucket(0);
+        assertEquals(0, bucket.tryAcquire(10_000, 0));
+        for (int i = 0; i < 6; i++) {
+            assertEquals(0, bucket.tryAcquire(100, SECOND));
+        }
+        assertTrue(bucket.tryAcquire(100, SECOND) > 0);
+    }
+
+    @Test
+    void testInvalidThrottles() {
+        assertNull(Throttle.of(null));
+        assertNull(Throttle.of(throttle(0, 100)));
+        assertNull(Throttle.of(throttle(1000, 0)));
+
+        // The burst is raised to one chunk so that a chunk can always be sent
+        MockThrottle config = throttle(1000, 500);
+        config.setBurstBytes(100);
+        assertEquals(0, Throttle.of(config).newBucket(0).tryAcquire(500, 0));
+    }
+
+    private static MockThrottle throttle(long bytesPerSecond, int chunkSize) {
+        MockThrottle throttle = new MockThrottle();
+        throttle.setBytesPerSecond(bytesPerSecond);
+        throttle.setChunkSize(chunkSize);
+        return throttle;
+    }
+}
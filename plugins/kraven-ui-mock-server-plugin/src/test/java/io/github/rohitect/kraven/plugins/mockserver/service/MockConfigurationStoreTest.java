@@ -0,0 +1,127 @@
+package io.github.rohitect.kraven.plugins.mockserver.service;
+
+import io.github.rohitect.kraven.plugins.mockserver.config.MockServerConfig;
+import io.github.rohitect.kraven.plugins.mockserver.engine.EncodedBody;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockConfiguration;
+import io.github.rohitect.kraven.plugins.mockserver.model.MockEndpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MockConfigurationStore class.
+ */
+class MockConfigurationStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path configFile;
+    private MockConfigurationStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        configFile = tempDir.resolve("mock-config.json");
+        writeConfig("/api/first");
+
+        MockServerConfig config = new MockServerConfig();
+        config.setConfigVolumePath(configFile.toString());
+        config.setReloadDebounceMs(50);
+        store = new MockConfigurationStore(config, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testConfigurationIsParsedOnce() {
+        MockConfiguration configuration = store.get();
+        assertEquals("/api/first", configuration.getEndpoints().get(0).getPath());
+        assertSame(configuration, store.get());
+        assertEquals(1, store.getVersion());
+    }
+
+    @Test
+    void testWatcherReloadsChangedFile() throws Exception {
+        List<MockConfiguration> notified = new CopyOnWriteArrayList<>();
+        store.addListener(notified::add);
+        store.startWatching();
+
+        // Several writes in quick succession settle into a single reload
+        writeConfig("/api/second");
+        writeConfig("/api/third");
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (store.getVersion() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(300);
+
+        assertEquals(2, store.getVersion());
+        assertEquals("/api/third", store.get().getEndpoints().get(0).getPath());
+        assertEquals(2, notified.size());
+        assertSame(store.get(), notified.get(1));
+    }
+
+    @Test
+    void testInvalidFileKeepsPreviousConfiguration() throws Exception {
+        MockConfiguration configuration = store.get();
+        Files.writeString(configFile, "{ not json");
+
+        assertSame(configuration, store.reload());
+        assertEquals(1, store.getVersion());
+    }
+
+    @Test
+    void testUnchangedConfigurationIsRestoredFromSnapshot() throws Exception {
+        MockServerConfig config = new MockServerConfig();
+        config.setConfigVolumePath(configFile.toString());
+        config.setSnapshotDirectory(tempDir.resolve("snapshots").toString());
+        Files.writeString(configFile, "{ \"endpoints\": [ { \"path\": \"/api/${version}/items\", \"method\": \"GET\", " +
+                "\"responses\": [ { \"id\": \"ok\", \"isDefault\": true, \"body\": { \"ok\": true } } ] } ] }");
+        String[] version = {"v1"};
+        Consumer<MockConfiguration> placeholders = configuration -> configuration.getEndpoints().forEach(endpoint -> {
+            if (endpoint.getPath().contains("${version}")) {
+                endpoint.setOriginalPath(endpoint.getPath());
+                endpoint.setPath(endpoint.getPath().replace("${version}", version[0]));
+            }
+        });
+
+        try (MockConfigurationStore first = new MockConfigurationStore(config, placeholders)) {
+            assertEquals("/api/v1/items", first.get().getEndpoints().get(0).getPath());
+        }
+        try (Stream<Path> snapshots = Files.list(tempDir.resolve("snapshots"))) {
+            assertEquals(1, snapshots.count());
+        }
+
+        // Placeholders are resolved again, as the properties may change without the file changing
+        version[0] = "v2";
+        try (MockConfigurationStore second = new MockConfigurationStore(config, placeholders)) {
+            MockEndpoint endpoint = second.get().getEndpoints().get(0);
+            assertEquals("/api/v2/items", endpoint.getPath());
+            assertInstanceOf(EncodedBody.class, endpoint.getResponses().get(0).getBody());
+            assertEquals("{\"ok\":true}", endpoint.getResponses().get(0).getBody().toString());
+
+            writeConfig("/api/changed");
+            assertEquals("/api/changed", second.reload().getEndpoints().get(0).getPath());
+        }
+    }
+
+    private void writeConfig(String path) throws IOException {
+        Files.writeString(configFile, "{ \"endpoints\": [ { \"path\": \"" + path + "\", \"method\": \"GET\", " +
+                "\"responses\": [ { \"id\": \"ok\", \"isDefault\": true, \"status\": 200 } ] } ] }");
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.rohitect.kraven.plugins.mockserver.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TemplateService class.
+ */
+class TemplateServiceTest {
+
+    private final TemplateService templateService = new TemplateService();
+
+    @Test
+    void testHandlebarsReferencedKeys() throws Exception {
+        Set<String> keys = templateService.getReferencedKeys("handlebars",
+                "{\"id\":\"{{request.pathVariables.id}}\",\"at\":{{timestamp}},\"body\":{{json request.headers}} }");
+        assertTrue(keys.containsAll(Set.of("request", "timestamp")));
+        assertFalse(keys.contains("uuid"));
+        assertFalse(keys.contains("random"));
+
+        assertEquals(Set.of(), templateService.getReferencedKeys("handlebars", "{\"static\":true}"));
+    }
+
+    @Test
+    void testTemplatesReachingTheWholeContextHaveUnknownKeys() throws Exception {
+        assertNull(templateService.getReferencedKeys("handlebars", "{{json this}}"));
+        assertNull(templateService.getReferencedKeys("handlebars",
+                "{{#each request.headers}}{{@key}}{{/each}}"));
+    }
+
+    @Test
+    void testRenderWithReferencedKeysOnly() throws Exception {
+        assertEquals("7", templateService.renderTemplate("handlebars", "{{request.pathVariables.id}}",
+                Map.of("request", Map.of("pathVariables", Map.of("id", "7")))));
+    }
+}